@@ -0,0 +1,136 @@
+package gr.seab.r2rml.beans;
+
+import gr.seab.r2rml.entities.PredicateObjectMap;
+import gr.seab.r2rml.entities.TermType;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.hp.hpl.jena.datatypes.BaseDatatype;
+
+/**
+ * The columns of a result set that the object maps of a logical table mapping refer to. Each column is resolved once
+ * per result set, to its index, its JDBC type and the XSD datatype of its literals, so that the rows are read with indexed getters.
+ *
+ */
+public class BindingPlan {
+
+	private static final Logger log = LoggerFactory.getLogger(BindingPlan.class);
+
+	private Map<PredicateObjectMap, Column> columns = new IdentityHashMap<PredicateObjectMap, Column>();
+
+	private LexicalFormWriter writer;
+
+	/**
+	 * Resolves the rr:column of each predicate object map against the metadata of the result set
+	 * @param writer reads the values of the columns
+	 */
+	public BindingPlan(ResultSet rs, List<PredicateObjectMap> predicateObjectMaps, Util util, LexicalFormWriter writer) throws SQLException {
+		this.writer = writer;
+		ResultSetMetaData rsMeta = rs.getMetaData();
+		Map<String, Integer> indexes = new HashMap<String, Integer>();
+		for (int i = rsMeta.getColumnCount(); i >= 1; i--) {
+			indexes.put(rsMeta.getColumnName(i), i);
+		}
+
+		for (PredicateObjectMap predicateObjectMap : predicateObjectMaps) {
+			String field = predicateObjectMap.getObjectColumn();
+			if (field == null) continue;
+			if (predicateObjectMap.getObjectTemplate() != null && predicateObjectMap.getObjectTemplate().getTermType() != TermType.AUTO) continue;
+			if (field.startsWith("\"") && field.endsWith("\"")) {
+				field = field.replaceAll("\"", "");
+			}
+
+			int index = 0;
+			try {
+				index = rs.findColumn(field);
+			} catch (SQLException e) {
+				log.error("Column " + field + " was not found in the logical table. Its values will be omitted.");
+			}
+			//the datatype is found by the exact column name, as reported by the driver
+			BaseDatatype dataType = null;
+			Integer typeIndex = indexes.get(field.trim());
+			if (typeIndex != null) {
+				dataType = util.findDataTypeFromSql(rsMeta.getColumnTypeName(typeIndex));
+			}
+			int sqlType = (index > 0) ? rsMeta.getColumnType(index) : 0;
+			String sqlTypeName = (index > 0) ? rsMeta.getColumnTypeName(index) : null;
+			columns.put(predicateObjectMap, new Column(field, index, sqlType, sqlTypeName, dataType));
+		}
+	}
+
+	/**
+	 * @return the column of the predicate object map, or null if it has no rr:column
+	 */
+	public Column getColumn(PredicateObjectMap predicateObjectMap) {
+		return columns.get(predicateObjectMap);
+	}
+
+	/**
+	 * Reads the value of a column in the current row, in the lexical form of its datatype
+	 * @return the value, or null if it is null or the column was not found
+	 */
+	public String getValue(Column column, ResultSet rs) throws SQLException {
+		if (column.getIndex() == 0) return null;
+		return writer.read(rs, column.getIndex(), column.getSqlType(), column.getSqlTypeName(), column.getDataType());
+	}
+
+	public static class Column {
+
+		private final String name;
+
+		/**
+		 * The index in the result set, or 0 if the column was not found
+		 */
+		private final int index;
+
+		/**
+		 * The type, as in java.sql.Types
+		 */
+		private final int sqlType;
+
+		private final String sqlTypeName;
+
+		/**
+		 * The datatype of the literals, or null for plain literals
+		 */
+		private final BaseDatatype dataType;
+
+		public Column(String name, int index, int sqlType, String sqlTypeName, BaseDatatype dataType) {
+			this.name = name;
+			this.index = index;
+			this.sqlType = sqlType;
+			this.sqlTypeName = sqlTypeName;
+			this.dataType = dataType;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public int getIndex() {
+			return index;
+		}
+
+		public int getSqlType() {
+			return sqlType;
+		}
+
+		public String getSqlTypeName() {
+			return sqlTypeName;
+		}
+
+		public BaseDatatype getDataType() {
+			return dataType;
+		}
+	}
+
+}
@@ -1,17 +1,50 @@
 package gr.seab.r2rml.beans;
 
 import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.Statement;
+import java.util.List;
 import java.util.Properties;
 
+import gr.seab.r2rml.entities.sql.SelectQuery;
+
 public interface Database {
 
 	public Connection openConnection();
 
 	public Statement newStatement();
 	
+	public Connection leaseConnection();
+	
+	public void releaseConnection(Connection connection);
+	
+	public PreparedStatement prepareStatement(Connection connection, String query);
+	
+	public Statement newStatement(Connection connection);
+	
+	public PreparedStatement newStatement(Connection connection, String query);
+	
+	public void endScan(Connection connection);
+	
+	public void recover(Connection connection);
+	
+	public ResultSet copyQuery(Connection connection, String query);
+	
 	public void testQuery(String query);
 	
+	public void testQueries(List<String> queries);
+	
+	public List<String> findTableColumns(String tableName);
+	
+	public List<String> findQueryColumns(String query);
+	
+	public String getSchemaFingerprint();
+	
+	public List<String> createPartitions(SelectQuery selectQuery, int partitions);
+	
 	public void setProperties(Properties properties);
 	
+	public void close();
+	
 }
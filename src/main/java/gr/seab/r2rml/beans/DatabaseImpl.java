@@ -1,13 +1,40 @@
 package gr.seab.r2rml.beans;
 
+import gr.seab.r2rml.beans.copy.CopyResultSet;
+import gr.seab.r2rml.beans.pool.ConnectionPool;
+import gr.seab.r2rml.entities.DatabaseType;
+import gr.seab.r2rml.entities.sql.SelectQuery;
+import gr.seab.r2rml.entities.sql.SelectTable;
+
+import gr.seab.r2rml.beans.SchemaCache.TableMetadata;
+
+import java.io.File;
+import java.sql.CallableStatement;
 import java.sql.Connection;
+import java.sql.DatabaseMetaData;
 import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Properties;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.lang.StringUtils;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyOut;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -22,6 +49,37 @@ public class DatabaseImpl implements Database {
 
 	private Connection connection;
 	
+	private ConnectionPool connectionPool;
+	
+	/**
+	 * The snapshot all the connections read, when property default.snapshot is true: the id of a PostgreSQL snapshot,
+	 * exported by a transaction of its own that is kept open, or an Oracle system change number
+	 */
+	private String snapshot;
+	
+	private Connection snapshotConnection;
+	
+	/**
+	 * The Oracle connections already in flashback mode, which lasts until they are closed
+	 */
+	private Set<Connection> flashbackConnections = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<Connection, Boolean>()));
+	
+	/**
+	 * The columns and primary keys of the tables, and the tested queries. Kept in the file of property db.schemaCache between runs.
+	 */
+	private SchemaCache schemaCache;
+	
+	private String schemaFingerprint;
+	
+	private boolean schemaFingerprintRead;
+	
+	/**
+	 * The schema of unqualified table names, read once
+	 */
+	private String currentSchema;
+	
+	private boolean currentSchemaRead;
+	
 	private Properties properties;
 	
 	private Util util;
@@ -31,8 +89,8 @@ public class DatabaseImpl implements Database {
 	}
 	
 	public Connection openConnection() {
-		log.info("Establishing source (relational) connection.");
 		if (connection == null) {
+			log.info("Establishing source (relational) connection.");
 			try {
 				String driver = properties.getProperty("db.driver");
 				Class.forName(driver);
@@ -44,6 +102,10 @@ public class DatabaseImpl implements Database {
 				connection = DriverManager.getConnection(dbConnectionString, properties.getProperty("db.login"), properties.getProperty("db.password"));
 			
 				log.info("Established source (relational) connection.");
+				if (properties.containsKey("default.snapshot") && properties.getProperty("default.snapshot").contains("true")) {
+					createSnapshot();
+					useSnapshot(connection);
+				}
 				return connection;
 			} catch (Exception e) {
 				log.error("Error establishing source (relational) connection! Please check your connection settings.");
@@ -56,11 +118,80 @@ public class DatabaseImpl implements Database {
 	}
 
 	public Statement newStatement() {
-		Statement statement;
+		if (connection == null) openConnection();
+		return newStatement(connection);
+	}
+	
+	/**
+	 * Leases an additional connection to the source database from the pool, e.g. for a worker thread. 
+	 * It has to be returned with {@link #releaseConnection(Connection)}.
+	 */
+	public Connection leaseConnection() {
+		try {
+			Connection result = getConnectionPool().lease();
+			useSnapshot(result);
+			return result;
+		} catch (SQLException e) {
+			log.error("Error establishing additional source (relational) connection!", e);
+			System.exit(1);
+		}
+		throw new IllegalStateException("Failed to establish a connection.");
+	}
+	
+	public void releaseConnection(Connection connection) {
+		getConnectionPool().release(connection);
+	}
+	
+	/**
+	 * Prepares a statement on a leased connection, reusing the one prepared earlier for the same query. 
+	 * The statement is closed by the pool.
+	 */
+	public PreparedStatement prepareStatement(Connection connection, String query) {
 		try {
+			return getConnectionPool().prepareStatement(connection, query);
+		} catch (SQLException e) {
+			log.error("Error preparing statement! Query was: " + query, e);
+			System.exit(1);
+		}
+		throw new IllegalStateException("Failed to prepare a statement.");
+	}
+	
+	/**
+	 * Creates the pool on first use. Its size is property db.poolSize, and at least twice default.threads, 
+	 * since a thread may lease a connection for its scan and one for its lookups, and at least db.validationThreads,
+	 * so that the queries tested at the same time do not wait for each other's connections.
+	 */
+	private synchronized ConnectionPool getConnectionPool() {
+		if (connectionPool == null) {
 			if (connection == null) openConnection();
-
-			statement = connection.createStatement(ResultSet.TYPE_SCROLL_SENSITIVE, ResultSet.CONCUR_UPDATABLE);
+			int poolSize = Integer.parseInt(properties.getProperty("db.poolSize", "0").trim());
+			int minSize = Math.max(2, 2 * Integer.parseInt(properties.getProperty("default.threads", "1").trim()));
+			minSize = Math.max(minSize, Integer.parseInt(properties.getProperty("db.validationThreads", "1").trim()));
+			if (poolSize > 0 && poolSize < minSize) {
+				log.info("Property db.poolSize is less than twice default.threads or less than db.validationThreads. Using " + minSize + " connections.");
+			}
+			poolSize = Math.max(poolSize, minSize);
+			long timeout = Long.parseLong(properties.getProperty("db.poolTimeout", "600").trim()) * 1000;
+			int statementCacheSize = Integer.parseInt(properties.getProperty("db.statementCacheSize", "32").trim());
+			long leakThreshold = Long.parseLong(properties.getProperty("db.leakThreshold", "600").trim()) * 1000;
+			connectionPool = new ConnectionPool(properties.getProperty("db.url"), properties.getProperty("db.login"), properties.getProperty("db.password"), 
+					poolSize, timeout, statementCacheSize, leakThreshold);
+			log.info("Created a pool of up to " + poolSize + " source (relational) connections.");
+		}
+		return connectionPool;
+	}
+	
+	/**
+	 * Creates a forward-only, read-only statement, that fetches the rows of its results as they are read:
+	 * in mysql, one at a time (no other statement can run on the connection meanwhile), and elsewhere, property
+	 * default.fetchSize rows at a time. A PostgreSQL connection is taken out of autocommit mode, since only then
+	 * does the driver fetch the results with a cursor, until the scan ends with {@link #endScan(Connection)}. 
+	 * A fetch size of 0 leaves the driver default.
+	 */
+	public Statement newStatement(Connection connection) {
+		try {
+			Statement statement = connection.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+			setFetchSize(connection, statement);
 			return statement;
 		} catch (Exception e) {
 			log.error("Error creating a statement!", e);
@@ -68,20 +199,196 @@ public class DatabaseImpl implements Database {
 		}
 		throw new IllegalStateException("Filed to create a statement.");
 	}
+	
+	/**
+	 * Prepares a query with parameters, whose results are fetched as those of {@link #newStatement(Connection)}.
+	 * Unlike {@link #prepareStatement(Connection, String)}, the statement is not kept for reuse and has to be closed.
+	 */
+	public PreparedStatement newStatement(Connection connection, String query) {
+		try {
+			PreparedStatement statement = connection.prepareStatement(query, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+			setFetchSize(connection, statement);
+			return statement;
+		} catch (Exception e) {
+			log.error("Error preparing statement! Query was: " + query, e);
+			System.exit(1);
+		}
+		throw new IllegalStateException("Failed to prepare a statement.");
+	}
+	
+	private void setFetchSize(Connection connection, Statement statement) throws SQLException {
+		int fetchSize = Integer.parseInt(properties.getProperty("default.fetchSize", "1000").trim());
+		if (fetchSize > 0) {
+			DatabaseType databaseType = util.findDatabaseType(properties.getProperty("db.driver"));
+			if (databaseType == DatabaseType.MYSQL) {
+				statement.setFetchSize(Integer.MIN_VALUE);
+			} else {
+				if (databaseType == DatabaseType.POSTGRESQL && connection.getAutoCommit()) {
+					connection.setAutoCommit(false);
+				}
+				statement.setFetchSize(fetchSize);
+			}
+		}
+	}
+	
+	/**
+	 * Ends the transaction of a scan, as the pool does when a connection is released. A connection that 
+	 * {@link #newStatement(Connection)} took out of autocommit mode is rolled back, since it only read, and put 
+	 * back in autocommit mode, so that it does not stay idle in a transaction until the next scan. A connection 
+	 * that reads a PostgreSQL snapshot starts a new transaction on it instead.
+	 */
+	public void endScan(Connection connection) {
+		try {
+			if (!connection.isClosed() && !connection.getAutoCommit()) {
+				connection.rollback();
+				if (snapshotConnection == null) {
+					connection.setAutoCommit(true);
+				} else {
+					useSnapshot(connection);
+				}
+			}
+		} catch (SQLException e) {
+			log.error("Error ending the transaction of a scan.", e);
+		}
+	}
+	
+	/**
+	 * Rolls back the transaction of a connection after a statement failed, when it is not in autocommit mode.
+	 * Otherwise PostgreSQL would reject the next statements on the connection. The next transaction reads the same snapshot.
+	 */
+	public void recover(Connection connection) {
+		try {
+			if (!connection.isClosed() && !connection.getAutoCommit()) {
+				connection.rollback();
+				useSnapshot(connection);
+			}
+		} catch (SQLException e) {
+			log.error("Error rolling back a failed statement.", e);
+		}
+	}
+	
+	/**
+	 * Takes the snapshot that all the connections will read, so that the logical tables read by different threads, and 
+	 * the hashes of incremental mode, refer to the same point in time. In PostgreSQL, a repeatable read transaction on a 
+	 * connection of its own exports its snapshot, and stays open until the connections are closed. In Oracle, the current 
+	 * system change number is read, and each connection enters flashback mode at it. Other databases are read as usual.
+	 */
+	private void createSnapshot() {
+		DatabaseType databaseType = util.findDatabaseType(properties.getProperty("db.driver"));
+		try {
+			if (databaseType == DatabaseType.POSTGRESQL) {
+				snapshotConnection = DriverManager.getConnection(properties.getProperty("db.url"), properties.getProperty("db.login"), properties.getProperty("db.password"));
+				snapshotConnection.setAutoCommit(false);
+				Statement st = snapshotConnection.createStatement();
+				st.execute("SET TRANSACTION ISOLATION LEVEL REPEATABLE READ");
+				ResultSet rs = st.executeQuery("SELECT pg_export_snapshot()");
+				rs.next();
+				snapshot = rs.getString(1);
+				rs.close();
+				st.close();
+				log.info("Reading snapshot " + snapshot + " with all the source (relational) connections.");
+			} else if (databaseType == DatabaseType.ORACLE) {
+				Statement st = connection.createStatement();
+				ResultSet rs = st.executeQuery("SELECT DBMS_FLASHBACK.GET_SYSTEM_CHANGE_NUMBER FROM DUAL");
+				rs.next();
+				snapshot = rs.getString(1);
+				rs.close();
+				st.close();
+				log.info("Reading system change number " + snapshot + " with all the source (relational) connections.");
+			} else {
+				log.info("Consistent snapshots are supported in PostgreSQL and Oracle. Each source (relational) connection will read its own point in time.");
+			}
+		} catch (SQLException e) {
+			log.error("Error taking a snapshot of the source (relational) database! Set default.snapshot to false to read without one.", e);
+			System.exit(1);
+		}
+	}
+	
+	/**
+	 * Makes a connection read the snapshot. A PostgreSQL connection imports it in a new repeatable read transaction, 
+	 * which is why this is repeated after each rollback.
+	 */
+	private void useSnapshot(Connection connection) throws SQLException {
+		if (snapshot == null || connection == snapshotConnection) return;
+		if (snapshotConnection != null) {
+			//the driver does not set the repeatable read level, so it is set with a statement
+			if (connection.getAutoCommit()) connection.setAutoCommit(false);
+			Statement st = connection.createStatement();
+			st.execute("SET TRANSACTION ISOLATION LEVEL REPEATABLE READ");
+			st.execute("SET TRANSACTION SNAPSHOT '" + snapshot + "'");
+			st.close();
+		} else if (flashbackConnections.add(connection)) {
+			CallableStatement st = connection.prepareCall("{call DBMS_FLASHBACK.ENABLE_AT_SYSTEM_CHANGE_NUMBER(" + snapshot + ")}");
+			st.execute();
+			st.close();
+		}
+	}
+
+	/**
+	 * Reads the results of a query with COPY (query) TO STDOUT, which PostgreSQL streams much faster than the rows of
+	 * a result set. Returns null when the query cannot be wrapped in a COPY, e.g. it is not a SELECT, or the database 
+	 * is not PostgreSQL, so that the caller executes it as usual.
+	 */
+	public ResultSet copyQuery(Connection connection, String query) {
+		if (util.findDatabaseType(properties.getProperty("db.driver")) != DatabaseType.POSTGRESQL || !(connection instanceof PGConnection)) {
+			return null;
+		}
+		String copyQuery = query.trim();
+		while (copyQuery.endsWith(";")) {
+			copyQuery = copyQuery.substring(0, copyQuery.length() - 1).trim();
+		}
+		String keyword = copyQuery.replaceFirst("^[(\\s]+", "").split("\\s+", 2)[0].toUpperCase();
+		if (!"SELECT".equals(keyword) && !"WITH".equals(keyword) && !"VALUES".equals(keyword)) {
+			return null;
+		}
+		
+		PreparedStatement preparedStatement = null;
+		try {
+			preparedStatement = connection.prepareStatement(copyQuery);
+			ResultSetMetaData metaData = preparedStatement.getMetaData();
+			if (metaData == null) {
+				preparedStatement.close();
+				return null;
+			}
+			//the types of the columns are looked up now, since the connection cannot run other statements during the copy
+			for (int i = 1; i <= metaData.getColumnCount(); i++) {
+				metaData.getColumnName(i);
+				metaData.getColumnType(i);
+				metaData.getColumnTypeName(i);
+			}
+			CopyOut copyOut = ((PGConnection) connection).getCopyAPI().copyOut("COPY (" + copyQuery + ") TO STDOUT");
+			return new CopyResultSet(copyOut, preparedStatement, metaData);
+		} catch (SQLException e) {
+			log.info("Query cannot be copied, it will be executed instead. " + e.getMessage());
+			if (preparedStatement != null) {
+				try { preparedStatement.close(); } catch (SQLException ex) {}
+			}
+			recover(connection);
+			return null;
+		}
+	}
 
 	/**
 	 * 
 	 * Create a PreparedStatement with the query string and get its metadata. If this works, the query string is ok (but nothing is executed)
+	 * The column labels and types of the query are kept in the schema cache.
 	 * 
 	 */
 	public void testQuery(String query) {
 		try {
 			if (connection == null) openConnection();
+			
+			TableMetadata columns = getSchemaCache().getQuery(query);
+			if (columns != null) {
+				log.info ("Query is ok, as tested in an earlier run. Retrieves a dataset with " + columns.getColumns().size() + " column(s).");
+				return;
+			}
 
 			PreparedStatement preparedStatement = connection.prepareStatement(query);
 			
-			ResultSetMetaData m = preparedStatement.getMetaData();
-			log.info ("Query is ok. Retrieves a dataset with " + m.getColumnCount() + " column(s).");
+			columns = readQueryColumns(preparedStatement);
+			log.info ("Query is ok. Retrieves a dataset with " + columns.getColumns().size() + " column(s).");
+			getSchemaCache().putQuery(query, columns);
 			
 			preparedStatement.close();
 		} catch (SQLException e) {
@@ -90,6 +397,557 @@ public class DatabaseImpl implements Database {
 		}
 	}
 		
+	/**
+	 * Tests the queries as {@link #testQuery(String)} does, several at a time on connections leased from the pool.
+	 * The number of queries tested at the same time is property db.validationThreads. A query given more than once is tested once.
+	 */
+	public void testQueries(List<String> queries) {
+		if (connection == null) openConnection();
+		
+		Set<String> untested = new LinkedHashSet<String>();
+		for (String query : queries) {
+			TableMetadata columns = getSchemaCache().getQuery(query);
+			if (columns != null) {
+				log.info ("Query is ok, as tested in an earlier run. Retrieves a dataset with " + columns.getColumns().size() + " column(s).");
+			} else {
+				untested.add(query);
+			}
+		}
+		int threads = Math.min(untested.size(), Integer.parseInt(properties.getProperty("db.validationThreads", "1").trim()));
+		if (threads <= 1) {
+			for (String query : untested) testQuery(query);
+			return;
+		}
+		
+		log.info("Testing " + untested.size() + " queries using " + threads + " threads.");
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<TableMetadata>> results = new ArrayList<Future<TableMetadata>>();
+			for (final String query : untested) {
+				results.add(executor.submit(new Callable<TableMetadata>() {
+					public TableMetadata call() throws SQLException {
+						Connection leased = leaseConnection();
+						try {
+							PreparedStatement preparedStatement = leased.prepareStatement(query);
+							try {
+								return readQueryColumns(preparedStatement);
+							} finally {
+								preparedStatement.close();
+							}
+						} finally {
+							releaseConnection(leased);
+						}
+					}
+				}));
+			}
+			int i = 0;
+			for (String query : untested) {
+				try {
+					TableMetadata columns = results.get(i++).get();
+					log.info ("Query is ok. Retrieves a dataset with " + columns.getColumns().size() + " column(s). Query was: " + query);
+					getSchemaCache().putQuery(query, columns);
+				} catch (ExecutionException e) {
+					log.error("Error testing query! Query was: " + query);
+					System.exit(1);
+				} catch (InterruptedException e) {
+					log.error("Interrupted while testing query: " + query);
+					System.exit(1);
+				}
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+	
+	/**
+	 * The column labels and types of a prepared query
+	 */
+	private TableMetadata readQueryColumns(PreparedStatement preparedStatement) throws SQLException {
+		TableMetadata result = new TableMetadata();
+		ResultSetMetaData m = preparedStatement.getMetaData();
+		for (int i = 1; i <= m.getColumnCount(); i++) {
+			result.addColumn(m.getColumnLabel(i), m.getColumnType(i), m.getScale(i));
+		}
+		return result;
+	}
+	
+	/**
+	 * The column labels of a query tested with {@link #testQuery(String)} or {@link #testQueries(List)}, in their order
+	 * in the query. Null when the query has not been tested.
+	 */
+	public synchronized List<String> findQueryColumns(String query) {
+		TableMetadata columns = getSchemaCache().getQuery(query);
+		return (columns != null) ? columns.getColumns() : null;
+	}
+	
+	/**
+	 * Splits the rows of a single-table query into ranges that can be scanned separately, and returns the condition
+	 * that selects each range, to be added with {@link SelectQuery#getQueryWithTableCondition(String)}. Ranges are created on a numeric primary key, on the PostgreSQL ctid or on the Oracle ROWID,
+	 * according to property default.partitionMethod. An empty list is returned when the query cannot be partitioned.
+	 */
+	public List<String> createPartitions(SelectQuery selectQuery, int partitions) {
+		List<String> results = new ArrayList<String>();
+		if (selectQuery.getTables().size() != 1 || selectQuery.containsKeyword("DISTINCT") || selectQuery.containsKeyword("GROUP BY")
+				|| selectQuery.getQueryWithTableCondition("1 = 1") == null) {
+			return results;
+		}
+		SelectTable selectTable = selectQuery.getTables().get(0);
+		String[] tokens = selectTable.getName().trim().split("\\s+");
+		String tableName = tokens[0];
+		if (tableName.startsWith("(")) return results;
+		//the name of the table may be followed by its alias and the rest of the query
+		String qualifier = tableName;
+		if (tokens.length > 2 && "AS".equalsIgnoreCase(tokens[1])) {
+			qualifier = tokens[2];
+		} else if (tokens.length > 1 && !StringUtils.equalsIgnoreCase(tokens[1], "WHERE") && !StringUtils.equalsIgnoreCase(tokens[1], "ORDER")
+				&& !StringUtils.equalsIgnoreCase(tokens[1], "GROUP") && !StringUtils.equalsIgnoreCase(tokens[1], "HAVING")) {
+			qualifier = tokens[1];
+		}
+		
+		String method = properties.getProperty("default.partitionMethod", "auto").trim().toLowerCase();
+		DatabaseType databaseType = util.findDatabaseType(properties.getProperty("db.driver"));
+		try {
+			if (connection == null) openConnection();
+			if ("auto".equals(method) || "key".equals(method)) {
+				results = createKeyPartitions(tableName, qualifier, databaseType, partitions);
+			}
+			//before PostgreSQL 14, a ctid range is not an index-like scan and each partition would read the whole table
+			if (results.isEmpty() && (("auto".equals(method) && connection.getMetaData().getDatabaseMajorVersion() >= 14) || "ctid".equals(method))
+					&& databaseType == DatabaseType.POSTGRESQL) {
+				results = createCtidPartitions(tableName, qualifier, partitions);
+			}
+			if (results.isEmpty() && ("auto".equals(method) || "rowid".equals(method)) && databaseType == DatabaseType.ORACLE) {
+				results = createRowidPartitions(tableName, qualifier, partitions);
+			}
+		} catch (SQLException e) {
+			log.error("Error creating partitions of table " + tableName + ". It will be scanned at once.", e);
+			recover(connection);
+			results.clear();
+		}
+		return results;
+	}
+	
+	/**
+	 * Splits the values of a single-column numeric primary key in ranges holding about the same number of rows, with the bounds
+	 * of NTILE over the key, so that gaps and dense stretches of the key do not make some ranges much larger than others.
+	 * Where window functions are not supported, e.g. in mysql before 8.0, the key is split from its minimum to its maximum
+	 * in ranges of equal width.
+	 */
+	private List<String> createKeyPartitions(String tableName, String qualifier, DatabaseType databaseType, int partitions) throws SQLException {
+		List<String> results = new ArrayList<String>();
+		DatabaseMetaData meta = connection.getMetaData();
+		
+		String schema = null;
+		String table = tableName;
+		if (table.indexOf('.') != -1) {
+			schema = table.substring(0, table.indexOf('.'));
+			table = table.substring(table.indexOf('.') + 1);
+		}
+		schema = toMetaDataIdentifier(schema, databaseType);
+		table = toMetaDataIdentifier(table, databaseType);
+		if (schema == null) schema = findCurrentSchema();
+		
+		TableMetadata tableMetadata = findTable(schema, table);
+		//only a single-column primary key is split
+		if (tableMetadata == null || findPrimaryKey(schema, table, tableMetadata).size() != 1) return results;
+		String key = tableMetadata.getPrimaryKey().get(0);
+		
+		Integer type = tableMetadata.getType(key);
+		boolean numeric = type != null && (type == Types.INTEGER || type == Types.BIGINT || type == Types.SMALLINT || type == Types.TINYINT
+				|| ((type == Types.NUMERIC || type == Types.DECIMAL) && tableMetadata.getScale(key) == 0));
+		if (!numeric) return results;
+		
+		String quote = StringUtils.trimToEmpty(meta.getIdentifierQuoteString());
+		String column = qualifier + "." + quote + key + quote;
+		
+		List<String> lowerBounds = new ArrayList<String>();
+		Statement st = connection.createStatement();
+		try {
+			ResultSet rs = st.executeQuery("SELECT MIN(r2rml_value) FROM (SELECT " + column + " r2rml_value, NTILE(" + partitions + ") OVER (ORDER BY " 
+					+ column + ") r2rml_tile FROM " + tableName + " " + qualifier + ") r2rml_tiles GROUP BY r2rml_tile ORDER BY r2rml_tile");
+			while (rs.next()) {
+				lowerBounds.add(String.valueOf(rs.getLong(1)));
+			}
+			rs.close();
+		} catch (SQLException e) {
+			log.info("Could not split table " + tableName + " with NTILE (" + e.getMessage().trim() + "). Splitting its key in ranges of equal width.");
+			recover(connection);
+			lowerBounds = createKeyBounds(tableName, qualifier, column, partitions);
+		} finally {
+			st.close();
+		}
+		if (lowerBounds.size() < 2) return results;
+		
+		results = createRanges(column, lowerBounds);
+		log.info("Split table " + tableName + " in " + results.size() + " ranges of primary key " + key + ".");
+		return results;
+	}
+	
+	/**
+	 * The lower bounds of ranges of equal width of a numeric key, from its minimum to its maximum
+	 */
+	private List<String> createKeyBounds(String tableName, String qualifier, String column, int partitions) throws SQLException {
+		List<String> results = new ArrayList<String>();
+		Statement st = connection.createStatement();
+		ResultSet rs = st.executeQuery("SELECT MIN(" + column + "), MAX(" + column + ") FROM " + tableName + " " + qualifier);
+		rs.next();
+		long min = rs.getLong(1);
+		long max = rs.getLong(2);
+		boolean empty = rs.wasNull();
+		rs.close();
+		st.close();
+		if (empty || max - min < partitions) return results;
+		
+		long width = (max - min) / partitions + 1;
+		for (int i = 0; i < partitions; i++) {
+			results.add(String.valueOf(min + i * width));
+		}
+		return results;
+	}
+	
+	/**
+	 * The conditions selecting the ranges of a column that start at the given lower bounds. The first range also holds
+	 * the values below its bound and the last one the values above it, so that every row is in a range.
+	 */
+	private static List<String> createRanges(String column, List<String> lowerBounds) {
+		List<String> results = new ArrayList<String>();
+		for (int i = 0; i < lowerBounds.size(); i++) {
+			if (i == 0) {
+				results.add(column + " < " + lowerBounds.get(1));
+			} else if (i == lowerBounds.size() - 1) {
+				results.add(column + " >= " + lowerBounds.get(i));
+			} else {
+				results.add(column + " >= " + lowerBounds.get(i) + " AND " + column + " < " + lowerBounds.get(i + 1));
+			}
+		}
+		return results;
+	}
+	
+	/**
+	 * Splits the pages of a PostgreSQL table in ranges of tuple identifiers
+	 */
+	private List<String> createCtidPartitions(String tableName, String qualifier, int partitions) throws SQLException {
+		List<String> results = new ArrayList<String>();
+		PreparedStatement st = connection.prepareStatement("SELECT pg_relation_size(CAST(? AS regclass)) / current_setting('block_size')::int");
+		st.setString(1, tableName);
+		ResultSet rs = st.executeQuery();
+		rs.next();
+		long pages = rs.getLong(1);
+		rs.close();
+		st.close();
+		if (pages < partitions) return results;
+		
+		long width = pages / partitions;
+		List<String> lowerBounds = new ArrayList<String>();
+		for (int i = 0; i < partitions; i++) {
+			lowerBounds.add("'(" + (i * width) + ",0)'::tid");
+		}
+		results = createRanges(qualifier + ".ctid", lowerBounds);
+		log.info("Split table " + tableName + " in " + partitions + " ranges of its " + pages + " pages.");
+		return results;
+	}
+	
+	/**
+	 * Splits the rows of an Oracle table in ranges of ROWIDs holding about the same number of rows
+	 */
+	private List<String> createRowidPartitions(String tableName, String qualifier, int partitions) throws SQLException {
+		List<String> results = new ArrayList<String>();
+		List<String> lowerBounds = new ArrayList<String>();
+		Statement st = connection.createStatement();
+		ResultSet rs = st.executeQuery("SELECT ROWIDTOCHAR(MIN(rid)) FROM (SELECT ROWID rid, NTILE(" + partitions + ") OVER (ORDER BY ROWID) grp FROM " 
+				+ tableName + ") GROUP BY grp ORDER BY grp");
+		while (rs.next()) {
+			lowerBounds.add(rs.getString(1));
+		}
+		rs.close();
+		st.close();
+		if (lowerBounds.size() < partitions) return results;
+		
+		List<String> rowids = new ArrayList<String>();
+		for (String lowerBound : lowerBounds) {
+			rowids.add("CHARTOROWID('" + lowerBound + "')");
+		}
+		results = createRanges(qualifier + ".ROWID", rowids);
+		log.info("Split table " + tableName + " in " + partitions + " ranges of ROWIDs.");
+		return results;
+	}
+	
+	/**
+	 * The columns of a table, in their order in the table. The name may be qualified with the schema of the table.
+	 * Returns an empty list when the table is not found.
+	 */
+	public synchronized List<String> findTableColumns(String tableName) {
+		String schema = null;
+		String table = tableName;
+		if (table.indexOf('.') != -1) {
+			schema = table.substring(0, table.indexOf('.'));
+			table = table.substring(table.indexOf('.') + 1);
+		}
+		try {
+			if (connection == null) openConnection();
+			TableMetadata tableMetadata = findTable(schema, table);
+			if (tableMetadata != null) return tableMetadata.getColumns();
+			log.error("Table " + tableName + " was not found.");
+		} catch (SQLException e) {
+			log.error("Error reading the columns of table " + tableName + ".", e);
+			recover(connection);
+		}
+		return new ArrayList<String>();
+	}
+	
+	/**
+	 * Finds the metadata of a table in the schema cache. A table without a schema is looked up in the current schema
+	 * of the connection, and a table whose name differs only in case is found when there is none with the exact name.
+	 * When the schema cache is kept in a file, the columns of all the tables are read at once the first time, and the ones
+	 * of a table of another schema are read when it is first needed. Otherwise the columns of each table are read when it
+	 * is first needed.
+	 */
+	private synchronized TableMetadata findTable(String schema, String table) throws SQLException {
+		SchemaCache cache = getSchemaCache();
+		if (!cache.hasTables() && cache.getFingerprint() != null) readTables(cache);
+		if (schema == null) schema = findCurrentSchema();
+		TableMetadata result = cache.getTable(schema, table);
+		if (result == null) {
+			DatabaseMetaData meta = connection.getMetaData();
+			String name = table;
+			result = readTable(meta, schema, name);
+			if (result == null) {
+				name = findTableNameIgnoreCase(meta, schema, table);
+				if (name != null) result = readTable(meta, schema, name);
+			}
+			if (result != null) cache.putTable(schema, name, result);
+		}
+		return result;
+	}
+	
+	/**
+	 * Reads the columns of a table. Null when there is no table with the exact name.
+	 */
+	private TableMetadata readTable(DatabaseMetaData meta, String schema, String table) throws SQLException {
+		TableMetadata result = null;
+		ResultSet rs = meta.getColumns(null, schema, table, "%");
+		while (rs.next()) {
+			//the name is a pattern, where an underscore matches any character
+			if (!table.equals(rs.getString("TABLE_NAME"))) continue;
+			if (result == null) result = new TableMetadata();
+			result.addColumn(rs.getString("COLUMN_NAME"), rs.getInt("DATA_TYPE"), rs.getInt("DECIMAL_DIGITS"));
+		}
+		rs.close();
+		return result;
+	}
+	
+	/**
+	 * The name of a table of a schema that differs from the given one only in case. Null when there is none.
+	 */
+	private String findTableNameIgnoreCase(DatabaseMetaData meta, String schema, String table) throws SQLException {
+		String result = null;
+		ResultSet rs = meta.getTables(null, schema, "%", null);
+		while (rs.next()) {
+			String name = rs.getString("TABLE_NAME");
+			if (name.equalsIgnoreCase(table)) {
+				result = name;
+				break;
+			}
+		}
+		rs.close();
+		return result;
+	}
+	
+	/**
+	 * The schema the database resolves unqualified table names in, i.e. the first existing schema of the search_path
+	 * in PostgreSQL and the current schema in Oracle. Null where there are no schemas, as in mysql.
+	 */
+	private String findCurrentSchema() throws SQLException {
+		if (!currentSchemaRead) {
+			DatabaseType databaseType = util.findDatabaseType(properties.getProperty("db.driver"));
+			if (databaseType != DatabaseType.MYSQL) {
+				try {
+					currentSchema = connection.getSchema();
+				} catch (AbstractMethodError e) {
+					//drivers older than jdbc 4.1
+					String query = null;
+					if (databaseType == DatabaseType.POSTGRESQL) {
+						query = "SELECT current_schema()";
+					} else if (databaseType == DatabaseType.ORACLE) {
+						query = "SELECT SYS_CONTEXT('USERENV', 'CURRENT_SCHEMA') FROM dual";
+					}
+					if (query != null) {
+						Statement st = connection.createStatement();
+						ResultSet rs = st.executeQuery(query);
+						if (rs.next()) currentSchema = rs.getString(1);
+						rs.close();
+						st.close();
+					}
+				}
+			}
+			currentSchemaRead = true;
+		}
+		return currentSchema;
+	}
+	
+	/**
+	 * Reads the columns of all the tables and views in a single pass over the metadata of the database:
+	 * the ones outside the system schemas in PostgreSQL, the ones of the current database in mysql,
+	 * and the ones of the user in Oracle.
+	 */
+	private void readTables(SchemaCache cache) throws SQLException {
+		long start = System.currentTimeMillis();
+		DatabaseType databaseType = util.findDatabaseType(properties.getProperty("db.driver"));
+		DatabaseMetaData meta = connection.getMetaData();
+		String catalog = null;
+		String schemaPattern = null;
+		if (databaseType == DatabaseType.MYSQL) {
+			catalog = connection.getCatalog();
+		} else if (databaseType == DatabaseType.ORACLE) {
+			schemaPattern = meta.getUserName();
+		}
+		ResultSet rs = meta.getColumns(catalog, schemaPattern, "%", "%");
+		String schema = null, table = null;
+		TableMetadata tableMetadata = null;
+		int count = 0;
+		while (rs.next()) {
+			String rowSchema = (databaseType == DatabaseType.MYSQL) ? null : rs.getString("TABLE_SCHEM");
+			if ("pg_catalog".equals(rowSchema) || "information_schema".equals(rowSchema)) continue;
+			String rowTable = rs.getString("TABLE_NAME");
+			if (tableMetadata == null || !StringUtils.equals(rowSchema, schema) || !rowTable.equals(table)) {
+				schema = rowSchema;
+				table = rowTable;
+				tableMetadata = new TableMetadata();
+				cache.putTable(schema, table, tableMetadata);
+				count++;
+			}
+			tableMetadata.addColumn(rs.getString("COLUMN_NAME"), rs.getInt("DATA_TYPE"), rs.getInt("DECIMAL_DIGITS"));
+		}
+		rs.close();
+		cache.setTablesRead();
+		log.info("Read the columns of " + count + " tables in " + (System.currentTimeMillis() - start) + " ms.");
+	}
+	
+	/**
+	 * The columns of the primary key of a table, read the first time they are needed. Empty if there is none.
+	 */
+	private List<String> findPrimaryKey(String schema, String table, TableMetadata tableMetadata) throws SQLException {
+		if (tableMetadata.getPrimaryKey() == null) {
+			ArrayList<String> key = new ArrayList<String>();
+			ResultSet rs = connection.getMetaData().getPrimaryKeys(null, schema, table);
+			while (rs.next()) {
+				key.add(rs.getString("COLUMN_NAME"));
+			}
+			rs.close();
+			tableMetadata.setPrimaryKey(key);
+			getSchemaCache().setModified();
+		}
+		return tableMetadata.getPrimaryKey();
+	}
+	
+	/**
+	 * A value that changes when tables or their columns are created, altered or dropped. Null when it cannot be read.
+	 * It is read once, the first time it is needed.
+	 */
+	public synchronized String getSchemaFingerprint() {
+		if (!schemaFingerprintRead) {
+			if (connection == null) openConnection();
+			schemaFingerprint = readSchemaFingerprint();
+			schemaFingerprintRead = true;
+		}
+		return schemaFingerprint;
+	}
+	
+	/**
+	 * Reads the schema cache kept by an earlier run, if the schema has not changed since. Otherwise the cache starts empty.
+	 * The fingerprint of the schema is only read when property db.schemaCache is set, since a cache that is not kept
+	 * in a file needs none.
+	 */
+	private synchronized SchemaCache getSchemaCache() {
+		if (schemaCache == null) {
+			if (connection == null) openConnection();
+			String fileName = StringUtils.trimToNull(properties.getProperty("db.schemaCache"));
+			String fingerprint = (fileName != null) ? getSchemaFingerprint() : null;
+			if (fingerprint != null) schemaCache = SchemaCache.load(new File(fileName), fingerprint);
+			if (schemaCache == null) schemaCache = new SchemaCache(fingerprint);
+		}
+		return schemaCache;
+	}
+	
+	/**
+	 * A value that changes when tables or their columns are created, altered or dropped. It is read with a single query
+	 * on the catalog, which is cheaper than reading the columns of every table. Null when it cannot be read, 
+	 * in which case the schema cache is not kept.
+	 */
+	private String readSchemaFingerprint() {
+		DatabaseType databaseType = util.findDatabaseType(properties.getProperty("db.driver"));
+		String query;
+		if (databaseType == DatabaseType.POSTGRESQL) {
+			query = "SELECT md5(string_agg(a.attrelid || '.' || a.attnum || ':' || a.attname || ':' || a.atttypid || ':' || a.atttypmod, ',' ORDER BY a.attrelid, a.attnum))"
+					+ " || md5(coalesce((SELECT string_agg(conrelid || ':' || conkey::text, ',' ORDER BY conrelid) FROM pg_constraint WHERE contype = 'p'), ''))"
+					+ " FROM pg_attribute a JOIN pg_class c ON c.oid = a.attrelid JOIN pg_namespace n ON n.oid = c.relnamespace"
+					+ " WHERE a.attnum > 0 AND NOT a.attisdropped AND c.relkind IN ('r', 'v', 'm', 'f', 'p') AND n.nspname NOT IN ('pg_catalog', 'information_schema')";
+		} else if (databaseType == DatabaseType.MYSQL) {
+			query = "SELECT CONCAT(COUNT(*), ':', SUM(CRC32(CONCAT_WS(':', TABLE_NAME, ORDINAL_POSITION, COLUMN_NAME, COLUMN_TYPE, COLUMN_KEY))))"
+					+ " FROM information_schema.COLUMNS WHERE TABLE_SCHEMA = DATABASE()";
+		} else if (databaseType == DatabaseType.ORACLE) {
+			query = "SELECT COUNT(*) || ':' || TO_CHAR(MAX(last_ddl_time), 'YYYYMMDDHH24MISS') FROM user_objects WHERE object_type IN ('TABLE', 'VIEW')";
+		} else {
+			return null;
+		}
+		try {
+			Statement st = connection.createStatement();
+			ResultSet rs = st.executeQuery(query);
+			String result = rs.next() ? rs.getString(1) : null;
+			rs.close();
+			st.close();
+			return (result != null) ? properties.getProperty("db.url") + " " + properties.getProperty("db.login") + " " + result : null;
+		} catch (SQLException e) {
+			log.error("Error reading the fingerprint of the schema. The schema cache will not be kept.", e);
+			recover(connection);
+			return null;
+		}
+	}
+	
+	/**
+	 * Unquotes an identifier, or converts it to the case the database stores unquoted identifiers in
+	 */
+	private String toMetaDataIdentifier(String identifier, DatabaseType databaseType) {
+		if (identifier == null) return null;
+		if ((identifier.startsWith("\"") && identifier.endsWith("\"")) || (identifier.startsWith("`") && identifier.endsWith("`"))) {
+			return identifier.substring(1, identifier.length() - 1);
+		} else if (databaseType == DatabaseType.POSTGRESQL) {
+			return identifier.toLowerCase();
+		} else if (databaseType == DatabaseType.ORACLE) {
+			return identifier.toUpperCase();
+		}
+		return identifier;
+	}
+	
+	/**
+	 * Closes the pool and the source connection, when the application context is closed
+	 */
+	public synchronized void close() {
+		String fileName = StringUtils.trimToNull(properties.getProperty("db.schemaCache"));
+		if (schemaCache != null && fileName != null) schemaCache.save(new File(fileName));
+		if (connectionPool != null) {
+			connectionPool.close();
+			connectionPool = null;
+		}
+		if (snapshotConnection != null) {
+			try {
+				snapshotConnection.rollback();
+				snapshotConnection.close();
+			} catch (SQLException e) {
+				log.error("Error closing the connection holding the snapshot.", e);
+			}
+			snapshotConnection = null;
+		}
+		if (connection != null) {
+			try {
+				connection.close();
+			} catch (SQLException e) {
+				log.error("Error closing source (relational) connection.", e);
+			}
+			connection = null;
+		}
+	}
+	
 	public Util getUtil() {
 		return util;
 	}
@@ -0,0 +1,79 @@
+package gr.seab.r2rml.beans;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Adapts the fetch size of a result set to the width of its rows. The first rows are measured, and the fetch size
+ * is set so that the rows fetched at a time fit in a memory budget. Large objects are not measured, since drivers
+ * fetch them separately.
+ *
+ */
+public class FetchSizeAdvisor {
+
+	private static final Logger log = LoggerFactory.getLogger(FetchSizeAdvisor.class);
+
+	/**
+	 * The rows measured before the fetch size is set
+	 */
+	private static final int SAMPLE_ROWS = 100;
+
+	/**
+	 * Approximate bytes used by a row and by each of its values in the buffers of a driver, besides their characters
+	 */
+	private static final int ROW_OVERHEAD = 64, VALUE_OVERHEAD = 40;
+
+	private static final int MIN_FETCH_SIZE = 10, MAX_FETCH_SIZE = 50000;
+
+	private final long memoryBudget;
+
+	private int rows;
+
+	private long bytes;
+
+	private boolean[] measured;
+
+	/**
+	 * @param memoryBudget the bytes the rows fetched at a time may use
+	 */
+	public FetchSizeAdvisor(long memoryBudget) {
+		this.memoryBudget = memoryBudget;
+	}
+
+	/**
+	 * Measures the current row, as long as the sample is not complete
+	 */
+	public void observe(ResultSet rs) throws SQLException {
+		if (rows >= SAMPLE_ROWS) return;
+		if (measured == null) {
+			ResultSetMetaData rsMeta = rs.getMetaData();
+			measured = new boolean[rsMeta.getColumnCount() + 1];
+			for (int i = 1; i <= rsMeta.getColumnCount(); i++) {
+				int type = rsMeta.getColumnType(i);
+				measured[i] = type != Types.BLOB && type != Types.CLOB && type != Types.NCLOB && type != Types.LONGVARBINARY
+						&& type != Types.LONGVARCHAR && type != Types.LONGNVARCHAR;
+			}
+		}
+		bytes += ROW_OVERHEAD;
+		for (int i = 1; i < measured.length; i++) {
+			bytes += VALUE_OVERHEAD;
+			if (measured[i]) {
+				String value = rs.getString(i);
+				if (value != null) bytes += 2 * value.length();
+			}
+		}
+		rows++;
+		if (rows == SAMPLE_ROWS) {
+			long rowBytes = bytes / rows;
+			int fetchSize = (int) Math.max(MIN_FETCH_SIZE, Math.min(MAX_FETCH_SIZE, memoryBudget / rowBytes));
+			log.info("Rows take about " + rowBytes + " bytes. Fetching " + fetchSize + " rows at a time.");
+			rs.setFetchSize(fetchSize);
+		}
+	}
+
+}
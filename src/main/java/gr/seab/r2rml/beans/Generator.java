@@ -1,13 +1,23 @@
 package gr.seab.r2rml.beans;
 
 import com.hp.hpl.jena.datatypes.RDFDatatype;
-import com.hp.hpl.jena.datatypes.xsd.XSDDatatype;
+import gr.seab.r2rml.beans.join.BatchJoin;
+import gr.seab.r2rml.beans.join.HashIndex;
+import gr.seab.r2rml.beans.join.HashJoin;
+import gr.seab.r2rml.beans.join.MatchHandler;
+import gr.seab.r2rml.beans.output.ModelTripleSink;
+import gr.seab.r2rml.beans.output.ProvenanceIndex;
+import gr.seab.r2rml.beans.output.StreamTripleSink;
+import gr.seab.r2rml.beans.output.TripleSink;
 import gr.seab.r2rml.entities.DatabaseType;
+import gr.seab.r2rml.entities.JoinCondition;
 import gr.seab.r2rml.entities.LogicalTableMapping;
 import gr.seab.r2rml.entities.MappingDocument;
 import gr.seab.r2rml.entities.PredicateObjectMap;
+import gr.seab.r2rml.entities.RefObjectMap;
 import gr.seab.r2rml.entities.Template;
 import gr.seab.r2rml.entities.TermType;
+import gr.seab.r2rml.entities.sql.JointQuery;
 import gr.seab.r2rml.entities.sql.SelectQuery;
 
 import java.io.BufferedWriter;
@@ -16,22 +26,39 @@ import java.io.FileNotFoundException;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
-import java.text.SimpleDateFormat;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.hp.hpl.jena.datatypes.BaseDatatype;
+import com.hp.hpl.jena.graph.Triple;
 import com.hp.hpl.jena.query.Dataset;
 import com.hp.hpl.jena.query.ReadWrite;
 import com.hp.hpl.jena.rdf.model.AnonId;
@@ -40,14 +67,11 @@ import com.hp.hpl.jena.rdf.model.Model;
 import com.hp.hpl.jena.rdf.model.ModelFactory;
 import com.hp.hpl.jena.rdf.model.Property;
 import com.hp.hpl.jena.rdf.model.RDFNode;
-import com.hp.hpl.jena.rdf.model.RSIterator;
-import com.hp.hpl.jena.rdf.model.ReifiedStatement;
 import com.hp.hpl.jena.rdf.model.Resource;
 import com.hp.hpl.jena.rdf.model.Statement;
 import com.hp.hpl.jena.rdf.model.StmtIterator;
 import com.hp.hpl.jena.tdb.TDBFactory;
 import com.hp.hpl.jena.util.FileManager;
-import com.hp.hpl.jena.vocabulary.DC;
 import com.hp.hpl.jena.vocabulary.RDF;
 
 /**
@@ -59,6 +83,12 @@ public class Generator {
 
 	private static final Logger log = LoggerFactory.getLogger(Generator.class);
 	
+	/**
+	 * The least number of ranges per thread a partitioned logical table is split in, so that the threads that finish
+	 * their ranges early take the remaining ones instead of waiting for the slowest range
+	 */
+	private static final int RANGES_PER_THREAD = 4;
+	
 	/**
 	 * The resulting model, containing the input model and all the generated triples
 	 */
@@ -76,13 +106,67 @@ public class Generator {
 	private boolean verbose;
 	private boolean incremental;
 	private boolean storeOutputModelInTdb;
-	private boolean writeReifiedModel;
+	private boolean keepProvenance;
+	
+	/**
+	 * Whether incremental dumps keep the triples of each row, and regenerate only the rows that changed, according to property default.incrementalRows
+	 */
+	private boolean incrementalRows;
 	private boolean encodeURLs;
 	private boolean forceUri;
 	
+	/**
+	 * How referencing object maps with a join condition are executed, according to property default.joinStrategy
+	 */
+	private String joinStrategy;
+	
+	/**
+	 * Whether the rows of the logical tables are read with COPY in PostgreSQL, according to property default.extraction
+	 */
+	private boolean copyExtraction;
+	
+	/**
+	 * Whether the logical table mappings with the same select query are generated from a single scan, according to property default.sharedScans
+	 */
+	private boolean sharedScans;
+	
+	/**
+	 * The maximum bytes of a binary value, or characters of a character large object, according to property default.lobMaxSize
+	 */
+	private long maxLobSize;
+	
+	/**
+	 * Whether a larger value stops the generation, according to property default.lobOversize
+	 */
+	private boolean failOnOversizeLob;
+	
 	private Model logModel;
-
-	private static final SimpleDateFormat xsdDateFormat = new SimpleDateFormat("yyyy-MM-dd");
+	
+	/**
+	 * The triples generated by each logical table mapping, kept in incremental mode so that the triples
+	 * of a changed mapping can be replaced. Null when not kept.
+	 */
+	private ProvenanceIndex provenance;
+	
+	/**
+	 * The digests of the results of the logical table mappings by uri, computed on the scan that generated their triples,
+	 * or on the scan that found them unchanged. Logged in incremental mode, so that no query is executed again for it.
+	 */
+	private HashMap<String, String> resultsHashes = new HashMap<String, String>();
+	
+	/**
+	 * The greatest values of the watermark columns of the logical table mappings by uri, logged in incremental mode
+	 * so that the next run reads only the rows after them, along with the jdbc types of the columns
+	 */
+	private HashMap<String, String> watermarks = new HashMap<String, String>();
+	
+	private HashMap<String, Integer> watermarkTypes = new HashMap<String, Integer>();
+	
+	/**
+	 * Receives the generated triples. Unless streaming is enabled, they are added to the result model.
+	 */
+	private TripleSink sink;
+	
 		
 	public Generator() {
 	}
@@ -92,27 +176,45 @@ public class Generator {
 		storeOutputModelInTdb = properties.containsKey("jena.storeOutputModelUsingTdb") && properties.getProperty("jena.storeOutputModelUsingTdb").contains("true");
 		incremental = !storeOutputModelInTdb && properties.containsKey("default.incremental") && properties.getProperty("default.incremental").contains("true");
 		encodeURLs = properties.containsKey("jena.encodeURLs") && properties.getProperty("jena.encodeURLs").contains("true");
-		writeReifiedModel = incremental;
+		keepProvenance = incremental;
+		incrementalRows = keepProvenance && properties.getProperty("default.incrementalRows", "false").contains("true");
 		forceUri = properties.containsKey("default.forceURI") && properties.getProperty("default.forceURI").contains("true");
+		joinStrategy = properties.getProperty("default.joinStrategy", "pushdown").trim().toLowerCase();
+		if (!"pushdown".equals(joinStrategy) && !"hash".equals(joinStrategy) && !"batch".equals(joinStrategy)) {
+			log.error("Unknown join strategy " + joinStrategy + ". Valid values are pushdown, hash and batch. Terminating.");
+			System.exit(1);
+		}
+		String extraction = properties.getProperty("default.extraction", "jdbc").trim().toLowerCase();
+		if (!"jdbc".equals(extraction) && !"copy".equals(extraction)) {
+			log.error("Unknown extraction " + extraction + ". Valid values are jdbc and copy. Terminating.");
+			System.exit(1);
+		}
+		copyExtraction = "copy".equals(extraction) && mappingDocument.getDatabaseType() == DatabaseType.POSTGRESQL;
+		sharedScans = !properties.containsKey("default.sharedScans") || properties.getProperty("default.sharedScans").contains("true");
+		maxLobSize = Long.parseLong(properties.getProperty("default.lobMaxSize", "64").trim()) * 1024 * 1024;
+		if (maxLobSize <= 0) maxLobSize = Long.MAX_VALUE;
+		String lobOversize = properties.getProperty("default.lobOversize", "skip").trim().toLowerCase();
+		if (!"skip".equals(lobOversize) && !"fail".equals(lobOversize)) {
+			log.error("Unknown policy " + lobOversize + " for oversize values. Valid values are skip and fail. Terminating.");
+			System.exit(1);
+		}
+		failOnOversizeLob = "fail".equals(lobOversize);
 		
 		String destinationFileName = properties.getProperty("jena.destinationFileName");
 		int dot = destinationFileName.lastIndexOf('.') > -1 ? destinationFileName.lastIndexOf('.') : destinationFileName.length();
-		String reifiedModelFileName = destinationFileName.substring(0, dot) + "-reified" + destinationFileName.substring(dot);
+		String provenanceFileName = destinationFileName.substring(0, dot) + "-provenance.nt";
 		
 		logModel = ModelFactory.createDefaultModel();
 		String logNs = properties.getProperty("default.namespace");
 		logModel.setNsPrefix("log", logNs);
+		provenance = keepProvenance ? new ProvenanceIndex() : null;
 		if (incremental) {
-			InputStream isMap = FileManager.get().open(reifiedModelFileName);
-			resultModel = ModelFactory.createDefaultModel();
 			try {
-				resultModel.read(isMap, null, "N-TRIPLE");
+				provenance = ProvenanceIndex.read(new File(provenanceFileName));
 			} catch (Exception e) {
 				log.error(e.toString());
-				log.error("Error reading last run model. Cannot proceed with incremental, going for a full run."); // Please change property default.incremental in file r2rml.properties to false.
-				resultModel.setNsPrefixes(mappingDocument.getPrefixes());
+				log.error("Error reading last run provenance. Cannot proceed with incremental, going for a full run."); // Please change property default.incremental in file r2rml.properties to false.
 				incremental = false;
-				writeReifiedModel = true;
 				//System.exit(0);
 			}
 			
@@ -125,40 +227,39 @@ public class Generator {
 				log.error(e.toString());
 				log.error("Error reading log. Cannot proceed with incremental, going for a full run."); //Please change property default.incremental in file r2rml.properties to false.
 				incremental = false;
-				writeReifiedModel = true;
 				//System.exit(0);
 			}
 			
-			//remove any old statements. Set instead of a List would disallow duplicates but perform worse
-			ArrayList<Statement> statementsToRemove = new ArrayList<Statement>();
-			StmtIterator stmtIter = resultModel.listStatements();
-			while (stmtIter.hasNext()) {
-				Statement stmt = stmtIter.next();
-				Resource type = stmt.getSubject().getPropertyResourceValue(RDF.type);
-				if (type == null || !type.equals(RDF.Statement)) {  
-					statementsToRemove.add(stmt);
-				}
+			//remove the triples of the mappings no longer in the mapping document
+			Set<String> mappingUris = new HashSet<String>();
+			for (LogicalTableMapping logicalTableMapping : mappingDocument.getLogicalTableMappings()) {
+				mappingUris.add(logicalTableMapping.getUri());
 			}
-			stmtIter.close();
-			resultModel.remove(statementsToRemove); //.toArray(new Statement[statementsToRemove.size()]));
-			log.info("Removed " + statementsToRemove.size() + " old statements.");
+			long removed = provenance.retainSegments(mappingUris);
+			if (removed > 0) log.info("Removed " + removed + " old statements of logical table mappings no longer in the mapping document.");
 		}
 
+		sink = createSink(destinationFileName);
+		sink.open(resultModel);
+		
+		//the subjects of a logical table mapping need to be kept only when referenced by a parentTriplesMap without a joinCondition
+		Set<String> referencedMappingUris = new HashSet<String>();
+		for (LogicalTableMapping logicalTableMapping : mappingDocument.getLogicalTableMappings()) {
+			for (PredicateObjectMap predicateObjectMap : logicalTableMapping.getPredicateObjectMaps()) {
+				if (predicateObjectMap.getRefObjectMap() != null && predicateObjectMap.getRefObjectMap().getParentTriplesMapUri() != null
+						&& !predicateObjectMap.getRefObjectMap().hasJoinConditions()) {
+					referencedMappingUris.add(predicateObjectMap.getRefObjectMap().getParentTriplesMapUri());
+				}
+			}
+		}
+		
 		boolean executeAllMappings = false;
 		int mappingsExecuted = 0;
 		
-		//if there are no reified statements in the result model, this means that last time incremental was set to false
-		//so we need to re-create the model only reified statements
+		//if there is no provenance from the last run, this means that last time incremental was set to false
+		//so we need to re-create the provenance of all the mappings
 		if (incremental) {
-			try {
-				RSIterator rsIter = resultModel.listReifiedStatements();
-				if (!rsIter.hasNext()) {
-					executeAllMappings = true;
-				}
-				rsIter.close();
-			} catch (Exception e) {
-				log.error(e.toString());
-				log.error("Error trying to read destination file. Forcing full mapping.");
+			if (provenance.isEmpty()) {
 				executeAllMappings = true;
 			}
 			
@@ -171,11 +272,11 @@ public class Generator {
 					log.info("Destination file size was found " + actualFileSize + " bytes while it should be " + fileSizeInLogFile + " bytes. Forcing full mapping.");
 					executeAllMappings = true;
 				}
-				Statement stmt2 = r.getProperty(logModel.getProperty(logNs + "reifiedModelFileSize"));
-				Long reifiedModelFileSizeInLogFile = Long.valueOf(stmt2.getObject().toString());
-				Long actualReifiedModelFileSize = new Long(new File(reifiedModelFileName).length());
-				if (reifiedModelFileSizeInLogFile.longValue() != actualReifiedModelFileSize.longValue()) {
-					log.info("Destination reified model file size was found " + actualFileSize + " bytes while it should be " + fileSizeInLogFile + " bytes. Forcing full mapping.");
+				Statement stmt2 = r.getProperty(logModel.getProperty(logNs + "provenanceFileSize"));
+				Long provenanceFileSizeInLogFile = Long.valueOf(stmt2.getObject().toString());
+				Long actualProvenanceFileSize = new Long(new File(provenanceFileName).length());
+				if (provenanceFileSizeInLogFile.longValue() != actualProvenanceFileSize.longValue()) {
+					log.info("Provenance file size was found " + actualProvenanceFileSize + " bytes while it should be " + provenanceFileSizeInLogFile + " bytes. Forcing full mapping.");
 					executeAllMappings = true;
 				}
 			} catch (Exception e) {
@@ -185,388 +286,135 @@ public class Generator {
 			}
 		}
 		
-		int iterCount = 0;
-		for (LogicalTableMapping logicalTableMapping : mappingDocument.getLogicalTableMappings()) {
-			boolean executeMapping = true;
+		int threads = Integer.parseInt(properties.getProperty("default.threads", "1").trim());
+		if (threads > 1 && keepProvenance) {
+			log.info("Incremental dumps keep the provenance of the triples in memory. Executing logical table mappings in a single thread.");
+			threads = 1;
+		}
+		
+		if (threads > 1) {
+			mappingsExecuted = executeInParallel(mappingDocument, referencedMappingUris, threads);
+		} else {
+			for (List<LogicalTableMapping> scan : groupScans(mappingDocument)) {
+				List<MappingExecution> executions = new ArrayList<MappingExecution>();
+				List<MappingExecution> generated = new ArrayList<MappingExecution>();
+				String scanResultsHash = null;
+				for (LogicalTableMapping logicalTableMapping : scan) {
+					boolean executeMapping = true;
+					boolean keepRows = isKeptByRow(logicalTableMapping, referencedMappingUris);
+					boolean changedRowsOnly = false;
+					String lastWatermark = null;
+					Object lastWatermarkValue = null;
+					int lastWatermarkType = Types.NULL;
+					String lastResultsHash = null;
 			
-			if (incremental) {
-				HashMap<String, String> lastRunStatistics = new HashMap<String, String>(); 
-				Resource lastRunLogicalTableMapping = logModel.getResource(logicalTableMapping.getUri());
-				StmtIterator iter = lastRunLogicalTableMapping.listProperties();
-				while (iter.hasNext()) {
-					Statement stmt = iter.next();
-					Property prop = stmt.getPredicate();
+					if (incremental) {
+						HashMap<String, String> lastRunStatistics = new HashMap<String, String>(); 
+						Resource lastRunLogicalTableMapping = logModel.getResource(logicalTableMapping.getUri());
+						StmtIterator iter = lastRunLogicalTableMapping.listProperties();
+						while (iter.hasNext()) {
+							Statement stmt = iter.next();
+							Property prop = stmt.getPredicate();
 					
-					RDFNode node = stmt.getObject();
-					if (verbose) log.info("Found in last time log " + prop.getLocalName() + " " + node.toString());
-			        lastRunStatistics.put(prop.getLocalName(), node.toString());
-				}
-				iter.close();
+							RDFNode node = stmt.getObject();
+							if (verbose) log.info("Found in last time log " + prop.getLocalName() + " " + node.toString());
+					        lastRunStatistics.put(prop.getLocalName(), node.toString());
+						}
+						iter.close();
 				
-				//selectQueryHash logicalTableMappingHash selectQueryResultsHash tripleCount timestamp
-				String selectQueryHash = util.md5(logicalTableMapping.getView().getSelectQuery().getQuery());
+						//selectQueryHash logicalTableMappingHash selectQueryResultsHash tripleCount timestamp
+						String selectQueryHash = util.md5(logicalTableMapping.getView().getSelectQuery().getQuery());
 
-				String logicalTableMappingHash = util.md5(logicalTableMapping);
+						String logicalTableMappingHash = util.md5(logicalTableMapping);
 
-				java.sql.Statement st = db.newStatement();
-				try {
-					ResultSet rsSelectQueryResultsHash = st.executeQuery(logicalTableMapping.getView().getSelectQuery().getQuery());
-					String selectQueryResultsHash = util.md5(rsSelectQueryResultsHash);
-
-					if (selectQueryHash.equals(lastRunStatistics.get("selectQueryHash"))
-							&& logicalTableMappingHash.equals(lastRunStatistics.get("logicalTableMappingHash"))
-							&& selectQueryResultsHash.equals(lastRunStatistics.get("selectQueryResultsHash"))) {
-						executeMapping = false || executeAllMappings;
-						if (verbose) {
-							if (!executeMapping) {
-								log.info("Will skip triple generation from " + logicalTableMapping.getUri() + ". Found the same (a) select query (b) logical table mapping and (c) select query results.");
+						//the results are compared only when nothing else has changed, otherwise the mapping is executed anyway
+						if (!executeAllMappings && selectQueryHash.equals(lastRunStatistics.get("selectQueryHash"))
+								&& logicalTableMappingHash.equals(lastRunStatistics.get("logicalTableMappingHash"))) {
+							if (isAppendOnly(logicalTableMapping, referencedMappingUris) && lastRunStatistics.containsKey("selectQueryResultsHash")
+									&& (lastWatermarkValue = readWatermark(lastRunStatistics)) != null) {
+								//only the rows after the watermark of the last run are read, and their triples are added to the ones kept
+								lastWatermark = lastRunStatistics.get("watermark");
+								lastWatermarkType = Integer.parseInt(lastRunStatistics.get("watermarkType"));
+								lastResultsHash = lastRunStatistics.get("selectQueryResultsHash");
+							} else if (keepRows && provenance.hasRows(logicalTableMapping.getUri())) {
+								//the rows are compared with the ones of the last run while they are scanned, so the results are not read beforehand
+								changedRowsOnly = true;
+							} else {
+								//the mappings of a shared scan have the same results, so they are read once
+								if (scanResultsHash == null) scanResultsHash = readResultsHash(logicalTableMapping);
+							}
+							if (lastWatermark == null && !changedRowsOnly && scanResultsHash != null && scanResultsHash.equals(lastRunStatistics.get("selectQueryResultsHash"))) {
+								executeMapping = false;
+								resultsHashes.put(logicalTableMapping.getUri(), scanResultsHash);
+								if (verbose) log.info("Will skip triple generation from " + logicalTableMapping.getUri() + ". Found the same (a) select query (b) logical table mapping and (c) select query results.");
 							}
 						}
 					}
-				} catch (SQLException sqle) {
-					log.error("Failed to execute query: " + logicalTableMapping.getView().getSelectQuery().getQuery(), sqle);
-				} finally {
-					try { st.close(); } catch (SQLException e) { /* ignore exception */ }
-				}
-				
-			}
 			
-			ArrayList<String> subjects = new ArrayList<String>();
-			if (executeMapping) {
-				mappingsExecuted++;
+					//the mappings after the first of a shared scan write to parts of the output, appended after the scan
+					TripleSink executionSink = executions.isEmpty() ? sink : sink.createPart();
+					MappingExecution execution = new MappingExecution(logicalTableMapping, executionSink, referencedMappingUris.contains(logicalTableMapping.getUri()));
+					executions.add(execution);
+					if (keepRows) execution.rows = new LinkedHashMap<String, List<Triple>>();
+					if (lastWatermark != null) {
+						execution.previousWatermark = lastWatermark;
+						execution.previousWatermarkValue = lastWatermarkValue;
+						execution.watermark = lastWatermark;
+						execution.watermarkType = lastWatermarkType;
+						execution.previousDigest = lastResultsHash;
+						if (keepRows) {
+							//the rows kept from the last run are extended with the new ones, otherwise the new triples are added to the kept segment
+							execution.previousRows = provenance.getRows(logicalTableMapping.getUri());
+							execution.rows = (execution.previousRows != null) ? new LinkedHashMap<String, List<Triple>>(execution.previousRows) : null;
+						}
+						generated.add(execution);
+					} else if (changedRowsOnly) {
+						execution.previousRows = provenance.getRows(logicalTableMapping.getUri());
+						generated.add(execution);
+					} else if (executeMapping) {
+						mappingsExecuted++;
 				
-				if (incremental) {
-					//Since we are executing the mapping again, we are removing old statements and their respective reifications
-					ArrayList<ReifiedStatement> reificationsToRemove = new ArrayList<ReifiedStatement>();
-					resultModel.listReifiedStatements();
-					RSIterator rsExistingIter = resultModel.listReifiedStatements();
-					while (rsExistingIter.hasNext()) {
-						ReifiedStatement rstmt = rsExistingIter.next();
-						Statement st = rstmt.getProperty(DC.source);
-						String source = st.getObject().toString();
-						if (mappingDocument.findLogicalTableMappingByUri(source) != null) {
-							if (logicalTableMapping.getUri().equals(source)) {
-								reificationsToRemove.add(rstmt);
-							}
-						} else {
-							reificationsToRemove.add(rstmt);
+						if (incremental) {
+							//Since we are executing the mapping again, we are removing its old statements
+							long removed = provenance.removeSegment(logicalTableMapping.getUri());
+							log.info("Removing " + removed + " old statements from source " + logicalTableMapping.getUri() + ".");
 						}
+				
+						generated.add(execution);
+					} else {
+						log.info("Skipping triple generation from " + logicalTableMapping.getUri() + ". Nothing changed here.");
 					}
-					rsExistingIter.close();
-					
-					//Remove the reified statement itself, i.e. [] a rdf:Statement ; rdf:subject ... ; rdf:predicate ; rdf:object ... ;
-					//but also remove the statements having this statement as a subject and dc:source as a property
-					ArrayList<Statement> statementsToRemove = new ArrayList<Statement>();
-					for (ReifiedStatement rstmt : reificationsToRemove) {
-						statementsToRemove.add(rstmt.getRequiredProperty(DC.source));
-						//Also remove the statement itself
-						statementsToRemove.add(rstmt.getStatement());
-					}
-					
-					for (ReifiedStatement rstmt : reificationsToRemove) {
-						resultModel.removeReification(rstmt);
-					}
-					
-					log.info("Removing " + statementsToRemove.size() + " old statements and " + reificationsToRemove.size() + " old reified statements from source " + logicalTableMapping.getUri() + ".");
-					//log.info("statementsToRemove are " + statementsToRemove.size() + " statements.");
-					resultModel.remove(statementsToRemove); //.toArray(new Statement[statementsToRemove.size()]));
 				}
 				
 				//Then insert the newly generated ones
-				SelectQuery selectQuery = logicalTableMapping.getView().getSelectQuery();
-
-				java.sql.Statement sqlStmt = db.newStatement();
-
-				try {
-					ResultSet rs = sqlStmt.executeQuery(selectQuery.getQuery());
-
-					if (verbose) log.info("Iterating over " + selectQuery.getQuery());
-					rs.beforeFirst();
-					while (rs.next()) {
-						Template subjectTemplate = logicalTableMapping.getSubjectMap().getTemplate();
-						String resultSubject = (subjectTemplate != null) ? util.fillTemplate(subjectTemplate, rs, encodeURLs) : null;
-						
-						if (resultSubject != null) {
-							//if (StringUtils.isNotEmpty(logicalTableMapping.getSubjectMap().getClassUri())) {
-							if (logicalTableMapping.getSubjectMap().getClassUris() != null && logicalTableMapping.getSubjectMap().getClassUris().size() > 0) {
-								for (String classUri : logicalTableMapping.getSubjectMap().getClassUris()) {
-									Resource s = null; //resultModel.createResource();
-									if (verbose) log.info("Subject termType: " + subjectTemplate.getTermType().toString());
-									//we cannot have a literal as a subject, it has to be an iri or a blank node
-									if (subjectTemplate.getTermType() == TermType.IRI || subjectTemplate.getTermType() == TermType.LITERAL) {
-										s = resultModel.createResource(resultSubject);
-									} else if (subjectTemplate.getTermType() == TermType.BLANKNODE) {
-										s = resultModel.createResource(AnonId.create(resultSubject));
-										if (verbose) log.info("Created blank node subject with id " + s.getId());
-									} else {
-										s = resultModel.createResource(resultSubject);
-									}
-									
-									Property p = RDF.type;
-									Resource o = resultModel.createResource(classUri);
-									Statement st = resultModel.createStatement(s, p, o);
-									if (verbose) log.info("Adding triple: <" + s.getURI() + ">, <" + p.getURI() + ">, <" + o.getURI() + ">");
-									subjects.add(st.getSubject().getURI());
-									if (incremental || writeReifiedModel) {
-										ReifiedStatement rst = resultModel.createReifiedStatement(st);
-										rst.addProperty(DC.source, resultModel.createResource(logicalTableMapping.getUri()));
-									} else {
-										resultModel.add(st);										
-									}
-								}
-							}
-							
-							//for (int i = 0; i < logicalTableMapping.getPredicateObjectMaps()  resultPredicates.size(); i++) {
-							for (PredicateObjectMap predicateObjectMap : logicalTableMapping.getPredicateObjectMaps()) {
-								Resource s = null; //resultModel.createResource();
-								if (verbose) log.info("Subject termType: " + subjectTemplate.getTermType().toString());
-								if (subjectTemplate.getTermType() == TermType.IRI || subjectTemplate.getTermType() == TermType.LITERAL) {
-									s = resultModel.createResource(resultSubject);
-								} else if (subjectTemplate.getTermType() == TermType.BLANKNODE) {
-									s = resultModel.createResource(AnonId.create(resultSubject));
-									if (verbose) log.info("Created blank node subject with id " + s.getId());
-								} else {
-									s = resultModel.createResource(resultSubject);
-								}
-								
-								Template objectTemplate = predicateObjectMap.getObjectTemplate();
-								if (verbose) {
-									if (objectTemplate != null && objectTemplate.getTermType() != null) {
-										log.info("Object type is " + objectTemplate.getTermType().toString());
-									} else {
-										log.info("Object type is null");
-									}
-								}
-								
-								for (String predicate : predicateObjectMap.getPredicates()) {
-									
-									Property p = resultModel.createProperty(predicate);
-									
-									if (objectTemplate != null && objectTemplate.getTermType() != TermType.AUTO) {
-										//Literal o = resultModel.createLiteral(u.fillTemplate(predicateObjectMap.getObjectTemplate(), rs));
-										//if (!util.isUriTemplate(resultModel, predicateObjectMap.getObjectTemplate())) {
-										if (objectTemplate.getTermType() == TermType.LITERAL) {
-											Literal o = null;
-											
-											if (predicateObjectMap.getObjectTemplate().getLanguage() == null || "".equals(predicateObjectMap.getObjectTemplate().getLanguage())) {
-												String value = util.fillTemplate(objectTemplate, rs, encodeURLs);
-												if (value != null)  {
-													if (predicateObjectMap.getDataType() != null) {
-														o = resultModel.createTypedLiteral(value, predicateObjectMap.getDataType());
-														if (verbose) log.info("Adding typed literal triple: <" + s.getURI() + ">, <" + p.getURI() + ">, \"" + o.getString() + "\"^^" + predicateObjectMap.getDataType().getURI());
-													} else {
-														o = resultModel.createLiteral(value);
-														if (verbose) log.info("Adding literal triple: <" + s.getURI() + ">, <" + p.getURI() + ">, \"" + o.getString() + "\"");
-													}
-												}
-											} else {
-												String language = predicateObjectMap.getObjectTemplate().getLanguage();
-												String value = util.fillTemplate(objectTemplate, rs, encodeURLs);
-												if (value != null) {
-													o = resultModel.createLiteral(value, language);
-													if (verbose) log.info("Adding literal triple with language: <" + s.getURI() + ">, <" + p.getURI() + ">, \"" + o.getString() + "\"@" + o.getLanguage());
-												}
-											}
-											
-											if (o != null) {
-												if (forceUri && o.getString().startsWith("http")) {
-													if (verbose) log.info("Changing literal to URI: <" + o.getString() + ">");
-													RDFNode oToUri = resultModel.createResource(o.getString());
-													
-													Statement st = resultModel.createStatement(s, p, oToUri);
-													subjects.add(st.getSubject().getURI());
-													if (incremental || writeReifiedModel) {
-														ReifiedStatement rst = resultModel.createReifiedStatement(st);
-														rst.addProperty(DC.source, resultModel.createResource(logicalTableMapping.getUri()));
-													} else {
-														resultModel.add(st);
-													}
-												} else {
-													Statement st = resultModel.createStatement(s, p, o);
-													subjects.add(st.getSubject().getURI());
-													if (incremental || writeReifiedModel) {
-														ReifiedStatement rst = resultModel.createReifiedStatement(st);
-														rst.addProperty(DC.source, resultModel.createResource(logicalTableMapping.getUri()));
-													} else {
-														resultModel.add(st);
-													}
-												}
-											}
-										} else if (objectTemplate.getTermType() == TermType.IRI) {
-											if (verbose) log.info("Filling in IRI template " + objectTemplate.getText());
-											String value = util.fillTemplate(objectTemplate, rs, encodeURLs);
-											if (value != null) {
-												RDFNode o = resultModel.createResource(value);
-												if (verbose) log.info("Adding resource triple: <" + s.getURI() + ">, <" + p.getURI() + ">, <" + o.asResource().getURI() + ">");
-												Statement st = resultModel.createStatement(s, p, o);
-												subjects.add(st.getSubject().getURI());
-												if (incremental || writeReifiedModel) {
-													ReifiedStatement rst = resultModel.createReifiedStatement(st);
-													rst.addProperty(DC.source, resultModel.createResource(logicalTableMapping.getUri()));
-												} else {
-													resultModel.add(st);
-												}
-											}
-										} else if (objectTemplate.getTermType() == TermType.BLANKNODE) {
-											if (verbose) log.info("filling in blanknode template " + objectTemplate.getText());
-											String value = util.fillTemplate(objectTemplate, rs, encodeURLs);
-											if (value != null) {
-												RDFNode o = resultModel.createResource(AnonId.create(value));
-												if (verbose) log.info("Adding resource triple: <" + s.getURI() + ">, <" + p.getURI() + ">, <" + o.asResource().getURI() + ">");
-												Statement st = resultModel.createStatement(s, p, o);
-												subjects.add(st.getSubject().getURI());
-												if (incremental || writeReifiedModel) {
-													ReifiedStatement rst = resultModel.createReifiedStatement(st);
-													rst.addProperty(DC.source, resultModel.createResource(logicalTableMapping.getUri()));
-												} else {
-													resultModel.add(st);
-												}
-											}
-										}
-									} else if (predicateObjectMap.getObjectColumn() != null) {
-										String field = predicateObjectMap.getObjectColumn();
-										if (field.startsWith("\"") && field.endsWith("\"")) {
-											field = field.replaceAll("\"", "");
-											//log.info("Cleaning. Field is now " + field);
-										}
-										
-										String test = getStringValue(field, rs);
-										BaseDatatype xsdDataType = findFieldDataType(field, rs);
-										predicateObjectMap.setDataType(xsdDataType);
-
-										if (test != null) {
-											Literal o;
-											if (predicateObjectMap.getObjectTemplate().getLanguage() == null || "".equals(predicateObjectMap.getObjectTemplate().getLanguage())) {
-												
-												if (predicateObjectMap.getDataType() != null) {
-													o = resultModel.createTypedLiteral(test, predicateObjectMap.getDataType());
-													if (verbose) log.info("Adding typed literal triple: <" + s.getURI() + ">, <" + p.getURI() + ">, \"" + o.getString() + "\"^^" + predicateObjectMap.getDataType().getURI());
-												} else {
-													o = resultModel.createLiteral(test);
-													if (verbose) log.info("Adding literal triple: <" + s.getURI() + ">, <" + p.getURI() + ">, \"" + o.getString() + "\"");
-												}
-											} else {
-												String language = predicateObjectMap.getObjectTemplate().getLanguage();
-												o = resultModel.createLiteral(test, language);
-												if (verbose) log.info("Adding triple with language: <" + s.getURI() + ">, <" + p.getURI() + ">, \"" + o.getString() + "\"@" + predicateObjectMap.getObjectTemplate().getLanguage());
-											}
-											
-											Statement st = resultModel.createStatement(s, p, o);
-											subjects.add(st.getSubject().getURI());
-											if (incremental || writeReifiedModel) {
-												ReifiedStatement rst = resultModel.createReifiedStatement(st);
-												rst.addProperty(DC.source, resultModel.createResource(logicalTableMapping.getUri()));
-											} else {
-												resultModel.add(st);
-											}
-										}
-									} else if (predicateObjectMap.getRefObjectMap() != null && predicateObjectMap.getRefObjectMap().getParentTriplesMapUri() != null) {
-										if (predicateObjectMap.getRefObjectMap().getParent() != null && predicateObjectMap.getRefObjectMap().getChild() != null) {
-											
-											if (verbose) log.info("Object URIs will be the subjects of the referenced triples, created previously by the logical table mapping with the uri " + predicateObjectMap.getRefObjectMap().getParentTriplesMapUri() 
-													+ " with a rr:joinCondition containing rr:child " + predicateObjectMap.getRefObjectMap().getChild() + " and rr:parent " + predicateObjectMap.getRefObjectMap().getParent());
-											LogicalTableMapping l = mappingDocument.findLogicalTableMappingByUri(predicateObjectMap.getRefObjectMap().getParentTriplesMapUri());
-											
-											String childValue = rs.getString(predicateObjectMap.getRefObjectMap().getChild().replaceAll("\"", "")); //table names need to be e.g. Sport instead of "Sport", and this is why we remove the quotes
-											if (childValue != null && !StringUtils.isNumeric(childValue)) {
-												childValue = "'" + childValue + "'";
-											}
-											if (verbose) log.info("child value is " + childValue); 
-											
-											SelectQuery parentQuery;
-											if (l.getSubjectMap().getSelectQuery() != null) {
-												parentQuery = l.getSubjectMap().getSelectQuery();
-											} else {
-												parentQuery = l.getView().getSelectQuery(); //assure the select query is not null
-											}
-											String parentQueryText = parentQuery.getQuery();
-											
-											if (parentQuery.getTables().size() == 1) {
-												String parentFieldName = predicateObjectMap.getRefObjectMap().getParent();
-												if (mappingDocument.getDatabaseType() == DatabaseType.MYSQL) parentFieldName = parentFieldName.replaceAll("\"", ""); //in mysql, table names must not be enclosed in quotes
-												boolean containsWhere = parentQueryText.toLowerCase().contains("where");
-												String addition = (containsWhere ? " AND " : " WHERE ") + parentFieldName + " = " + childValue;
-												int order = parentQueryText.toUpperCase().indexOf("ORDER BY");
-												if (order != -1) {
-													String orderCondition = parentQueryText.substring(order);
-													parentQueryText = parentQueryText.substring(0, order) + addition + " " + orderCondition;
-												} else {
-													parentQueryText += addition;
-												}
-											} else {
-												log.error("In the logical table mapping <" + logicalTableMapping.getUri() + ">, the SQL query that generates the parent triples in the parent logical table mapping <" + l.getUri() + "> contains results from more than one tables. " +
-													" Consider using rr:tableName instead of rr:sqlQuery in the parent logical table mapping. Terminating.");
-												System.exit(1);
-											}
-											
-											if (verbose) log.info("Modified parent SQL query to " + parentQuery);
-											java.sql.Statement parentSqlStmt = db.newStatement();
-											ResultSet rsParent = parentSqlStmt.executeQuery(parentQueryText);
-											rsParent.beforeFirst();
-											while (rsParent.next()) {
-												Template parentTemplate = l.getSubjectMap().getTemplate();
-												String parentSubject = util.fillTemplate(parentTemplate, rsParent, encodeURLs);
-												RDFNode o = resultModel.createResource(parentSubject);
-												Statement st = resultModel.createStatement(s, p, o);
-												if (verbose) log.info("Adding triple referring to a parent statement subject: <" + s.getURI() + ">, <" + p.getURI() + ">, <" + o.asResource().getURI() + ">");
-												subjects.add(st.getSubject().getURI());
-												if (incremental || writeReifiedModel) {
-													ReifiedStatement rst = resultModel.createReifiedStatement(st);
-													rst.addProperty(DC.source, resultModel.createResource(logicalTableMapping.getUri()));
-												} else {
-													resultModel.add(st);
-												}
-											}
-											rsParent.close();
-											parentSqlStmt.close();
-										} else {
-											if (verbose) log.info("Object URIs will be the subjects of the referenced triples, created previously by the logical table mapping with the uri " + predicateObjectMap.getRefObjectMap().getParentTriplesMapUri());
-											LogicalTableMapping l = mappingDocument.findLogicalTableMappingByUri(predicateObjectMap.getRefObjectMap().getParentTriplesMapUri());
-											if (verbose) log.info("The logical table mapping with the uri " + l.getUri() + " has already generated "+ l.getSubjects().size() + " triples.");
-											
-											for (String existingStatementSubject : l.getSubjects()) {
-												String existingSubjectUri = existingStatementSubject;
-												RDFNode o = resultModel.createResource(existingSubjectUri);
-												Statement st = resultModel.createStatement(s, p, o);
-												if (verbose) log.info("Adding triple referring to an existing statement subject: <" + s.getURI() + ">, <" + p.getURI() + ">, <" + o.asResource().getURI() + ">");
-												subjects.add(st.getSubject().getURI());
-												if (incremental || writeReifiedModel) {
-													ReifiedStatement rst = resultModel.createReifiedStatement(st);
-													rst.addProperty(DC.source, resultModel.createResource(logicalTableMapping.getUri()));
-												} else {
-													resultModel.add(st);
-												}
-											}
-										}
-									}
-								}
-							}
-						}
-						iterCount++;
-						if (iterCount % 10000 == 0) {
-							log.info("At " + iterCount);
-							//System.out.println("At " + iterCount);
-						}
+				if (!generated.isEmpty()) generateTriples(mappingDocument, generated);
+				for (MappingExecution execution : generated) {
+					boolean appended = (execution.previousWatermark != null) && finishAppend(execution);
+					if (execution.rows != null) {
+						boolean changed = finishRows(execution);
+						//the mappings generated in full have been counted already
+						if (changed && execution.previousRows != null) mappingsExecuted++;
+					} else if (appended) {
+						mappingsExecuted++;
 					}
-					
-					rs.close();
-					sqlStmt.close();
-				} catch (SQLException e) {
-					e.printStackTrace();
-				} finally {
-					try { sqlStmt.close(); } catch (Exception e) {}
 				}
-			} else {
-				log.info("Skipping triple generation from " + logicalTableMapping.getUri() + ". Nothing changed here.");
-			}
-			
-		    logicalTableMapping.setSubjects(subjects);
-		    if (verbose) log.info("Generated " + subjects.size() + " statements from table mapping <" + logicalTableMapping.getUri() + ">");
-	    }
+				for (MappingExecution execution : executions) {
+					if (execution.sink != sink) {
+						execution.sink.close();
+						sink.append(execution.sink);
+					}
+					finishExecution(Collections.singletonList(execution));
+				}
+		    }
+		}
 		mappingDocument.getTimestamps().add(Calendar.getInstance().getTimeInMillis()); //2 Generated jena model in memory
 		log.info("Finished generating jena model in memory.");
 		
-		if (!incremental || mappingsExecuted > 0) {
+		if (!sink.requiresModel()) {
+			sink.close();
+			log.info("Finished streaming " + sink.getCount() + " statements to " + destinationFileName + ".");
+			mappingDocument.getTimestamps().add(Calendar.getInstance().getTimeInMillis()); //3 Finished streaming the output to disk.
+		} else if (!incremental || mappingsExecuted > 0) {
 			if (!storeOutputModelInTdb) {
 
 				String destinationFileSyntax = properties.getProperty("jena.destinationFileSyntax");
@@ -574,28 +422,15 @@ public class Generator {
 				boolean showXmlDeclaration = (destinationFileSyntax.equalsIgnoreCase("RDF/XML") || destinationFileSyntax.equalsIgnoreCase("RDF/XML-ABBREV"))
 												&& showXmlDeclarationProperty.equalsIgnoreCase("true");
 				
-				if ((!incremental && writeReifiedModel) || incremental) {
+				if (keepProvenance) {
 					log.info("Generating clean model.");
 					Model cleanModel = ModelFactory.createDefaultModel();
 					cleanModel.setNsPrefixes(resultModel.getNsPrefixMap());
-					//ArrayList<Statement> cleanStatements = new ArrayList<Statement>();
-					
-					RSIterator rsIter = resultModel.listReifiedStatements();
-					long addedStatements = 0;
-					while (rsIter.hasNext()) {
-						ReifiedStatement rstmt = rsIter.next();
-						//Statement st = rstmt.getStatement();
-						cleanModel.add(rstmt.getStatement());
-						//cleanStatements.add(rstmt.getStatement());
-						addedStatements++;
-						if (verbose && addedStatements % 10000 == 0) log.info("At " + addedStatements);
-					}
-					rsIter.close();
+					long addedStatements = provenance.addTo(cleanModel);
 					
-					//If no reified statements were found, try actual statements
-					//if (!cleanModel.listStatements().hasNext()) {
+					//If no statements were generated, try the statements of the result model
 					if (addedStatements == 0) {
-						log.info("No reified statements were found, business as usual.");
+						log.info("No generated statements were found, business as usual.");
 						StmtIterator stmtIter = resultModel.listStatements();
 						while (stmtIter.hasNext()) {
 							Statement st = stmtIter.nextStatement();
@@ -677,25 +512,20 @@ public class Generator {
 //					stmtIter.close();
 				}
 				
-				if (writeReifiedModel) {
-					log.info("Writing reified model to " + reifiedModelFileName + ".");
+				if (keepProvenance) {
+					log.info("Writing provenance to " + provenanceFileName + ".");
 					try {
 						Calendar c0 = Calendar.getInstance();
 				        long t0 = c0.getTimeInMillis();
-				        BufferedWriter out = new BufferedWriter(new FileWriter(reifiedModelFileName));
-				        resultModel.write(out, "N-TRIPLE"); //properties.getProperty("jena.destinationFileSyntax"));
-				        out.close();
+				        provenance.write(new File(provenanceFileName));
 				        Calendar c1 = Calendar.getInstance();
 				        long t1 = c1.getTimeInMillis();
-				        log.info("Writing reified model to disk took " + (t1 - t0) + " milliseconds.");
-					} catch (FileNotFoundException e) {
-						e.printStackTrace();
+				        log.info("Writing provenance to disk took " + (t1 - t0) + " milliseconds.");
 					} catch (IOException e) {
 						e.printStackTrace();
 					}
-					log.info("Reified model has " + resultModel.size() + " statements.");
 				} else {
-					log.info("Not Writing reified model.");
+					log.info("Not Writing provenance.");
 				}
 				
 			} else {
@@ -770,12 +600,12 @@ public class Generator {
 			Literal oFileSize = logModel.createLiteral(String.valueOf(fileSize));
 			logModel.add(logModel.createResource(logNs + "destinationFile"), pFileSize, oFileSize);
 
-			if (writeReifiedModel) {
-				if (verbose) log.info("Logging reified model file size");
-				Property pReifiedModelFileSize = logModel.createProperty(logNs + "reifiedModelFileSize");
-				long reifiedModelfileSize = new File(reifiedModelFileName).length();
-				Literal oReifiedModelFileSize = logModel.createLiteral(String.valueOf(reifiedModelfileSize));
-				logModel.add(logModel.createResource(logNs + "destinationFile"), pReifiedModelFileSize, oReifiedModelFileSize);
+			if (keepProvenance) {
+				if (verbose) log.info("Logging provenance file size");
+				Property pProvenanceFileSize = logModel.createProperty(logNs + "provenanceFileSize");
+				long provenanceFileSize = new File(provenanceFileName).length();
+				Literal oProvenanceFileSize = logModel.createLiteral(String.valueOf(provenanceFileSize));
+				logModel.add(logModel.createResource(logNs + "destinationFile"), pProvenanceFileSize, oProvenanceFileSize);
 				
 				//run on the table mappings
 				for (LogicalTableMapping logicalTableMapping : mappingDocument.getLogicalTableMappings()) {
@@ -795,16 +625,17 @@ public class Generator {
 					
 					if (verbose) log.info("Logging selectQueryResultsHash");
 					Property pSelectQueryResultsHash = logModel.createProperty(logNs + "selectQueryResultsHash");
-					java.sql.Statement stmt = db.newStatement();
-					try {
-						ResultSet rsSelectQueryResultsHash =
-								stmt.executeQuery(logicalTableMapping.getView().getSelectQuery().getQuery());
-						Literal oSelectQueryResultsHash = logModel.createLiteral(String.valueOf(util.md5(rsSelectQueryResultsHash)));
+					String selectQueryResultsHash = resultsHashes.get(logicalTableMapping.getUri());
+					if (selectQueryResultsHash != null) {
+						Literal oSelectQueryResultsHash = logModel.createLiteral(selectQueryResultsHash);
 						logModel.add(s, pSelectQueryResultsHash, oSelectQueryResultsHash);
-					} catch (SQLException e) {
-						log.error("Failed to execute query: " + logicalTableMapping.getView().getSelectQuery().getQuery(), e);
-					} finally {
-						try { stmt.close(); } catch (SQLException e) {}
+					}
+					
+					String watermark = watermarks.get(logicalTableMapping.getUri());
+					if (watermark != null) {
+						if (verbose) log.info("Logging watermark");
+						logModel.add(s, logModel.createProperty(logNs + "watermark"), logModel.createLiteral(watermark));
+						logModel.add(s, logModel.createProperty(logNs + "watermarkType"), logModel.createLiteral(String.valueOf(watermarkTypes.get(logicalTableMapping.getUri()))));
 					}
 
 //					if (verbose) log.info("Logging tripleCount");
@@ -834,45 +665,1045 @@ public class Generator {
         //log.info("4 Finished logging.");
 	}
 
-	private String getStringValue(String field, ResultSet rs) {
-		String result = null;
+	/**
+	 * Reads the results of the select query of a logical table mapping, only to compute their digest. Returns null if the query fails.
+	 */
+	private String readResultsHash(LogicalTableMapping logicalTableMapping) {
+		Connection connection = db.openConnection();
+		java.sql.Statement st = db.newStatement(connection);
 		try {
-			if (rs.getObject(field) == null) return null;
+			return util.md5(st.executeQuery(logicalTableMapping.getView().getSelectQuery().getQuery()));
+		} catch (SQLException sqle) {
+			log.error("Failed to execute query: " + logicalTableMapping.getView().getSelectQuery().getQuery(), sqle);
+			db.recover(connection);
+			return null;
+		} finally {
+			try { st.close(); } catch (SQLException e) { /* ignore exception */ }
+			db.endScan(connection);
+		}
+	}
+	
+	/**
+	 * Executes the select query of one or more logical table mappings and generates their triples from its results.
+	 * The mappings of a shared scan have the same query, and each row is passed to all of them before the next one is read.
+	 */
+	private void generateTriples(MappingDocument mappingDocument, List<MappingExecution> executions) {
+		MappingExecution first = executions.get(0);
+		long iterCount = 0;
+		SelectQuery selectQuery = first.logicalTableMapping.getView().getSelectQuery();
+		String query = selectQuery.getQuery();
+		if (first.condition != null) {
+			query = selectQuery.getQueryWithTableCondition(first.condition);
+		} else if (first.previousWatermarkValue != null) {
+			query = selectQuery.getQueryWithCondition(first.logicalTableMapping.getWatermarkColumn() + " > ?");
+		}
 
-			BaseDatatype fieldDataType = findFieldDataType(field, rs);
+		java.sql.Statement sqlStmt = newStatement(first, query);
+		Map<PredicateObjectMap, HashJoin> hashJoins = new HashMap<PredicateObjectMap, HashJoin>();
+		Map<PredicateObjectMap, BatchJoin> batchJoins = new HashMap<PredicateObjectMap, BatchJoin>();
+		Map<String, PreparedStatement> lookupStatements = new HashMap<String, PreparedStatement>();
+		ResultSet rs = null;
 
-			if (fieldDataType != null && fieldDataType.getURI().equals(XSDDatatype.XSDdate.getURI())) {
-				result = xsdDateFormat.format(rs.getDate(field));
-			} else {
-				result = rs.getString(field);
+		try {
+			for (MappingExecution execution : executions) {
+				LogicalTableMapping logicalTableMapping = execution.logicalTableMapping;
+				if ("hash".equals(joinStrategy)) {
+					hashJoins.putAll(createHashJoins(mappingDocument, execution));
+				} else if ("batch".equals(joinStrategy)) {
+					for (PredicateObjectMap predicateObjectMap : logicalTableMapping.getPredicateObjectMaps()) {
+						if (isJoined(predicateObjectMap) && logicalTableMapping.getSubjectMap().getTemplate() != null) {
+							batchJoins.put(predicateObjectMap, createBatchJoin(mappingDocument, execution, predicateObjectMap, lookupStatements));
+						}
+					}
+				}
+			}
+			
+			//a query that cannot be copied is executed as usual, and so is one with the watermark as a parameter
+			if (copyExtraction && first.previousWatermarkValue == null) rs = db.copyQuery(connection(first), query);
+			if (rs == null) rs = executeQuery(sqlStmt, query);
+
+			if (verbose) log.info("Iterating over " + query + ((executions.size() > 1) ? " for " + executions.size() + " logical table mappings" : ""));
+			BindingPlan[] bindingPlans = new BindingPlan[executions.size()];
+			FetchSizeAdvisor fetchSizeAdvisor = createFetchSizeAdvisor(mappingDocument);
+			//the digest of the results is logged in incremental mode, which scans all the rows at once,
+			//or continued from the last run when only the rows after a watermark are scanned
+			ResultDigest digest = null;
+			if (keepProvenance) digest = (first.previousDigest != null) ? new ResultDigest(first.previousDigest) : new ResultDigest();
+			//one writer for the mappings of the scan, since it keeps the large objects the digest has read in each row
+			LexicalFormWriter writer = createLexicalFormWriter();
+			int[] columnTypes = (digest != null) ? ResultDigest.findTypes(rs) : null;
+			int[] watermarkColumns = new int[executions.size()];
+			for (int i = 0; i < watermarkColumns.length; i++) {
+				if (keepProvenance) watermarkColumns[i] = findWatermarkColumn(rs, executions.get(i).logicalTableMapping);
+				if (watermarkColumns[i] > 0) executions.get(i).watermarkType = rs.getMetaData().getColumnType(watermarkColumns[i]);
+			}
+			while (rs.next()) {
+				if (fetchSizeAdvisor != null) fetchSizeAdvisor.observe(rs);
+				String rowHash = null;
+				if (digest != null) {
+					byte[] hash = digest.add(rs, columnTypes, writer);
+					if (incrementalRows) rowHash = ResultDigest.toHex(hash);
+				}
+				for (int i = 0; i < bindingPlans.length; i++) {
+					MappingExecution execution = executions.get(i);
+					if (bindingPlans[i] == null) {
+						bindingPlans[i] = new BindingPlan(rs, execution.logicalTableMapping.getPredicateObjectMaps(), util, writer);
+					}
+					execution.rowsRead++;
+					if (watermarkColumns[i] > 0) updateWatermark(execution, rs, watermarkColumns[i]);
+					if (execution.rows != null) {
+						//a row seen before, in this scan or in the last run, generates the same triples
+						if (execution.rows.containsKey(rowHash)) continue;
+						List<Triple> previousTriples = (execution.previousRows != null) ? execution.previousRows.get(rowHash) : null;
+						if (previousTriples != null) {
+							execution.rows.put(rowHash, previousTriples);
+							continue;
+						}
+						execution.currentRow = new ArrayList<Triple>();
+						execution.rows.put(rowHash, execution.currentRow);
+						execution.rowsGenerated++;
+					}
+					generateRowTriples(mappingDocument, execution, rs, bindingPlans[i], hashJoins, batchJoins);
+					execution.currentRow = null;
+				}
+				iterCount++;
+				if (iterCount % 10000 == 0) {
+					log.info("At " + iterCount);
+					//System.out.println("At " + iterCount);
+				}
+			}
+			
+			rs.close();
+			sqlStmt.close();
+			if (digest != null) {
+				for (MappingExecution execution : executions) {
+					resultsHashes.put(execution.logicalTableMapping.getUri(), digest.getDigest());
+					if (execution.watermark != null) {
+						watermarks.put(execution.logicalTableMapping.getUri(), execution.watermark);
+						watermarkTypes.put(execution.logicalTableMapping.getUri(), execution.watermarkType);
+					}
+				}
+			}
+			
+			if ("pushdown".equals(joinStrategy)) {
+				for (MappingExecution execution : executions) {
+					generateJoinTriples(mappingDocument, execution, query, lookupStatements);
+				}
+			}
+			for (HashJoin hashJoin : hashJoins.values()) {
+				hashJoin.finish();
+			}
+			for (BatchJoin batchJoin : batchJoins.values()) {
+				batchJoin.finish();
+			}
+		} catch (SQLException e) {
+			e.printStackTrace();
+			recover(first);
+		} catch (IOException e) {
+			log.error("Error joining <" + first.logicalTableMapping.getUri() + "> with its parent triples maps. Terminating.", e);
+			System.exit(1);
+		} finally {
+			try { if (rs != null) rs.close(); } catch (Exception e) {}
+			try { sqlStmt.close(); } catch (Exception e) {}
+			db.endScan(connection(first));
+			for (HashJoin hashJoin : hashJoins.values()) {
+				hashJoin.close();
+			}
+			if (!lookupStatements.isEmpty()) {
+				try { db.releaseConnection(lookupStatements.values().iterator().next().getConnection()); } catch (SQLException e) {}
 			}
-		} catch (Exception e) {
-			log.error("Failed to get value as string for column " + field, e);
 		}
-		return result;
 	}
+	
+	/**
+	 * Generates the triples of a logical table mapping from the current row of its results
+	 */
+	private void generateRowTriples(MappingDocument mappingDocument, MappingExecution execution, ResultSet rs, BindingPlan bindingPlan,
+			Map<PredicateObjectMap, HashJoin> hashJoins, Map<PredicateObjectMap, BatchJoin> batchJoins) throws SQLException, IOException {
+		LogicalTableMapping logicalTableMapping = execution.logicalTableMapping;
+		Template subjectTemplate = logicalTableMapping.getSubjectMap().getTemplate();
+		String resultSubject = (subjectTemplate != null) ? util.fillTemplate(subjectTemplate, rs, encodeURLs) : null;
+		
+		if (resultSubject != null) {
+			//if (StringUtils.isNotEmpty(logicalTableMapping.getSubjectMap().getClassUri())) {
+			if (logicalTableMapping.getSubjectMap().getClassUris() != null && logicalTableMapping.getSubjectMap().getClassUris().size() > 0) {
+				for (String classUri : logicalTableMapping.getSubjectMap().getClassUris()) {
+					if (verbose) log.info("Subject termType: " + subjectTemplate.getTermType().toString());
+					Resource s = createSubject(subjectTemplate, resultSubject);
+					
+					Property p = RDF.type;
+					Resource o = resultModel.createResource(classUri);
+					Statement st = resultModel.createStatement(s, p, o);
+					if (verbose) log.info("Adding triple: <" + s.getURI() + ">, <" + p.getURI() + ">, <" + o.getURI() + ">");
+					addStatement(st, execution);
+				}
+			}
+			
+			//for (int i = 0; i < logicalTableMapping.getPredicateObjectMaps()  resultPredicates.size(); i++) {
+			for (PredicateObjectMap predicateObjectMap : logicalTableMapping.getPredicateObjectMaps()) {
+				if (verbose) log.info("Subject termType: " + subjectTemplate.getTermType().toString());
+				Resource s = createSubject(subjectTemplate, resultSubject);
+				
+				HashJoin hashJoin = hashJoins.get(predicateObjectMap);
+				if (hashJoin != null) {
+					hashJoin.probe(rs, resultSubject);
+					continue;
+				}
+				BatchJoin batchJoin = batchJoins.get(predicateObjectMap);
+				if (batchJoin != null) {
+					batchJoin.add(rs, resultSubject);
+					continue;
+				}
+				
+				Template objectTemplate = predicateObjectMap.getObjectTemplate();
+				if (verbose) {
+					if (objectTemplate != null && objectTemplate.getTermType() != null) {
+						log.info("Object type is " + objectTemplate.getTermType().toString());
+					} else {
+						log.info("Object type is null");
+					}
+				}
+				
+				for (String predicate : predicateObjectMap.getPredicates()) {
+					
+					Property p = resultModel.createProperty(predicate);
+					
+					if (objectTemplate != null && objectTemplate.getTermType() != TermType.AUTO) {
+						//Literal o = resultModel.createLiteral(u.fillTemplate(predicateObjectMap.getObjectTemplate(), rs));
+						//if (!util.isUriTemplate(resultModel, predicateObjectMap.getObjectTemplate())) {
+						if (objectTemplate.getTermType() == TermType.LITERAL) {
+							Literal o = null;
+							
+							if (predicateObjectMap.getObjectTemplate().getLanguage() == null || "".equals(predicateObjectMap.getObjectTemplate().getLanguage())) {
+								String value = util.fillTemplate(objectTemplate, rs, encodeURLs);
+								if (value != null)  {
+									if (predicateObjectMap.getDataType() != null) {
+										o = resultModel.createTypedLiteral(value, predicateObjectMap.getDataType());
+										if (verbose) log.info("Adding typed literal triple: <" + s.getURI() + ">, <" + p.getURI() + ">, \"" + o.getString() + "\"^^" + predicateObjectMap.getDataType().getURI());
+									} else {
+										o = resultModel.createLiteral(value);
+										if (verbose) log.info("Adding literal triple: <" + s.getURI() + ">, <" + p.getURI() + ">, \"" + o.getString() + "\"");
+									}
+								}
+							} else {
+								String language = predicateObjectMap.getObjectTemplate().getLanguage();
+								String value = util.fillTemplate(objectTemplate, rs, encodeURLs);
+								if (value != null) {
+									o = resultModel.createLiteral(value, language);
+									if (verbose) log.info("Adding literal triple with language: <" + s.getURI() + ">, <" + p.getURI() + ">, \"" + o.getString() + "\"@" + o.getLanguage());
+								}
+							}
+							
+							if (o != null) {
+								if (forceUri && o.getString().startsWith("http")) {
+									if (verbose) log.info("Changing literal to URI: <" + o.getString() + ">");
+									RDFNode oToUri = resultModel.createResource(o.getString());
+									
+									Statement st = resultModel.createStatement(s, p, oToUri);
+									addStatement(st, execution);
+								} else {
+									Statement st = resultModel.createStatement(s, p, o);
+									addStatement(st, execution);
+								}
+							}
+						} else if (objectTemplate.getTermType() == TermType.IRI) {
+							if (verbose) log.info("Filling in IRI template " + objectTemplate.getText());
+							String value = util.fillTemplate(objectTemplate, rs, encodeURLs);
+							if (value != null) {
+								RDFNode o = resultModel.createResource(value);
+								if (verbose) log.info("Adding resource triple: <" + s.getURI() + ">, <" + p.getURI() + ">, <" + o.asResource().getURI() + ">");
+								Statement st = resultModel.createStatement(s, p, o);
+								addStatement(st, execution);
+							}
+						} else if (objectTemplate.getTermType() == TermType.BLANKNODE) {
+							if (verbose) log.info("filling in blanknode template " + objectTemplate.getText());
+							String value = util.fillTemplate(objectTemplate, rs, encodeURLs);
+							if (value != null) {
+								RDFNode o = resultModel.createResource(AnonId.create(value));
+								if (verbose) log.info("Adding resource triple: <" + s.getURI() + ">, <" + p.getURI() + ">, <" + o.asResource().getURI() + ">");
+								Statement st = resultModel.createStatement(s, p, o);
+								addStatement(st, execution);
+							}
+						}
+					} else if (predicateObjectMap.getObjectColumn() != null) {
+						BindingPlan.Column column = bindingPlan.getColumn(predicateObjectMap);
+						String test = getStringValue(bindingPlan, column, rs);
+						BaseDatatype xsdDataType = column.getDataType();
 
-	BaseDatatype findFieldDataType(String field, ResultSet rs) {
-		field = field.trim();
-		if (verbose) log.info("Figuring out datatype of field: " + field);
+						if (test != null) {
+							Literal o;
+							if (predicateObjectMap.getObjectTemplate().getLanguage() == null || "".equals(predicateObjectMap.getObjectTemplate().getLanguage())) {
+								
+								if (xsdDataType != null) {
+									o = resultModel.createTypedLiteral(test, xsdDataType);
+									if (verbose) log.info("Adding typed literal triple: <" + s.getURI() + ">, <" + p.getURI() + ">, \"" + o.getString() + "\"^^" + xsdDataType.getURI());
+								} else {
+									o = resultModel.createLiteral(test);
+									if (verbose) log.info("Adding literal triple: <" + s.getURI() + ">, <" + p.getURI() + ">, \"" + o.getString() + "\"");
+								}
+							} else {
+								String language = predicateObjectMap.getObjectTemplate().getLanguage();
+								o = resultModel.createLiteral(test, language);
+								if (verbose) log.info("Adding triple with language: <" + s.getURI() + ">, <" + p.getURI() + ">, \"" + o.getString() + "\"@" + predicateObjectMap.getObjectTemplate().getLanguage());
+							}
+							
+							Statement st = resultModel.createStatement(s, p, o);
+							addStatement(st, execution);
+						}
+					} else if (predicateObjectMap.getRefObjectMap() != null && predicateObjectMap.getRefObjectMap().getParentTriplesMapUri() != null) {
+						if (predicateObjectMap.getRefObjectMap().hasJoinConditions()) {
+							//generated from the joint query after the logical table has been scanned, or looked up in a hash or a batch join
+						} else {
+							if (verbose) log.info("Object URIs will be the subjects of the referenced triples, created previously by the logical table mapping with the uri " + predicateObjectMap.getRefObjectMap().getParentTriplesMapUri());
+							LogicalTableMapping l = mappingDocument.findLogicalTableMappingByUri(predicateObjectMap.getRefObjectMap().getParentTriplesMapUri());
+							if (verbose) log.info("The logical table mapping with the uri " + l.getUri() + " has already generated "+ l.getSubjects().size() + " triples.");
+							
+							for (String existingStatementSubject : l.getSubjects()) {
+								String existingSubjectUri = existingStatementSubject;
+								RDFNode o = resultModel.createResource(existingSubjectUri);
+								Statement st = resultModel.createStatement(s, p, o);
+								if (verbose) log.info("Adding triple referring to an existing statement subject: <" + s.getURI() + ">, <" + p.getURI() + ">, <" + o.asResource().getURI() + ">");
+								addStatement(st, execution);
+							}
+						}
+					}
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Creates the subject of a triple: a blank node labeled with the subject when the subject map generates blank nodes,
+	 * and an iri otherwise, since a subject cannot be a literal
+	 */
+	private Resource createSubject(Template subjectTemplate, String subject) {
+		if (subjectTemplate.getTermType() == TermType.BLANKNODE) {
+			Resource result = resultModel.createResource(AnonId.create(subject));
+			if (verbose) log.info("Created blank node subject with id " + result.getId());
+			return result;
+		}
+		return resultModel.createResource(subject);
+	}
+	
+	/**
+	 * The query of the subjects of a parent triples map: the one of its subject map, if any, or else the one of its logical table
+	 */
+	private SelectQuery findParentQuery(LogicalTableMapping parent) {
+		if (parent.getSubjectMap().getSelectQuery() != null) {
+			return parent.getSubjectMap().getSelectQuery();
+		}
+		return parent.getView().getSelectQuery(); //assure the select query is not null
+	}
+	
+	/**
+	 * Creates the reader of the column values of a scan. Large objects are read in chunks, up to property default.lobMaxSize megabytes.
+	 */
+	private LexicalFormWriter createLexicalFormWriter() {
+		return new LexicalFormWriter(maxLobSize, failOnOversizeLob);
+	}
+	
+	/**
+	 * Creates the batch lookup of the parent subjects of a referencing object map. The prepared statements are cached
+	 * by their query, so referencing object maps with the same parent and join columns share one.
+	 * Property default.joinBatchSize sets the number of distinct keys looked up at once.
+	 */
+	private BatchJoin createBatchJoin(MappingDocument mappingDocument, final MappingExecution execution, final PredicateObjectMap predicateObjectMap,
+			Map<String, PreparedStatement> lookupStatements) throws SQLException {
+		LogicalTableMapping l = mappingDocument.findLogicalTableMappingByUri(predicateObjectMap.getRefObjectMap().getParentTriplesMapUri());
+		SelectQuery parentQuery = findParentQuery(l);
+		
+		List<String> childColumns = new ArrayList<String>();
+		List<String> parentColumns = new ArrayList<String>();
+		List<String> parentIdentifiers = new ArrayList<String>();
+		for (JoinCondition joinCondition : predicateObjectMap.getRefObjectMap().getJoinConditions()) {
+			childColumns.add(joinCondition.getChild().trim().replaceAll("\"", ""));
+			parentColumns.add(joinCondition.getParent().trim().replaceAll("\"", ""));
+			//in mysql, table names must not be enclosed in quotes
+			parentIdentifiers.add(mappingDocument.getDatabaseType() == DatabaseType.MYSQL ? joinCondition.getParent().trim().replaceAll("\"", "") : joinCondition.getParent().trim());
+		}
+		
+		int batchSize = Integer.parseInt(properties.getProperty("default.joinBatchSize", "500").trim());
+		String lookupQuery = BatchJoin.createQuery(parentQuery.getQuery(), parentIdentifiers, batchSize, mappingDocument.getDatabaseType() == DatabaseType.ORACLE);
+		PreparedStatement lookupStatement = lookupStatements.get(lookupQuery);
+		if (lookupStatement == null) {
+			//a connection of its own, since the cursor of the scan may still be open, which mysql does not allow for a streaming result set.
+			//the lookups of a scan share it, since each batch is read completely before the next.
+			Connection lookupConnection = lookupStatements.isEmpty() ? db.leaseConnection() : lookupStatements.values().iterator().next().getConnection();
+			lookupStatement = db.prepareStatement(lookupConnection, lookupQuery);
+			lookupStatements.put(lookupQuery, lookupStatement);
+			if (verbose) log.info("Looking up the subjects of <" + l.getUri() + "> in batches of " + batchSize + " with " + lookupQuery);
+		}
+		
+		final Template subjectTemplate = execution.logicalTableMapping.getSubjectMap().getTemplate();
+		return new BatchJoin(lookupStatement, batchSize, childColumns, parentColumns, l.getSubjectMap().getTemplate(), util, encodeURLs, new MatchHandler() {
+			public void match(String childSubject, String parentSubject) {
+				addReferencingTriples(predicateObjectMap, subjectTemplate, childSubject, parentSubject, execution);
+			}
+		});
+	}
+	
+	/**
+	 * Whether the triples of a predicate object map come from a referencing object map with join conditions
+	 */
+	private boolean isJoined(PredicateObjectMap predicateObjectMap) {
+		if (predicateObjectMap.getObjectTemplate() != null && predicateObjectMap.getObjectTemplate().getTermType() != TermType.AUTO) return false;
+		if (predicateObjectMap.getObjectColumn() != null) return false;
+		RefObjectMap refObjectMap = predicateObjectMap.getRefObjectMap();
+		return refObjectMap != null && refObjectMap.getParentTriplesMapUri() != null && refObjectMap.hasJoinConditions();
+	}
+	
+	/**
+	 * Returns the child or the parent columns of the join conditions
+	 */
+	private List<String> findJoinColumns(RefObjectMap refObjectMap, boolean child) {
+		List<String> results = new ArrayList<String>();
+		for (JoinCondition joinCondition : refObjectMap.getJoinConditions()) {
+			String column = child ? joinCondition.getChild() : joinCondition.getParent();
+			results.add(column.trim().replaceAll("\"", "")); //table names need to be e.g. Sport instead of "Sport", and this is why we remove the quotes
+		}
+		return results;
+	}
+	
+	/**
+	 * Adds the triples referring from a child subject to a parent subject, one for each predicate
+	 */
+	private void addReferencingTriples(PredicateObjectMap predicateObjectMap, Template subjectTemplate, String childSubject, String parentSubject, MappingExecution execution) {
+		Resource s = createSubject(subjectTemplate, childSubject);
+		RDFNode o = resultModel.createResource(parentSubject);
+		for (String predicate : predicateObjectMap.getPredicates()) {
+			Property p = resultModel.createProperty(predicate);
+			Statement st = resultModel.createStatement(s, p, o);
+			if (verbose) log.info("Adding triple referring to a parent statement subject: <" + s.getURI() + ">, <" + p.getURI() + ">, <" + o.asResource().getURI() + ">");
+			addStatement(st, execution);
+		}
+	}
+	
+	/**
+	 * Scans the parent logical table of each referencing object map with join conditions, and indexes the parent subjects
+	 * by the values of their join columns. Property default.hashJoinMemory sets the megabytes the indexes of a logical
+	 * table mapping may use before they are partitioned on disk. The indexes are built by the first range task of the mapping
+	 * and probed by all of them.
+	 */
+	private Map<PredicateObjectMap, HashJoin> createHashJoins(MappingDocument mappingDocument, final MappingExecution execution) throws SQLException, IOException {
+		Map<PredicateObjectMap, HashJoin> results = new HashMap<PredicateObjectMap, HashJoin>();
+		final Template subjectTemplate = execution.logicalTableMapping.getSubjectMap().getTemplate();
+		if (subjectTemplate == null) return results;
+		
+		List<PredicateObjectMap> joined = new ArrayList<PredicateObjectMap>();
+		for (PredicateObjectMap predicateObjectMap : execution.logicalTableMapping.getPredicateObjectMaps()) {
+			if (isJoined(predicateObjectMap)) joined.add(predicateObjectMap);
+		}
+		if (joined.isEmpty()) return results;
+		long memoryBudget = Long.parseLong(properties.getProperty("default.hashJoinMemory", "256").trim()) * 1024 * 1024 / joined.size();
+		
+		//the other range tasks of the mapping wait for the indexes, instead of scanning the parent tables again
+		synchronized (execution.parentIndexes) {
+			for (final PredicateObjectMap predicateObjectMap : joined) {
+				HashIndex index = execution.parentIndexes.get(predicateObjectMap);
+				if (index == null) {
+					index = createHashIndex(mappingDocument, execution, predicateObjectMap, memoryBudget);
+					execution.parentIndexes.put(predicateObjectMap, index);
+				}
+				
+				results.put(predicateObjectMap, new HashJoin(index, findJoinColumns(predicateObjectMap.getRefObjectMap(), true), new MatchHandler() {
+					public void match(String childSubject, String parentSubject) {
+						addReferencingTriples(predicateObjectMap, subjectTemplate, childSubject, parentSubject, execution);
+					}
+				}));
+			}
+		}
+		return results;
+	}
+	
+	/**
+	 * Scans the parent logical table of a referencing object map with join conditions, and indexes its subjects
+	 */
+	private HashIndex createHashIndex(MappingDocument mappingDocument, MappingExecution execution, PredicateObjectMap predicateObjectMap, long memoryBudget) throws SQLException, IOException {
+		LogicalTableMapping l = mappingDocument.findLogicalTableMappingByUri(predicateObjectMap.getRefObjectMap().getParentTriplesMapUri());
+		SelectQuery parentQuery = findParentQuery(l);
+		
+		HashIndex index = new HashIndex(memoryBudget);
+		java.sql.Statement parentSqlStmt = newStatement(execution);
 		try {
-			ResultSetMetaData rsMeta = rs.getMetaData();
-			if (verbose) log.info("Table name " + rsMeta.getTableName(1));
-			for (int i = 1; i <= rsMeta.getColumnCount(); i++) {
-				if (verbose) log.info("Column name is " + rsMeta.getColumnName(i));
-				if (rsMeta.getColumnName(i).equals(field)) {
-					String sqlType = rsMeta.getColumnTypeName(i);
-					if (verbose) log.info("Column " + i + " with name " + rsMeta.getColumnName(i) + " is of type " + sqlType);
-					return util.findDataTypeFromSql(sqlType);
+			ResultSet rsParent = parentSqlStmt.executeQuery(parentQuery.getQuery());
+			HashJoin.KeyColumns parentKeyColumns = new HashJoin.KeyColumns(rsParent, findJoinColumns(predicateObjectMap.getRefObjectMap(), false));
+			while (rsParent.next()) {
+				String parentSubject = util.fillTemplate(l.getSubjectMap().getTemplate(), rsParent, encodeURLs);
+				index.addParent(parentKeyColumns.createKey(rsParent), parentSubject);
+			}
+			rsParent.close();
+			index.complete();
+		} catch (SQLException e) {
+			index.close();
+			throw e;
+		} catch (IOException e) {
+			index.close();
+			throw e;
+		} finally {
+			try { parentSqlStmt.close(); } catch (Exception e) {}
+		}
+		if (verbose) log.info("Indexed " + index.getParentCount() + " subjects of <" + l.getUri() + "> for <" + execution.logicalTableMapping.getUri() + ">.");
+		return index;
+	}
+	
+	/**
+	 * Generates the triples of the referencing object maps that have a join condition. Each one is executed as
+	 * a joint SQL query of the child and the parent logical tables, instead of a parent query for each child row.
+	 */
+	private void generateJoinTriples(MappingDocument mappingDocument, MappingExecution execution, String childQuery, Map<String, PreparedStatement> lookupStatements) throws SQLException {
+		LogicalTableMapping logicalTableMapping = execution.logicalTableMapping;
+		Template subjectTemplate = logicalTableMapping.getSubjectMap().getTemplate();
+		if (subjectTemplate == null) return;
+		
+		for (PredicateObjectMap predicateObjectMap : logicalTableMapping.getPredicateObjectMaps()) {
+			if (!isJoined(predicateObjectMap)) continue;
+			RefObjectMap refObjectMap = predicateObjectMap.getRefObjectMap();
+			
+			LogicalTableMapping l = mappingDocument.findLogicalTableMappingByUri(refObjectMap.getParentTriplesMapUri());
+			SelectQuery parentQuery = findParentQuery(l);
+			JointQuery jointQuery = new JointQuery(childQuery, parentQuery.getQuery(), refObjectMap, l.getSubjectMap().getTemplate(), 
+					mappingDocument.getDatabaseType() != DatabaseType.MYSQL); //in mysql, table names must not be enclosed in quotes
+			if (verbose) log.info("Joining with the logical table mapping with the uri " + l.getUri() + " using the query " + jointQuery.getQuery());
+			
+			java.sql.Statement jointSqlStmt = newStatement(execution, jointQuery.getQuery());
+			ResultSet rs;
+			try {
+				rs = executeQuery(jointSqlStmt, jointQuery.getQuery());
+			} catch (SQLException e) {
+				try { jointSqlStmt.close(); } catch (Exception ex) {}
+				recover(execution);
+				log.info("Could not execute the joint query (" + e.getMessage().trim() + "). Looking up the parent subjects in batches instead.");
+				lookupJoinTriples(mappingDocument, execution, childQuery, predicateObjectMap, lookupStatements);
+				continue;
+			}
+			try {
+				while (rs.next()) {
+					String resultSubject = util.fillTemplate(subjectTemplate, rs, encodeURLs);
+					String parentSubject = util.fillTemplate(jointQuery.getParentTemplate(), rs, encodeURLs);
+					if (resultSubject == null || parentSubject == null) continue;
+					addReferencingTriples(predicateObjectMap, subjectTemplate, resultSubject, parentSubject, execution);
 				}
+				rs.close();
+			} finally {
+				try { jointSqlStmt.close(); } catch (Exception e) {}
+			}
+		}
+	}
+	
+	/**
+	 * Generates the referencing triples of a predicate object map by scanning the child logical table again
+	 * and looking up the parent subjects in batches. Used when the joint query cannot be executed.
+	 */
+	private void lookupJoinTriples(MappingDocument mappingDocument, MappingExecution execution, String childQuery, PredicateObjectMap predicateObjectMap,
+			Map<String, PreparedStatement> lookupStatements) throws SQLException {
+		Template subjectTemplate = execution.logicalTableMapping.getSubjectMap().getTemplate();
+		BatchJoin batchJoin = createBatchJoin(mappingDocument, execution, predicateObjectMap, lookupStatements);
+		java.sql.Statement childSqlStmt = newStatement(execution, childQuery);
+		try {
+			ResultSet rs = executeQuery(childSqlStmt, childQuery);
+			while (rs.next()) {
+				batchJoin.add(rs, util.fillTemplate(subjectTemplate, rs, encodeURLs));
+			}
+			rs.close();
+			batchJoin.finish();
+		} finally {
+			try { childSqlStmt.close(); } catch (Exception e) {}
+		}
+	}
+	
+	/**
+	 * Adds a generated statement to the output. In incremental mode, the statement is kept in the segment of its mapping.
+	 */
+	private void addStatement(Statement st, MappingExecution execution) {
+		if (execution.subjects != null) execution.subjects.add(st.getSubject().getURI());
+		execution.statementCount++;
+		if (execution.currentRow != null) {
+			execution.currentRow.add(st.asTriple());
+		} else if (keepProvenance) {
+			provenance.add(execution.logicalTableMapping.getUri(), st);
+		} else {
+			execution.sink.add(st);
+		}
+	}
+	
+	private java.sql.Statement newStatement(MappingExecution execution) {
+		return (execution.connection != null) ? db.newStatement(execution.connection) : db.newStatement();
+	}
+	
+	/**
+	 * Creates the statement of a query over the rows of an execution. When only the rows after the watermark of the last run
+	 * are read, the query compares the watermark column with a parameter, to which the watermark is bound with its type.
+	 */
+	private java.sql.Statement newStatement(MappingExecution execution, String query) {
+		if (execution.previousWatermarkValue == null) return newStatement(execution);
+		PreparedStatement statement = db.newStatement(connection(execution), query);
+		try {
+			//a value of an unknown type is kept as a string, which the driver converts
+			if (execution.previousWatermarkValue instanceof String) {
+				statement.setObject(1, execution.previousWatermarkValue, execution.watermarkType);
+			} else {
+				statement.setObject(1, execution.previousWatermarkValue);
 			}
 		} catch (SQLException e) {
-			e.printStackTrace();
+			log.error("Error binding watermark " + execution.previousWatermark + " to query: " + query, e);
+			System.exit(1);
+		}
+		return statement;
+	}
+	
+	private ResultSet executeQuery(java.sql.Statement statement, String query) throws SQLException {
+		return (statement instanceof PreparedStatement) ? ((PreparedStatement) statement).executeQuery() : statement.executeQuery(query);
+	}
+	
+	/**
+	 * Makes the connection of an execution usable again, after a statement failed
+	 */
+	private void recover(MappingExecution execution) {
+		db.recover(connection(execution));
+	}
+	
+	private Connection connection(MappingExecution execution) {
+		return (execution.connection != null) ? execution.connection : db.openConnection();
+	}
+	
+	/**
+	 * Creates the advisor of the fetch size of a scan, according to property default.fetchMemory.
+	 * Returns null when the fetch size is fixed, e.g. in mysql, where the rows are streamed one at a time.
+	 */
+	private FetchSizeAdvisor createFetchSizeAdvisor(MappingDocument mappingDocument) {
+		long fetchMemory = Long.parseLong(properties.getProperty("default.fetchMemory", "64").trim()) * 1024 * 1024;
+		int fetchSize = Integer.parseInt(properties.getProperty("default.fetchSize", "1000").trim());
+		if (fetchMemory <= 0 || fetchSize <= 0 || mappingDocument.getDatabaseType() == DatabaseType.MYSQL) return null;
+		return new FetchSizeAdvisor(fetchMemory);
+	}
+	
+	/**
+	 * Keeps the subjects generated by all the partitions of a logical table mapping, in the order of the partitions.
+	 */
+	private void finishExecution(List<MappingExecution> executions) {
+		LogicalTableMapping logicalTableMapping = executions.get(0).logicalTableMapping;
+		ArrayList<String> subjects = new ArrayList<String>();
+		long statementCount = 0;
+		for (MappingExecution execution : executions) {
+			if (execution.subjects != null) subjects.addAll(execution.subjects);
+			statementCount += execution.statementCount;
+		}
+		logicalTableMapping.setSubjects(subjects);
+		for (HashIndex index : executions.get(0).parentIndexes.values()) {
+			index.close();
 		}
+		if (verbose) log.info("Generated " + statementCount + " statements from table mapping <" + logicalTableMapping.getUri() + ">");
+	}
+	
+	/**
+	 * Whether the triples of a logical table mapping are kept by row, according to property default.incrementalRows.
+	 * Only the mappings whose triples depend on nothing but their own rows are: the ones without referencing object maps,
+	 * not referenced by a parent triples map without a join condition, and without blank nodes, since these
+	 * are given new labels when read back.
+	 */
+	private boolean isKeptByRow(LogicalTableMapping logicalTableMapping, Set<String> referencedMappingUris) {
+		if (!incrementalRows || referencedMappingUris.contains(logicalTableMapping.getUri())) return false;
+		Template subjectTemplate = logicalTableMapping.getSubjectMap().getTemplate();
+		if (subjectTemplate != null && subjectTemplate.getTermType() == TermType.BLANKNODE) return false;
+		for (PredicateObjectMap predicateObjectMap : logicalTableMapping.getPredicateObjectMaps()) {
+			if (predicateObjectMap.getRefObjectMap() != null) return false;
+			if (predicateObjectMap.getObjectTemplate() != null && predicateObjectMap.getObjectTemplate().getTermType() == TermType.BLANKNODE) return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * Keeps the triples of the rows of a mapping that were generated, or kept from the last run, in place of its old ones.
+	 * Returns whether they changed.
+	 */
+	private boolean finishRows(MappingExecution execution) {
+		String uri = execution.logicalTableMapping.getUri();
+		provenance.putRows(uri, execution.rows);
+		if (execution.previousRows == null) return true;
+		long rowsRemoved = 0;
+		for (String rowHash : execution.previousRows.keySet()) {
+			if (!execution.rows.containsKey(rowHash)) rowsRemoved++;
+		}
+		log.info("Generated the triples of " + execution.rowsGenerated + " new or changed rows and removed the triples of "
+				+ rowsRemoved + " deleted or changed rows of " + execution.rows.size() + " rows, from source " + uri + ".");
+		return execution.rowsGenerated > 0 || rowsRemoved > 0;
+	}
+	
+	/**
+	 * Whether only the rows after the watermark of the last run are read for a logical table mapping: the ones with a
+	 * watermark column that are not referenced by a parent triples map without a join condition, since these need all their subjects.
+	 * The rows before the watermark are taken to be unchanged, so their triples are kept.
+	 */
+	private boolean isAppendOnly(LogicalTableMapping logicalTableMapping, Set<String> referencedMappingUris) {
+		return logicalTableMapping.getWatermarkColumn() != null && !referencedMappingUris.contains(logicalTableMapping.getUri());
+	}
+	
+	/**
+	 * Logs the rows read after the watermark of the last run, and returns whether there were any
+	 */
+	private boolean finishAppend(MappingExecution execution) {
+		log.info("Read " + execution.rowsRead + " new rows with " + execution.logicalTableMapping.getWatermarkColumn() + " after "
+				+ execution.previousWatermark + ", from source " + execution.logicalTableMapping.getUri() + ".");
+		return execution.rowsRead > 0;
+	}
+	
+	/**
+	 * Finds the watermark column of a logical table mapping in its results. Returns 0 if the mapping has none.
+	 */
+	private int findWatermarkColumn(ResultSet rs, LogicalTableMapping logicalTableMapping) throws SQLException {
+		String column = logicalTableMapping.getWatermarkColumn();
+		if (column == null) return 0;
+		ResultSetMetaData rsMeta = rs.getMetaData();
+		for (int i = 1; i <= rsMeta.getColumnCount(); i++) {
+			if (rsMeta.getColumnLabel(i).equalsIgnoreCase(column.replaceAll("\"", ""))) return i;
+		}
+		log.error("Watermark column " + column + " of <" + logicalTableMapping.getUri() + "> is not selected by its logical table. Terminating.");
+		System.exit(1);
+		return 0;
+	}
+	
+	/**
+	 * Keeps the value of the watermark column in the current row, if greater than the ones before it. The rows read after
+	 * the watermark of the last run are all greater than it, so only their values are compared.
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private void updateWatermark(MappingExecution execution, ResultSet rs, int column) throws SQLException {
+		Object value = readWatermark(rs, column, execution.watermarkType);
+		if (value == null) return;
+		if (!(value instanceof Comparable)) {
+			log.error("Watermark column " + execution.logicalTableMapping.getWatermarkColumn() + " of <" + execution.logicalTableMapping.getUri() + "> cannot be ordered. Terminating.");
+			System.exit(1);
+		}
+		if (execution.watermarkValue == null || ((Comparable) value).compareTo(execution.watermarkValue) > 0) {
+			execution.watermarkValue = value;
+			execution.watermark = value.toString();
+		}
+	}
+	
+	/**
+	 * Reads the value of the watermark column in the current row with the getter of its jdbc type, so that the values compare
+	 * as in the database whatever the driver: integers as longs, other numbers as decimals, dates as timestamps, since an Oracle
+	 * date has a time too, and times as times. Other values are read as the driver returns them. Null when the column is null.
+	 */
+	private static Object readWatermark(ResultSet rs, int column, int type) throws SQLException {
+		Object result;
+		switch (type) {
+			case Types.TINYINT: case Types.SMALLINT: case Types.INTEGER: case Types.BIGINT:
+				result = rs.getLong(column);
+				break;
+			case Types.DECIMAL: case Types.NUMERIC: case Types.REAL: case Types.FLOAT: case Types.DOUBLE:
+				result = rs.getBigDecimal(column);
+				break;
+			case Types.DATE: case Types.TIMESTAMP:
+				result = rs.getTimestamp(column);
+				break;
+			case Types.TIME:
+				result = rs.getTime(column);
+				break;
+			case Types.CHAR: case Types.VARCHAR: case Types.LONGVARCHAR: case Types.NCHAR: case Types.NVARCHAR: case Types.LONGNVARCHAR:
+				result = rs.getString(column);
+				break;
+			default:
+				result = rs.getObject(column);
+		}
+		return rs.wasNull() ? null : result;
+	}
+	
+	/**
+	 * Reads the watermark of the last run from its log, as a value of the class {@link #readWatermark(ResultSet, int, int)} 
+	 * returns for its jdbc type. Null when the log has no watermark, or no type for it (i.e. it was written by an earlier version), 
+	 * or when it does not fit its type, in which case all the rows are read again.
+	 */
+	private Object readWatermark(Map<String, String> lastRunStatistics) {
+		String value = lastRunStatistics.get("watermark");
+		String type = lastRunStatistics.get("watermarkType");
+		if (value == null || type == null) return null;
+		try {
+			switch (Integer.parseInt(type)) {
+				case Types.TINYINT: case Types.SMALLINT: case Types.INTEGER: case Types.BIGINT:
+					return Long.valueOf(value);
+				case Types.DECIMAL: case Types.NUMERIC: case Types.REAL: case Types.FLOAT: case Types.DOUBLE:
+					return new BigDecimal(value);
+				case Types.DATE: case Types.TIMESTAMP:
+					return Timestamp.valueOf(value);
+				case Types.TIME:
+					return Time.valueOf(value);
+				default:
+					return value;
+			}
+		} catch (IllegalArgumentException e) {
+			log.info("Could not read watermark " + value + " of jdbc type " + type + " from the log. Reading all the rows.");
+			return null;
+		}
+	}
+	
+	/**
+	 * Groups the logical table mappings that can share a scan, i.e. the ones with the same select query, in the order of their first member.
+	 * Mappings that reference the subjects of a parent triples map without a join condition are scanned on their own,
+	 * since their parents have to be complete first, and so are the mappings with a watermark column in incremental mode.
+	 * Each mapping is scanned on its own when property default.sharedScans is false.
+	 */
+	private List<List<LogicalTableMapping>> groupScans(MappingDocument mappingDocument) {
+		List<List<LogicalTableMapping>> result = new ArrayList<List<LogicalTableMapping>>();
+		Map<String, List<LogicalTableMapping>> scansByQuery = new HashMap<String, List<LogicalTableMapping>>();
+		for (LogicalTableMapping logicalTableMapping : mappingDocument.getLogicalTableMappings()) {
+			boolean referencesSubjects = false;
+			for (PredicateObjectMap predicateObjectMap : logicalTableMapping.getPredicateObjectMaps()) {
+				if (predicateObjectMap.getRefObjectMap() != null && predicateObjectMap.getRefObjectMap().getParentTriplesMapUri() != null
+						&& !predicateObjectMap.getRefObjectMap().hasJoinConditions()) {
+					referencesSubjects = true;
+				}
+			}
+			//in incremental mode, a mapping with a watermark column may read only the rows after the watermark
+			boolean shared = sharedScans && !referencesSubjects && !(incremental && logicalTableMapping.getWatermarkColumn() != null);
+			List<LogicalTableMapping> scan = null;
+			String query = logicalTableMapping.getView().getSelectQuery().getNormalizedQuery();
+			if (shared) {
+				scan = scansByQuery.get(query);
+			}
+			if (scan == null) {
+				scan = new ArrayList<LogicalTableMapping>();
+				result.add(scan);
+				if (shared) scansByQuery.put(query, scan);
+			}
+			scan.add(logicalTableMapping);
+		}
+		for (List<LogicalTableMapping> scan : result) {
+			if (scan.size() > 1) log.info("Scanning the logical table of <" + scan.get(0).getUri() + "> once for " + scan.size() + " logical table mappings.");
+		}
+		return result;
+	}
+	
+	/**
+	 * Executes the logical table mappings on a pool of worker threads, each one using its own database connection.
+	 * A logical table mapping starts after the parent triples maps that precede it have finished, as in a sequential run.
+	 * The triples of each mapping are appended to the output in the order of the logical table mappings.
+	 * When property default.partitions is greater than 1, the rows of a single-table mapping are split in at least
+	 * {@value #RANGES_PER_THREAD} ranges per thread, that are scanned as separate tasks on a single queue. Workers take the next
+	 * queued range when they finish one, so the ranges of a slow part of the table are shared by the workers that would
+	 * otherwise be idle. A range is not split again once it has started. Mappings sharing a scan are executed by the same tasks.
+	 */
+	private int executeInParallel(final MappingDocument mappingDocument, Set<String> referencedMappingUris, int threads) {
+		log.info("Executing " + mappingDocument.getLogicalTableMappings().size() + " logical table mappings using " + threads + " threads.");
+		int partitions = Integer.parseInt(properties.getProperty("default.partitions", "1").trim());
+		if (partitions > 1) partitions = Math.max(partitions, threads * RANGES_PER_THREAD);
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		List<List<LogicalTableMapping>> scans = groupScans(mappingDocument);
+		List<List<Future<List<MappingExecution>>>> futures = new ArrayList<List<Future<List<MappingExecution>>>>();
+		HashMap<String, List<Future<List<MappingExecution>>>> futuresByUri = new HashMap<String, List<Future<List<MappingExecution>>>>();
+		try {
+			for (final List<LogicalTableMapping> scan : scans) {
+				//tasks are queued in order, so the parents have already been picked up by a worker when a child waits for them
+				final List<Future<List<MappingExecution>>> parents = new ArrayList<Future<List<MappingExecution>>>();
+				for (LogicalTableMapping logicalTableMapping : scan) {
+					for (PredicateObjectMap predicateObjectMap : logicalTableMapping.getPredicateObjectMaps()) {
+						//only the parents referenced without a join condition are needed, the others are queried in the database
+						if (predicateObjectMap.getRefObjectMap() != null && predicateObjectMap.getRefObjectMap().getParentTriplesMapUri() != null
+								&& !predicateObjectMap.getRefObjectMap().hasJoinConditions()) {
+							List<Future<List<MappingExecution>>> parent = futuresByUri.get(predicateObjectMap.getRefObjectMap().getParentTriplesMapUri());
+							if (parent != null) parents.addAll(parent);
+						}
+					}
+				}
+				
+				LogicalTableMapping first = scan.get(0);
+				List<String> conditions = new ArrayList<String>();
+				if (partitions > 1) {
+					conditions.addAll(db.createPartitions(first.getView().getSelectQuery(), partitions));
+					if (!conditions.isEmpty()) log.info("Scanning <" + first.getUri() + "> in " + conditions.size() + " partitions.");
+				}
+				if (conditions.isEmpty()) conditions.add(null);
+				
+				//the executions of each mapping, one per partition
+				final List<List<MappingExecution>> executionsByMapping = new ArrayList<List<MappingExecution>>();
+				for (LogicalTableMapping logicalTableMapping : scan) {
+					List<MappingExecution> executions = new ArrayList<MappingExecution>();
+					Map<PredicateObjectMap, HashIndex> parentIndexes = new HashMap<PredicateObjectMap, HashIndex>();
+					for (String condition : conditions) {
+						MappingExecution execution = new MappingExecution(logicalTableMapping, sink.createPart(), referencedMappingUris.contains(logicalTableMapping.getUri()));
+						execution.condition = condition;
+						execution.parentIndexes = parentIndexes;
+						executions.add(execution);
+					}
+					executionsByMapping.add(executions);
+				}
+				
+				//the last partition to finish keeps the subjects of the whole mappings
+				final AtomicInteger remaining = new AtomicInteger(conditions.size());
+				List<Future<List<MappingExecution>>> scanFutures = new ArrayList<Future<List<MappingExecution>>>();
+				for (int i = 0; i < conditions.size(); i++) {
+					final List<MappingExecution> partition = new ArrayList<MappingExecution>();
+					for (List<MappingExecution> executions : executionsByMapping) {
+						partition.add(executions.get(i));
+					}
+					Future<List<MappingExecution>> future = executor.submit(new Callable<List<MappingExecution>>() {
+						public List<MappingExecution> call() throws Exception {
+							for (Future<List<MappingExecution>> parent : parents) {
+								parent.get();
+							}
+							Connection connection = db.leaseConnection();
+							try {
+								for (MappingExecution execution : partition) {
+									execution.connection = connection;
+								}
+								generateTriples(mappingDocument, partition);
+							} finally {
+								db.releaseConnection(connection);
+								for (MappingExecution execution : partition) {
+									execution.sink.close();
+								}
+							}
+							if (remaining.decrementAndGet() == 0) {
+								for (List<MappingExecution> executions : executionsByMapping) {
+									finishExecution(executions);
+								}
+							}
+							return partition;
+						}
+					});
+					scanFutures.add(future);
+				}
+				futures.add(scanFutures);
+				for (LogicalTableMapping logicalTableMapping : scan) {
+					futuresByUri.put(logicalTableMapping.getUri(), scanFutures);
+				}
+			}
+			
+			for (List<Future<List<MappingExecution>>> scanFutures : futures) {
+				List<List<MappingExecution>> partitionExecutions = new ArrayList<List<MappingExecution>>();
+				for (Future<List<MappingExecution>> future : scanFutures) {
+					partitionExecutions.add(future.get());
+				}
+				//the triples of a mapping in the order of the partitions, then the ones of the next mapping of the scan
+				for (int i = 0; i < partitionExecutions.get(0).size(); i++) {
+					for (List<MappingExecution> partition : partitionExecutions) {
+						sink.append(partition.get(i).sink);
+					}
+				}
+			}
+		} catch (InterruptedException e) {
+			throw new IllegalStateException("Interrupted while generating triples.", e);
+		} catch (ExecutionException e) {
+			log.error("Error generating triples.", e.getCause());
+			throw new IllegalStateException("Failed to generate triples.", e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+		return mappingDocument.getLogicalTableMappings().size();
+	}
+	
+	/**
+	 * Holds the state of the execution of a logical table mapping
+	 */
+	private static class MappingExecution {
+		
+		private final LogicalTableMapping logicalTableMapping;
+		
+		private final TripleSink sink;
+		
+		/**
+		 * Kept only when the mapping is referenced by a parentTriplesMap without a joinCondition
+		 */
+		private final ArrayList<String> subjects;
+		
+		private long statementCount;
+		
+		/**
+		 * The condition selecting the partition of the rows to scan. Null when all rows are scanned at once.
+		 */
+		private String condition;
+		
+		/**
+		 * The connection of the worker thread. Null when the shared connection is used.
+		 */
+		private Connection connection;
+		
+		/**
+		 * The triples of each row by the hash of the row, when they are kept by row. Null otherwise.
+		 */
+		private LinkedHashMap<String, List<Triple>> rows;
 		
+		/**
+		 * The triples of each row in the last run, when only the rows that changed are generated. Null otherwise.
+		 */
+		private Map<String, List<Triple>> previousRows;
+		
+		/**
+		 * The triples of the row being generated, when they are kept by row
+		 */
+		private List<Triple> currentRow;
+		
+		private long rowsGenerated;
+		
+		private long rowsRead;
+		
+		/**
+		 * The digest of the results of the last run, continued when only the rows after its watermark are read. Null otherwise.
+		 */
+		private String previousDigest;
+		
+		/**
+		 * The watermark of the last run, as logged and as bound to the query, when only the rows after it are read. Null otherwise.
+		 */
+		private String previousWatermark;
+		
+		private Object previousWatermarkValue;
+		
+		/**
+		 * The greatest value of the watermark column, as read and as logged, and the jdbc type of the column
+		 */
+		private Object watermarkValue;
+		
+		private String watermark;
+		
+		private int watermarkType = Types.NULL;
+		
+		/**
+		 * The indexes of the parent subjects of the hash joins, shared by the executions of the ranges of a mapping
+		 */
+		private Map<PredicateObjectMap, HashIndex> parentIndexes = new HashMap<PredicateObjectMap, HashIndex>();
+		
+		MappingExecution(LogicalTableMapping logicalTableMapping, TripleSink sink, boolean keepSubjects) {
+			this.logicalTableMapping = logicalTableMapping;
+			this.sink = sink;
+			this.subjects = keepSubjects ? new ArrayList<String>() : null;
+		}
+	}
+	
+	/**
+	 * Creates the sink, according to property jena.outputSink. Incremental dumps and TDB storage need the generated triples in the result model.
+	 */
+	TripleSink createSink(String destinationFileName) {
+		String outputSink = properties.getProperty("jena.outputSink", "model").trim();
+		if ("model".equalsIgnoreCase(outputSink)) {
+			return new ModelTripleSink();
+		}
+		if (keepProvenance || storeOutputModelInTdb) {
+			log.info("Ignoring jena.outputSink " + outputSink + ". Incremental dumps and storing in TDB require the result model.");
+			return new ModelTripleSink();
+		}
+		if ("ntriples".equalsIgnoreCase(outputSink)) {
+			return new StreamTripleSink(destinationFileName, null);
+		} else if ("nquads".equalsIgnoreCase(outputSink)) {
+			String graph = properties.getProperty("jena.outputGraph");
+			return new StreamTripleSink(destinationFileName, StringUtils.isNotBlank(graph) ? graph.trim() : null);
+		} else {
+			log.error("Unknown output sink " + outputSink + ". Valid values are model, ntriples and nquads. Terminating.");
+			System.exit(1);
+		}
 		return null;
 	}
 	
+	private String getStringValue(BindingPlan bindingPlan, BindingPlan.Column column, ResultSet rs) {
+		String result = null;
+		try {
+			result = bindingPlan.getValue(column, rs);
+		} catch (Exception e) {
+			log.error("Failed to get value as string for column " + column.getName(), e);
+		}
+		return result;
+	}
+	
 	public Database getDb() {
 		return db;
 	}
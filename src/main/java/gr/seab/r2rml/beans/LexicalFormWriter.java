@@ -0,0 +1,469 @@
+package gr.seab.r2rml.beans;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.security.MessageDigest;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TimeZone;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.hp.hpl.jena.datatypes.BaseDatatype;
+import com.hp.hpl.jena.datatypes.xsd.XSDDatatype;
+
+/**
+ * Reads the values of a result set with the getter that fits their java.sql.Types type, and writes the canonical
+ * lexical form of their XSD datatype in a buffer that is reused from value to value. A buffer grown by a large value
+ * is dropped once the value has been written, so that it does not hold its memory for the rest of the scan.
+ * Covers the datatypes returned by {@link Util#findDataTypeFromSql(String)}. Values without a datatype are read as strings.
+ * Binary and character large objects are read as streams, in chunks, up to a maximum size. When the digest of the rows
+ * reads them first, with {@link #readLob(ResultSet, int, int, MessageDigest)}, they are kept for the rest of the row
+ * instead of being read again, and binary ones are written in base64.
+ * Not thread safe: each scan of a logical table uses its own.
+ *
+ */
+public class LexicalFormWriter {
+
+	private static final Logger log = LoggerFactory.getLogger(LexicalFormWriter.class);
+
+	private static final char[] BASE64 = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+
+	/**
+	 * The bytes read from a binary stream at a time. A multiple of 3, so that each chunk is encoded without padding.
+	 */
+	private static final int CHUNK_SIZE = 3 * 2730;
+
+	/**
+	 * The characters the buffer may keep between values. Larger values are written in a buffer that is dropped afterwards.
+	 */
+	private static final int MAX_BUFFER_CAPACITY = 8192;
+
+	private StringBuilder buffer = new StringBuilder(64);
+
+	/**
+	 * The maximum bytes of a binary value, or characters of a character large object
+	 */
+	private final long maxLobSize;
+
+	/**
+	 * Whether a larger value stops the generation, instead of being omitted
+	 */
+	private final boolean failOnOversize;
+
+	private byte[] bytes;
+
+	private char[] chars;
+
+	private final Calendar localCalendar = Calendar.getInstance();
+
+	private final Calendar utcCalendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+
+	/**
+	 * The large objects of the current row read by the digest, by column index. Null until the first one is read.
+	 */
+	private Map<Integer, Lob> lobs;
+
+	public LexicalFormWriter() {
+		this(Long.MAX_VALUE, false);
+	}
+
+	/**
+	 * @param maxLobSize the maximum bytes of a binary value, or characters of a character large object
+	 * @param failOnOversize whether a larger value stops the generation, instead of being omitted
+	 */
+	public LexicalFormWriter(long maxLobSize, boolean failOnOversize) {
+		this.maxLobSize = maxLobSize;
+		this.failOnOversize = failOnOversize;
+	}
+
+	/**
+	 * @param sqlType the type of the column, as in java.sql.Types
+	 * @param sqlTypeName the type name of the column, as reported by the driver. Names ending in tz are written in UTC.
+	 * @param dataType the XSD datatype of the literal, or null
+	 * @return the lexical form of the value, or null if it is null
+	 */
+	public String read(ResultSet rs, int index, int sqlType, String sqlTypeName, BaseDatatype dataType) throws SQLException {
+		if (lobs != null && isLob(sqlType)) {
+			Lob lob = lobs.get(index);
+			if (lob != null) return readLob(rs, index, lob);
+		}
+		if (dataType == null) {
+			if (sqlType == Types.CLOB || sqlType == Types.NCLOB || sqlType == Types.LONGVARCHAR || sqlType == Types.LONGNVARCHAR) {
+				buffer.setLength(0);
+				return readCharacters(rs, index);
+			}
+			return rs.getString(index);
+		}
+		buffer.setLength(0);
+
+		if (XSDDatatype.XSDinteger.equals(dataType)) {
+			if (sqlType == Types.TINYINT || sqlType == Types.SMALLINT || sqlType == Types.INTEGER || sqlType == Types.BIGINT) {
+				long value = rs.getLong(index);
+				if (rs.wasNull()) return null;
+				buffer.append(value);
+			} else {
+				BigDecimal value = rs.getBigDecimal(index);
+				if (value == null) return null;
+				buffer.append(value.toBigInteger());
+			}
+		} else if (XSDDatatype.XSDdecimal.equals(dataType)) {
+			BigDecimal value = rs.getBigDecimal(index);
+			if (value == null) return null;
+			appendDecimal(value);
+		} else if (XSDDatatype.XSDdouble.equals(dataType)) {
+			if (sqlType == Types.REAL) {
+				float value = rs.getFloat(index);
+				if (rs.wasNull()) return null;
+				appendDouble(Float.toString(value));
+			} else {
+				double value = rs.getDouble(index);
+				if (rs.wasNull()) return null;
+				appendDouble(Double.toString(value));
+			}
+		} else if (XSDDatatype.XSDboolean.equals(dataType)) {
+			boolean value = rs.getBoolean(index);
+			if (rs.wasNull()) return null;
+			buffer.append(value);
+		} else if (XSDDatatype.XSDdate.equals(dataType)) {
+			java.sql.Date value = rs.getDate(index);
+			if (value == null) return null;
+			localCalendar.setTimeInMillis(value.getTime());
+			appendDate(localCalendar);
+		} else if (XSDDatatype.XSDtime.equals(dataType)) {
+			java.sql.Time value = rs.getTime(index);
+			if (value == null) return null;
+			Calendar calendar = calendar(sqlTypeName);
+			calendar.setTimeInMillis(value.getTime());
+			appendTime(calendar, calendar.get(Calendar.MILLISECOND) * 1000000);
+			if (calendar == utcCalendar) buffer.append('Z');
+		} else if (XSDDatatype.XSDdateTime.equals(dataType)) {
+			java.sql.Timestamp value = rs.getTimestamp(index);
+			if (value == null) return null;
+			Calendar calendar = calendar(sqlTypeName);
+			calendar.setTimeInMillis(value.getTime());
+			appendDate(calendar);
+			buffer.append('T');
+			appendTime(calendar, value.getNanos());
+			if (calendar == utcCalendar) buffer.append('Z');
+		} else if (XSDDatatype.XSDbase64Binary.equals(dataType)) {
+			return readBase64(rs, index);
+		} else {
+			return rs.getString(index);
+		}
+		return buffer.toString();
+	}
+
+	private Calendar calendar(String sqlTypeName) {
+		return (sqlTypeName != null && sqlTypeName.toLowerCase().endsWith("tz")) ? utcCalendar : localCalendar;
+	}
+
+	/**
+	 * Writes a decimal with at least one digit on each side of the point, and no leading or trailing zeros, e.g. 12.0, 0.5
+	 */
+	private void appendDecimal(BigDecimal value) {
+		if (value.signum() == 0) {
+			buffer.append("0.0");
+			return;
+		}
+		value = value.stripTrailingZeros();
+		buffer.append(value.toPlainString());
+		if (value.scale() <= 0) buffer.append(".0");
+	}
+
+	/**
+	 * Rewrites the output of Double.toString or Float.toString as a mantissa with a single digit before the point,
+	 * and an exponent, e.g. 8.025E1, 1.0E-5. Special values are written as INF, -INF and NaN.
+	 */
+	private void appendDouble(String value) {
+		if ("NaN".equals(value)) {
+			buffer.append("NaN");
+			return;
+		} else if ("Infinity".equals(value)) {
+			buffer.append("INF");
+			return;
+		} else if ("-Infinity".equals(value)) {
+			buffer.append("-INF");
+			return;
+		}
+		int start = 0;
+		if (value.charAt(0) == '-') {
+			buffer.append('-');
+			start = 1;
+		}
+		int e = value.indexOf('E');
+		int end = (e == -1) ? value.length() : e;
+		int exponent = (e == -1) ? 0 : Integer.parseInt(value.substring(e + 1));
+
+		//find the first and last significant digits, and the number of digits before the point
+		int point = value.indexOf('.', start);
+		if (point == -1 || point > end) point = end;
+		int first = -1, last = -1;
+		for (int i = start; i < end; i++) {
+			char c = value.charAt(i);
+			if (c >= '1' && c <= '9') {
+				if (first == -1) first = i;
+				last = i;
+			}
+		}
+		if (first == -1) {
+			buffer.append("0.0E0");
+			return;
+		}
+		//the position of the first significant digit, relative to the point
+		int position = (first < point) ? point - first - 1 : -(first - point);
+
+		buffer.append(value.charAt(first)).append('.');
+		boolean fraction = false;
+		for (int i = first + 1; i <= last; i++) {
+			if (value.charAt(i) == '.') continue;
+			buffer.append(value.charAt(i));
+			fraction = true;
+		}
+		if (!fraction) buffer.append('0');
+		buffer.append('E').append(position + exponent);
+	}
+
+	private void appendDate(Calendar calendar) {
+		appendDigits(calendar.get(Calendar.YEAR), 4);
+		buffer.append('-');
+		appendDigits(calendar.get(Calendar.MONTH) + 1, 2);
+		buffer.append('-');
+		appendDigits(calendar.get(Calendar.DAY_OF_MONTH), 2);
+	}
+
+	/**
+	 * Writes hh:mm:ss, followed by the fraction of the second without trailing zeros, if any
+	 */
+	private void appendTime(Calendar calendar, int nanos) {
+		appendDigits(calendar.get(Calendar.HOUR_OF_DAY), 2);
+		buffer.append(':');
+		appendDigits(calendar.get(Calendar.MINUTE), 2);
+		buffer.append(':');
+		appendDigits(calendar.get(Calendar.SECOND), 2);
+		if (nanos > 0) {
+			buffer.append('.');
+			int length = buffer.length();
+			appendDigits(nanos, 9);
+			int end = buffer.length();
+			while (end > length + 1 && buffer.charAt(end - 1) == '0') end--;
+			buffer.setLength(end);
+		}
+	}
+
+	private void appendDigits(int value, int width) {
+		for (int i = 1, bound = 10; i < width; i++, bound *= 10) {
+			if (value < bound) buffer.append('0');
+		}
+		buffer.append(value);
+	}
+
+	/**
+	 * Encodes a binary stream in base64, a chunk at a time
+	 */
+	private String readBase64(ResultSet rs, int index) throws SQLException {
+		InputStream in = rs.getBinaryStream(index);
+		if (in == null) return null;
+		if (bytes == null) bytes = new byte[CHUNK_SIZE];
+		long size = 0;
+		try {
+			int length = 0;
+			int read;
+			while ((read = in.read(bytes, length, bytes.length - length)) != -1) {
+				length += read;
+				size += read;
+				if (size > maxLobSize) return oversize(rs, index, size);
+				if (length == bytes.length) {
+					appendBase64(bytes, length);
+					length = 0;
+				}
+			}
+			appendBase64(bytes, length);
+		} catch (IOException e) {
+			throw new SQLException("Error reading binary value", e);
+		} finally {
+			try { in.close(); } catch (IOException e) {}
+		}
+		return takeBuffer();
+	}
+
+	private String readCharacters(ResultSet rs, int index) throws SQLException {
+		Reader in = rs.getCharacterStream(index);
+		if (in == null) return null;
+		if (chars == null) chars = new char[8192];
+		try {
+			int read;
+			while ((read = in.read(chars)) != -1) {
+				if (buffer.length() + read > maxLobSize) return oversize(rs, index, buffer.length() + read);
+				buffer.append(chars, 0, read);
+			}
+		} catch (IOException e) {
+			throw new SQLException("Error reading character value", e);
+		} finally {
+			try { in.close(); } catch (IOException e) {}
+		}
+		return takeBuffer();
+	}
+
+	/**
+	 * Returns the value written in the buffer, and drops the buffer if the value has grown it past {@value #MAX_BUFFER_CAPACITY}
+	 */
+	private String takeBuffer() {
+		String result = buffer.toString();
+		resetBuffer();
+		return result;
+	}
+
+	private void resetBuffer() {
+		if (buffer.capacity() > MAX_BUFFER_CAPACITY) {
+			buffer = new StringBuilder(64);
+		} else {
+			buffer.setLength(0);
+		}
+	}
+
+	/**
+	 * Whether the values of a column of the given java.sql.Types are read as streams by the digest of the rows
+	 */
+	public static boolean isLob(int sqlType) {
+		return sqlType == Types.BINARY || sqlType == Types.VARBINARY || sqlType == Types.LONGVARBINARY || sqlType == Types.BLOB
+				|| sqlType == Types.CLOB || sqlType == Types.NCLOB || sqlType == Types.LONGVARCHAR || sqlType == Types.LONGNVARCHAR;
+	}
+
+	/**
+	 * Reads a large object of the current row once, as a stream in chunks, hashing all of it in the given digest.
+	 * Up to the maximum size, the value is kept for {@link #read(ResultSet, int, int, String, BaseDatatype)} in the same row.
+	 * Binary values are hashed as their bytes, and character values as their UTF-16 code units.
+	 * @return false if the value is null
+	 */
+	public boolean readLob(ResultSet rs, int index, int sqlType, MessageDigest md) throws SQLException {
+		if (lobs == null) lobs = new HashMap<Integer, Lob>();
+		Lob lob = new Lob();
+		lobs.put(index, lob);
+		boolean binary = sqlType == Types.BINARY || sqlType == Types.VARBINARY || sqlType == Types.LONGVARBINARY || sqlType == Types.BLOB;
+		try {
+			if (binary) {
+				InputStream in = rs.getBinaryStream(index);
+				if (in == null) return false;
+				if (bytes == null) bytes = new byte[CHUNK_SIZE];
+				lob.bytes = new Bytes();
+				try {
+					int read;
+					while ((read = in.read(bytes)) != -1) {
+						md.update(bytes, 0, read);
+						lob.size += read;
+						if (lob.bytes != null && lob.size > maxLobSize) lob.bytes = null;
+						if (lob.bytes != null) lob.bytes.write(bytes, 0, read);
+					}
+				} finally {
+					try { in.close(); } catch (IOException e) {}
+				}
+			} else {
+				Reader in = rs.getCharacterStream(index);
+				if (in == null) return false;
+				if (chars == null) chars = new char[8192];
+				lob.chars = new StringBuilder();
+				try {
+					int read;
+					while ((read = in.read(chars)) != -1) {
+						for (int i = 0; i < read; i++) {
+							md.update((byte) (chars[i] >>> 8));
+							md.update((byte) chars[i]);
+						}
+						lob.size += read;
+						if (lob.chars != null && lob.size > maxLobSize) lob.chars = null;
+						if (lob.chars != null) lob.chars.append(chars, 0, read);
+					}
+				} finally {
+					try { in.close(); } catch (IOException e) {}
+				}
+			}
+		} catch (IOException e) {
+			throw new SQLException("Error reading large object value", e);
+		}
+		lob.present = true;
+		return true;
+	}
+
+	/**
+	 * Writes a large object kept by {@link #readLob(ResultSet, int, int, MessageDigest)}
+	 */
+	private String readLob(ResultSet rs, int index, Lob lob) throws SQLException {
+		if (!lob.present) return null;
+		if (lob.bytes == null && lob.chars == null) return oversize(rs, index, lob.size);
+		if (lob.chars != null) return lob.chars.toString();
+		//the length of the value is known, so a large one is written in a buffer of its own size
+		long length = (lob.size + 2) / 3 * 4;
+		if (length > MAX_BUFFER_CAPACITY) {
+			buffer = new StringBuilder((int) length);
+		} else {
+			buffer.setLength(0);
+		}
+		appendBase64(lob.bytes.buffer(), lob.bytes.size());
+		return takeBuffer();
+	}
+
+	private String oversize(ResultSet rs, int index, long size) throws SQLException {
+		String column = rs.getMetaData().getColumnName(index);
+		resetBuffer();
+		if (failOnOversize) {
+			log.error("Value of column " + column + " exceeds " + maxLobSize + " (read " + size + " so far). Terminating.");
+			System.exit(1);
+		}
+		log.info("Omitting value of column " + column + " that exceeds " + maxLobSize + ".");
+		return null;
+	}
+
+	/**
+	 * A large object of the current row, up to the maximum size
+	 */
+	private static class Lob {
+
+		/**
+		 * Whether the value is not null
+		 */
+		private boolean present;
+
+		/**
+		 * The bytes or the characters read, whichever the type of the column, or neither when the value is larger than the maximum size
+		 */
+		private Bytes bytes;
+
+		private StringBuilder chars;
+
+		private long size;
+	}
+
+	/**
+	 * The bytes of a binary value, encoded without a copy of them
+	 */
+	private static class Bytes extends ByteArrayOutputStream {
+
+		private byte[] buffer() {
+			return buf;
+		}
+	}
+
+	private void appendBase64(byte[] value, int length) {
+		int i = 0;
+		for (; i + 2 < length; i += 3) {
+			int bits = ((value[i] & 0xff) << 16) | ((value[i + 1] & 0xff) << 8) | (value[i + 2] & 0xff);
+			buffer.append(BASE64[bits >>> 18]).append(BASE64[(bits >>> 12) & 0x3f]).append(BASE64[(bits >>> 6) & 0x3f]).append(BASE64[bits & 0x3f]);
+		}
+		if (i < length) {
+			int bits = (value[i] & 0xff) << 16;
+			if (i + 1 < length) bits |= (value[i + 1] & 0xff) << 8;
+			buffer.append(BASE64[bits >>> 18]).append(BASE64[(bits >>> 12) & 0x3f]);
+			buffer.append(i + 1 < length ? BASE64[(bits >>> 6) & 0x3f] : '=').append('=');
+		}
+	}
+
+}
@@ -1,6 +1,7 @@
 package gr.seab.r2rml.beans;
 
 import gr.seab.r2rml.entities.DatabaseType;
+import gr.seab.r2rml.entities.JoinCondition;
 import gr.seab.r2rml.entities.LogicalTableMapping;
 import gr.seab.r2rml.entities.LogicalTableView;
 import gr.seab.r2rml.entities.MappingDocument;
@@ -12,12 +13,31 @@ import gr.seab.r2rml.entities.TermType;
 import gr.seab.r2rml.entities.sparql.LocalResultSet;
 import gr.seab.r2rml.entities.sql.SelectQuery;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Reader;
+import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
 
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
@@ -86,15 +106,38 @@ public class Parser {
 	
 	private Util util;
 	
+	/**
+	 * The prefixes of the mapping file, read from the file or from a compiled mapping plan
+	 */
+	private Map<String, String> mappingPrefixes;
+	
 	public Parser() {
 	}
 	
 	public MappingDocument parse() {
 
+		String planKey = createPlanKey();
+		MappingPlan plan = (planKey != null) ? readPlan(planKey) : null;
+		if (plan != null) mappingPrefixes = plan.mappingPrefixes;
+		
 		init();
 		
 		log.info("Initialized.");
 		
+		if (plan != null) {
+			Map<String, String> prefixes = mappingDocument.getPrefixes();
+			mappingDocument = plan.mappingDocument;
+			mappingDocument.setPrefixes(prefixes);
+			for (LogicalTableMapping logicalTableMapping : mappingDocument.getLogicalTableMappings()) {
+				if (logicalTableMapping.getSubjectMap().getTemplate() != null) logicalTableMapping.getSubjectMap().getTemplate().setModel(resultModel);
+				for (PredicateObjectMap predicateObjectMap : logicalTableMapping.getPredicateObjectMaps()) {
+					if (predicateObjectMap.getObjectTemplate() != null) predicateObjectMap.getObjectTemplate().setModel(resultModel);
+				}
+			}
+			log.info("Mapping document has " + mappingDocument.getLogicalTableMappings().size() + " logical table mappings, as compiled in an earlier run.");
+			return mappingDocument;
+		}
+		
 		try {
             DatabaseType databaseType = util.findDatabaseType(properties.getProperty("db.driver"));
             mappingDocument.setDatabaseType(databaseType);
@@ -113,20 +156,30 @@ public class Parser {
 			    logicalTableMapping.setPredicateObjectMaps(createPredicateObjectMapsForResource(mapModel.getResource(logicalTableMapping.getUri())));
 			    mappingDocument.getLogicalTableMappings().set(i, logicalTableMapping);
 			}
+			findWatermarkColumns();
+			pruneProjections();
+			checkQueryColumns();
 			
-			//Sorting: evaluate first the logical table mappings without reference to a parent triples map
+			//Sorting: evaluate first the logical table mappings without reference to a parent triples map.
+			//Each mapping is listed once, since streaming sinks do not remove the triples of a mapping generated twice.
 			LinkedList<LogicalTableMapping> first = new LinkedList<LogicalTableMapping>();
 			LinkedList<LogicalTableMapping> second = new LinkedList<LogicalTableMapping>();
 			for (LogicalTableMapping ltm : mappingDocument.getLogicalTableMappings()) {
+				//mappings without predicate-object maps are not evaluated
+				if (ltm.getPredicateObjectMaps().isEmpty()) continue;
+				boolean referencesParent = false;
 				for (PredicateObjectMap p : ltm.getPredicateObjectMaps()) {
 					if (p.getRefObjectMap() != null &&
 						p.getRefObjectMap().getParentTriplesMapUri() != null &&
 						StringUtils.isNotBlank(p.getRefObjectMap().getParentTriplesMapUri())) {
-						second.add(ltm);
-					} else {
-						first.add(ltm);
+						referencesParent = true;
 					}
 				}
+				if (referencesParent) {
+					second.add(ltm);
+				} else {
+					first.add(ltm);
+				}
 			}
 			first.addAll(second);
 			mappingDocument.setLogicalTableMappings(first);
@@ -141,6 +194,7 @@ public class Parser {
 			
 			//sparql("SELECT ?s ?p ?o FROM <" + baseNs + "> WHERE { ?s ?p ?o }", resultModel);
 			
+			if (planKey != null) writePlan(planKey);
 		} catch (Exception e) {
 			e.printStackTrace();
 		}
@@ -148,6 +202,91 @@ public class Parser {
 		return mappingDocument;
 	}
 	
+	/**
+	 * The key of the compiled mapping plan: a hash of the contents of the mapping file and the input model, the properties and 
+	 * the fingerprint of the schema, since the queries of the tables depend on their columns. Null when property mapping.planCache 
+	 * is empty, or when the fingerprint of the schema or one of the files cannot be read.
+	 */
+	private String createPlanKey() {
+		if (StringUtils.isBlank(properties.getProperty("mapping.planCache"))) return null;
+		String fingerprint = db.getSchemaFingerprint();
+		if (fingerprint == null) return null;
+		
+		StringBuilder text = new StringBuilder(fingerprint).append('\n');
+		for (String name : new TreeSet<String>(properties.stringPropertyNames())) {
+			text.append(name).append('=').append(properties.getProperty(name)).append('\n');
+		}
+		if (!appendFile(text, properties.getProperty("mapping.file"))) return null;
+		String inputModelFileName = properties.getProperty("input.model");
+		if (StringUtils.isNotBlank(inputModelFileName) && !appendFile(text.append('\n'), inputModelFileName)) return null;
+		return util.md5(text.toString());
+	}
+	
+	/**
+	 * Appends the contents of a file to the text of the plan key. Returns false if the file cannot be read.
+	 */
+	private boolean appendFile(StringBuilder text, String fileName) {
+		InputStream is = FileManager.get().open(fileName);
+		if (is == null) return false;
+		try {
+			Reader reader = new InputStreamReader(is, "UTF-8");
+			char[] buffer = new char[8192];
+			int read;
+			while ((read = reader.read(buffer)) != -1) {
+				text.append(buffer, 0, read);
+			}
+			return true;
+		} catch (IOException e) {
+			log.error("Error reading " + fileName);
+			return false;
+		} finally {
+			try { is.close(); } catch (IOException e) {}
+		}
+	}
+	
+	/**
+	 * Reads the plan kept by an earlier run. Returns null when there is none, or when it was compiled from another mapping file,
+	 * another input model, other properties or another schema.
+	 */
+	private MappingPlan readPlan(String planKey) {
+		File file = new File(properties.getProperty("mapping.planCache").trim());
+		if (!file.exists()) return null;
+		ObjectInputStream in = null;
+		try {
+			in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)));
+			MappingPlan result = (MappingPlan) in.readObject();
+			if (!planKey.equals(result.key)) {
+				log.info("The mapping file, the input model, the properties or the schema have changed since the mapping plan " + file + " was compiled. Parsing the mapping file.");
+				return null;
+			}
+			log.info("Read the compiled mapping plan " + file + ".");
+			return result;
+		} catch (Exception e) {
+			log.error("Error reading the compiled mapping plan " + file + ". Parsing the mapping file.", e);
+			return null;
+		} finally {
+			try { if (in != null) in.close(); } catch (IOException e) {}
+		}
+	}
+	
+	private void writePlan(String planKey) {
+		File file = new File(properties.getProperty("mapping.planCache").trim());
+		MappingPlan plan = new MappingPlan();
+		plan.key = planKey;
+		plan.mappingDocument = mappingDocument;
+		plan.mappingPrefixes = new HashMap<String, String>(mappingPrefixes);
+		ObjectOutputStream out = null;
+		try {
+			out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+			out.writeObject(plan);
+			log.info("Kept the compiled mapping plan in " + file + ".");
+		} catch (IOException e) {
+			log.error("Error keeping the compiled mapping plan in " + file + ".", e);
+		} finally {
+			try { if (out != null) out.close(); } catch (IOException e) {}
+		}
+	}
+	
 	public SubjectMap createSubjectMapForResource(Resource r) {
 		log.info("Processing subject map for: <" + r.getURI() + ">");
 		SubjectMap subjectMap = new SubjectMap();
@@ -430,18 +569,26 @@ public class Parser {
 			    	while (iterJoinCondition.hasNext()) {
 			    		RDFNode rnJoinCondition = iterJoinCondition.next();
 			    		log.info("Found rr:joinCondition " + rnJoinCondition.asResource().getURI());
+			    		JoinCondition joinCondition = new JoinCondition();
 			    		NodeIterator iterChild = mapModel.listObjectsOfProperty(rnJoinCondition.asResource(), mapModel.getProperty(rrNs + "child"));
 			    		while (iterChild.hasNext()) {
 			    			RDFNode rnChild = iterChild.next();
 			    			log.info("Found rr:child " + rnChild.asLiteral().getString());
-			    			refObjectMap.setChild(rnChild.asLiteral().getString());
+			    			joinCondition.setChild(rnChild.asLiteral().getString());
 			    		}
 			    		
 			    		NodeIterator iterParent = mapModel.listObjectsOfProperty(rnJoinCondition.asResource(), mapModel.getProperty(rrNs + "parent"));
 			    		while (iterParent.hasNext()) {
 			    			RDFNode rnParent = iterParent.next();
 			    			log.info("Found rr:parent " + rnParent.asLiteral().getString());
-			    			refObjectMap.setParent(rnParent.asLiteral().getString());
+			    			joinCondition.setParent(rnParent.asLiteral().getString());
+			    		}
+			    		
+			    		if (joinCondition.getChild() != null && joinCondition.getParent() != null) {
+			    			refObjectMap.getJoinConditions().add(joinCondition);
+			    		} else {
+			    			log.error("A rr:joinCondition must contain both rr:child and rr:parent. Terminating.");
+			    			System.exit(1);
 			    		}
 			    	}
 			    	predicateObjectMap.setRefObjectMap(refObjectMap);
@@ -455,6 +602,7 @@ public class Parser {
 	
 	public LinkedList<LogicalTableMapping> findLogicalTableMappings() {
 		LinkedList<LogicalTableMapping> results = new LinkedList<LogicalTableMapping>();
+		Set<String> uris = new HashSet<String>();
 		Property logicalTable = mapModel.getProperty(rrNs + "logicalTable");
 		ResIterator iter1 = mapModel.listSubjectsWithProperty(logicalTable);
 		while (iter1.hasNext()) {
@@ -471,7 +619,7 @@ public class Parser {
 			    		LogicalTableView ltv = mappingDocument.findLogicalTableViewByUri(rn.asResource().getURI());
 			    		logicalTableMapping.setView(ltv);
 			    		
-				    	if (!contains(results, logicalTableMapping.getUri()))
+				    	if (uris.add(logicalTableMapping.getUri()))
 			    			results.add(logicalTableMapping);
 			    	} else {
 			    		//Then we can either have a rr:sqlQuery with the query or a rr:tableName with the table name
@@ -486,7 +634,7 @@ public class Parser {
 					    		LogicalTableView logicalTableView = mappingDocument.findLogicalTableViewByQuery(test.getQuery());
 					    		logicalTableMapping.setView(logicalTableView);
 					    		
-						    	if (!contains(results, logicalTableMapping.getUri()))
+						    	if (uris.add(logicalTableMapping.getUri()))
 					    			results.add(logicalTableMapping);
 					    	} else {
 					    		log.error("Could not find rr:sqlQuery.");
@@ -500,9 +648,10 @@ public class Parser {
 			    				LogicalTableView logicalTableView = new LogicalTableView();
 			    				SelectQuery sq = new SelectQuery(createQueryForTable(tableName), properties);
 			    				logicalTableView.setSelectQuery(sq);
+			    				logicalTableView.setTableName(tableName);
 			    				logicalTableMapping.setView(logicalTableView);
 			    				
-			    				if (!contains(results, logicalTableMapping.getUri()))
+			    				if (uris.add(logicalTableMapping.getUri()))
 					    			results.add(logicalTableMapping);
 			    			}
 			    		}
@@ -537,6 +686,7 @@ public class Parser {
 	    		SelectQuery sq = new SelectQuery(createQueryForTable(newTable), properties);
 	    		log.info("Setting SQL query for table " + newTable + ": " + sq.getQuery());
 	    		logicalTableView.setSelectQuery(sq);
+	    		logicalTableView.setTableName(newTable);
 	    		if (r.getURI() == null) {
 			    	//figure out to which TriplesMap this rr:tableName belongs
 			    	log.info("Found rr:tableName " + oldTable + " without parent.");
@@ -560,7 +710,7 @@ public class Parser {
 			    }
 		    	logicalTableMapping.setView(logicalTableView);
 
-		    	if (!contains(results, logicalTableMapping.getUri()))
+		    	if (uris.add(logicalTableMapping.getUri()))
 		    		results.add(logicalTableMapping);
 		    }
 		}
@@ -578,6 +728,7 @@ public class Parser {
 	
 	public LinkedList<LogicalTableView> findLogicalTableViews() {
 		LinkedList<LogicalTableView> results = new LinkedList<LogicalTableView>();
+		List<String> queries = new ArrayList<String>();
 		Property sqlQuery = mapModel.getProperty(rrNs + "sqlQuery");
 		ResIterator iter = mapModel.listSubjectsWithProperty(sqlQuery);
 		while (iter.hasNext()) {
@@ -592,64 +743,43 @@ public class Parser {
 		    	query = query.replaceAll("[\r\n]+", " ");
 		    	if (query.indexOf(';') != -1) query = query.replace(';', ' ');
 		    	
-		    	log.info("Testing query: <" + r.getURI() + "> with value: " + query);
-		    	db.testQuery(query);
-		    	
-		    	SelectQuery selectQuery = new SelectQuery(query, properties);
-
-		    	//if the dump is incremental, add an order by to ensure results are retrieved in the same order
-		    	if (properties.containsKey("jena.jena.storeOutputModelUsingTdb")
-		    		&& properties.getProperty("jena.jena.storeOutputModelUsingTdb").contains("false")
-		    		&& properties.containsKey("default.incremental")
-		    		&& properties.getProperty("default.incremental").contains("true")) {
-		    		String q = selectQuery.getQuery();
-		    		if (q.toLowerCase().indexOf("order by") == -1) {
-		    			String fieldName = selectQuery.getFields().get(0).getName();
-		    			int as = fieldName.toLowerCase().indexOf(" as ");
-		    			if (as > -1) {
-		    				fieldName = fieldName.substring(0, as);
-			    			q += " order by " + fieldName;
-		    				selectQuery.setQuery(q);
-		    				log.info("Added ORDER BY to query that now is: " + q);
-		    			}
-		    		}
-		    	}
-		    	
-		    	logicalTableView.setSelectQuery(selectQuery);
+		    	log.info("Found query: <" + r.getURI() + "> with value: " + query);
+		    	queries.add(query);
 		    	results.add(logicalTableView);
 		    }
 		}
+		
+		//test all the queries before processing any of them, as they are tested concurrently
+		db.testQueries(queries);
+		
+		Iterator<String> queryIterator = queries.iterator();
+		for (LogicalTableView logicalTableView : results) {
+			logicalTableView.setSelectQuery(new SelectQuery(queryIterator.next(), properties));
+		}
 		return results;
 	}
 	
 	public String createQueryForTable(String tableName) {
+		return createQueryForTable(tableName, null);
+	}
+	
+	/**
+	 * Creates the query selecting the given columns of a table, or all of them when the columns are null.
+	 * The rows are ordered by the first column of the table only when their order is needed, see {@link #isOrderedRows()}.
+	 */
+	public String createQueryForTable(String tableName, Collection<String> columns) {
 		
 		String result = "SELECT ";
 		ArrayList<String> fields = new ArrayList<String>();
 
-		java.sql.Statement stmt = db.newStatement();
-
 		try {
-			java.sql.ResultSet rs;
-			if (mappingDocument.getDatabaseType() == DatabaseType.POSTGRESQL) {
-				rs = stmt.executeQuery("SELECT column_name FROM INFORMATION_SCHEMA.COLUMNS WHERE table_name = '" + tableName + "'");
-			} else if (mappingDocument.getDatabaseType() == DatabaseType.MYSQL) {
-				rs = stmt.executeQuery("DESCRIBE " + tableName);
-			} else if (mappingDocument.getDatabaseType() == DatabaseType.ORACLE) {
-                rs = stmt.executeQuery("SELECT column_name FROM all_tab_cols WHERE table_name = '" + tableName + "'");
-            } else {
-                rs = null;
-                log.error("Unknown database type. Terminating.");
-                System.exit(1);
-            }
-
-			rs.beforeFirst();
-			while (rs.next()) {
-				//mysql: fields.add(rs.getString("Field"));
+			List<String> allColumns = db.findTableColumns(tableName);
+			for (String column : allColumns) {
+				if (columns != null && !columns.contains(column)) continue;
 				if (mappingDocument.getDatabaseType() == DatabaseType.POSTGRESQL || mappingDocument.getDatabaseType() == DatabaseType.ORACLE) {
-					fields.add("\"" + rs.getString(1) + "\"");
+					fields.add("\"" + column + "\"");
 				} else {
-					fields.add(rs.getString("Field"));
+					fields.add(column);
 				}
 			}
 			for (String f : fields) {
@@ -660,26 +790,176 @@ public class Parser {
 				}
 			}
 			result = result.substring(0, result.lastIndexOf(','));
-			rs.close();
-			stmt.close();
 		
 			if (mappingDocument.getDatabaseType() == DatabaseType.POSTGRESQL || mappingDocument.getDatabaseType() == DatabaseType.ORACLE) {
 				result += " FROM " + "\"" + tableName + "\"";
 			} else {
 				result += " FROM " + tableName;
 			}
-			result += " ORDER BY " + fields.get(0); //add order to ensure same order regardless the implementation
+			if (isOrderedRows()) {
+				//add order to ensure same order regardless the implementation
+				String first = allColumns.get(0);
+				if (mappingDocument.getDatabaseType() == DatabaseType.POSTGRESQL || mappingDocument.getDatabaseType() == DatabaseType.ORACLE) {
+					first = "\"" + first + "\"";
+				}
+				result += " ORDER BY " + first;
+			}
 			
 		} catch (Exception e) {
 			log.error("Failed to create query for table " + tableName, e);
-		} finally {
-			try { stmt.close(); } catch (Exception e) {}
 		}
 		
 		log.info("Result is: " + result);
 		return result;
 	}
-
+	
+	/**
+	 * Whether the rows of the tables are read in the same order every time, according to property default.orderRows.
+	 * Incremental dumps do not need it, since the digests of the results do not depend on the order of the rows.
+	 */
+	private boolean isOrderedRows() {
+		return properties.getProperty("default.orderRows", "false").contains("true");
+	}
+	
+	/**
+	 * Sets the watermark columns of the triples maps, as given in property default.watermarks: a comma-separated list
+	 * of triples map uris, each one followed by the name of its column.
+	 */
+	private void findWatermarkColumns() {
+		String watermarks = properties.getProperty("default.watermarks", "");
+		for (String watermark : watermarks.split(",")) {
+			if (StringUtils.isBlank(watermark)) continue;
+			String[] tokens = watermark.trim().split("\\s+");
+			if (tokens.length != 2) {
+				log.error("Could not read watermark '" + watermark.trim() + "'. Expected a triples map uri and a column. Terminating.");
+				System.exit(1);
+			}
+			String uri = StringUtils.strip(tokens[0], "<>");
+			LogicalTableMapping logicalTableMapping = mappingDocument.findLogicalTableMappingByUri(uri);
+			if (logicalTableMapping == null) {
+				log.error("Could not find triples map <" + uri + "> of watermark column " + tokens[1] + ". Terminating.");
+				System.exit(1);
+			}
+			logicalTableMapping.setWatermarkColumn(tokens[1]);
+			log.info("Triples map <" + uri + "> has watermark column " + tokens[1] + ".");
+		}
+	}
+	
+	/**
+	 * Narrows the queries of the logical tables named with rr:tableName to the columns the triples maps use:
+	 * the fields of the subject and object templates, the columns of the join conditions on either side and the watermark columns.
+	 * The triples maps over the same table select the same columns, so that they can share a scan.
+	 * All the columns are kept when a referenced column is not found in the table.
+	 */
+	private void pruneProjections() {
+		Map<String, Set<String>> referencedColumns = new LinkedHashMap<String, Set<String>>();
+		for (LogicalTableMapping logicalTableMapping : mappingDocument.getLogicalTableMappings()) {
+			String tableName = logicalTableMapping.getView().getTableName();
+			if (tableName == null) continue;
+			Set<String> columns = findReferencedColumns(referencedColumns, tableName);
+			if (logicalTableMapping.getSubjectMap() != null) addTemplateColumns(columns, logicalTableMapping.getSubjectMap().getTemplate());
+			if (logicalTableMapping.getWatermarkColumn() != null) columns.add(logicalTableMapping.getWatermarkColumn());
+			for (PredicateObjectMap predicateObjectMap : logicalTableMapping.getPredicateObjectMaps()) {
+				addTemplateColumns(columns, predicateObjectMap.getObjectTemplate());
+				if (predicateObjectMap.getObjectColumn() != null) columns.add(predicateObjectMap.getObjectColumn());
+				RefObjectMap refObjectMap = predicateObjectMap.getRefObjectMap();
+				if (refObjectMap == null || refObjectMap.getParentTriplesMapUri() == null) continue;
+				LogicalTableMapping parent = mappingDocument.findLogicalTableMappingByUri(refObjectMap.getParentTriplesMapUri());
+				for (JoinCondition joinCondition : refObjectMap.getJoinConditions()) {
+					columns.add(joinCondition.getChild());
+					if (parent != null && parent.getView().getTableName() != null) {
+						findReferencedColumns(referencedColumns, parent.getView().getTableName()).add(joinCondition.getParent());
+					}
+				}
+			}
+		}
+		
+		for (Map.Entry<String, Set<String>> entry : referencedColumns.entrySet()) {
+			String tableName = entry.getKey();
+			List<String> allColumns = db.findTableColumns(tableName);
+			if (allColumns.isEmpty()) continue;
+			Set<String> selected = new LinkedHashSet<String>();
+			boolean found = true;
+			for (String column : entry.getValue()) {
+				String name = column.trim().replaceAll("\"", "");
+				if (allColumns.contains(name)) {
+					selected.add(name);
+					continue;
+				}
+				//unquoted identifiers do not keep their case in the database
+				boolean matched = false;
+				for (String tableColumn : allColumns) {
+					if (tableColumn.equalsIgnoreCase(name)) {
+						selected.add(tableColumn);
+						matched = true;
+					}
+				}
+				if (!matched) {
+					log.info("Column " + column + " was not found in table " + tableName + ". Selecting all of its columns.");
+					found = false;
+				}
+			}
+			if (!found || selected.size() == allColumns.size()) continue;
+			//a triples map with constant terms only still needs a row per row of the table
+			if (selected.isEmpty()) selected.add(allColumns.get(0));
+			
+			String query = createQueryForTable(tableName, selected);
+			log.info("Selecting " + selected.size() + " of the " + allColumns.size() + " columns of table " + tableName + ".");
+			for (LogicalTableMapping logicalTableMapping : mappingDocument.getLogicalTableMappings()) {
+				if (tableName.equals(logicalTableMapping.getView().getTableName())) {
+					logicalTableMapping.getView().setSelectQuery(new SelectQuery(query, properties));
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Checks the columns the triples maps over an rr:sqlQuery refer to against the column labels of the query, as kept
+	 * when it was tested, so that a missing column is reported before any row is read. A scan still resolves its columns
+	 * from the metadata of its own result set, since the queries of ranges and watermarks are not the ones tested.
+	 */
+	private void checkQueryColumns() {
+		for (LogicalTableMapping logicalTableMapping : mappingDocument.getLogicalTableMappings()) {
+			if (logicalTableMapping.getView().getTableName() != null) continue;
+			List<String> queryColumns = db.findQueryColumns(logicalTableMapping.getView().getSelectQuery().getQuery());
+			if (queryColumns == null) continue;
+			Set<String> columns = new LinkedHashSet<String>();
+			if (logicalTableMapping.getSubjectMap() != null) addTemplateColumns(columns, logicalTableMapping.getSubjectMap().getTemplate());
+			if (logicalTableMapping.getWatermarkColumn() != null) columns.add(logicalTableMapping.getWatermarkColumn());
+			for (PredicateObjectMap predicateObjectMap : logicalTableMapping.getPredicateObjectMaps()) {
+				addTemplateColumns(columns, predicateObjectMap.getObjectTemplate());
+				if (predicateObjectMap.getObjectColumn() != null) columns.add(predicateObjectMap.getObjectColumn());
+				if (predicateObjectMap.getRefObjectMap() == null) continue;
+				for (JoinCondition joinCondition : predicateObjectMap.getRefObjectMap().getJoinConditions()) {
+					columns.add(joinCondition.getChild());
+				}
+			}
+			
+			for (String column : columns) {
+				String name = column.trim().replaceAll("\"", "");
+				boolean found = false;
+				for (String queryColumn : queryColumns) {
+					//unquoted identifiers do not keep their case in the database
+					if (queryColumn.equalsIgnoreCase(name)) found = true;
+				}
+				if (!found) log.error("Column " + column + " of <" + logicalTableMapping.getUri() + "> is not a column of its rr:sqlQuery. Its values will be omitted.");
+			}
+		}
+	}
+	
+	private Set<String> findReferencedColumns(Map<String, Set<String>> referencedColumns, String tableName) {
+		Set<String> result = referencedColumns.get(tableName);
+		if (result == null) {
+			result = new LinkedHashSet<String>();
+			referencedColumns.put(tableName, result);
+		}
+		return result;
+	}
+	
+	private void addTemplateColumns(Set<String> columns, Template template) {
+		if (template != null && template.getFields() != null) columns.addAll(template.getFields());
+	}
+	
 	public void init() {
 		log.info("Initializing.");
 		
@@ -689,13 +969,17 @@ public class Parser {
 		this.baseNs = properties.getProperty("default.namespace");
 		String mappingFilename = properties.getProperty("mapping.file");
 		
-		InputStream isMap = FileManager.get().open(mappingFilename);
-		mapModel = ModelFactory.createDefaultModel();
-		try {
-			mapModel.read(isMap, baseNs, properties.getProperty("mapping.file.type"));
-		} catch (Exception e) {
-			log.error("Error reading mapping file");
-			System.exit(1);
+		//the mapping file is not read when a compiled mapping plan is used
+		if (mappingPrefixes == null) {
+			InputStream isMap = FileManager.get().open(mappingFilename);
+			mapModel = ModelFactory.createDefaultModel();
+			try {
+				mapModel.read(isMap, baseNs, properties.getProperty("mapping.file.type"));
+			} catch (Exception e) {
+				log.error("Error reading mapping file");
+				System.exit(1);
+			}
+			mappingPrefixes = mapModel.getNsPrefixMap();
 		}
 		//mapModel.write(System.out, properties.getProperty("mapping.file.type"));
 		
@@ -745,17 +1029,17 @@ public class Parser {
 			
 			resultModel = ModelFactory.createDefaultModel();
 
-			Map<String, String> prefixes = mapModel.getNsPrefixMap();
+			Map<String, String> prefixes = new HashMap<String, String>(mappingPrefixes);
 			log.info("Copy " + prefixes.size() + " prefixes from map model to persistent.");
-			for (String s : mapModel.getNsPrefixMap().keySet()) {
-				log.info(s + ": " + mapModel.getNsPrefixMap().get(s));
+			for (String s : mappingPrefixes.keySet()) {
+				log.info(s + ": " + mappingPrefixes.get(s));
 			}
 			resultModel.setNsPrefixes(prefixes);
 			mappingDocument.setPrefixes(prefixes);
 			
 		} else {
 			//resultModel = ModelFactory.createInfModel(ReasonerRegistry.getRDFSReasoner(), resultBaseModel);
-			Map<String, String> prefixes = mapModel.getNsPrefixMap();
+			Map<String, String> prefixes = new HashMap<String, String>(mappingPrefixes);
 			prefixes.putAll(resultBaseModel.getNsPrefixMap());
 			
 			resultModel = ModelFactory.createDefaultModel();
@@ -766,13 +1050,6 @@ public class Parser {
 		}
 	}
 	
-	boolean contains(LinkedList<LogicalTableMapping> logicalTableMappings, String uri) {
-		for (LogicalTableMapping logicalTableMapping : logicalTableMappings) {
-			if (StringUtils.equals(logicalTableMapping.getUri(), uri)) return true;
-		}
-		return false;
-	}
-
 	public String getPropertiesFilename() {
 		return propertiesFilename;
 	}
@@ -809,4 +1086,18 @@ public class Parser {
 		this.properties = properties;
 	}
 	
+	/**
+	 * The mapping document as parsed, kept in the file of property mapping.planCache so that a later run
+	 * with the same mapping file, properties and schema does not parse it again
+	 */
+	private static class MappingPlan implements Serializable {
+		
+		private static final long serialVersionUID = 1L;
+		
+		private String key;
+		
+		private MappingDocument mappingDocument;
+		
+		private HashMap<String, String> mappingPrefixes;
+	}
 }
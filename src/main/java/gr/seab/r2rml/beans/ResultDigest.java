@@ -0,0 +1,163 @@
+package gr.seab.r2rml.beans;
+
+import java.math.BigInteger;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+
+/**
+ * A digest of the rows of a result set that does not depend on their order. Each row is hashed to 128 bits,
+ * and the row hashes are added modulo 2^128, so that the digest is computed in a single pass over the rows,
+ * without an ORDER BY, and rows appearing more than once are counted every time.
+ *
+ */
+public class ResultDigest {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	private final MessageDigest md;
+
+	/**
+	 * Hashes the large objects of a row, whose hashes are then added to the row hash
+	 */
+	private final MessageDigest lobMd;
+
+	/**
+	 * The sum of the row hashes, as two unsigned longs
+	 */
+	private long high, low;
+
+	private long rows;
+
+	public ResultDigest() {
+		try {
+			md = MessageDigest.getInstance("MD5");
+			lobMd = MessageDigest.getInstance("MD5");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Continues a digest returned by {@link #getDigest()}. Since the row hashes are added, the digest of the rows
+	 * added afterwards is the digest of all the rows, as if they had been read at once.
+	 */
+	public ResultDigest(String digest) {
+		this();
+		high = new BigInteger(digest.substring(0, 16), 16).longValue();
+		low = new BigInteger(digest.substring(16, 32), 16).longValue();
+	}
+	
+	/**
+	 * Adds the current row of a result set, and returns its hash. The large objects among the columns are read once,
+	 * as streams in chunks, by {@link LexicalFormWriter#readLob(ResultSet, int, int, MessageDigest)}, which keeps them
+	 * for the object maps of the row.
+	 * @param types the java.sql.Types of the columns
+	 */
+	public byte[] add(ResultSet rs, int[] types, LexicalFormWriter writer) throws SQLException {
+		for (int i = 1; i <= types.length; i++) {
+			if (LexicalFormWriter.isLob(types[i - 1])) {
+				if (writer.readLob(rs, i, types[i - 1], lobMd)) {
+					md.update((byte) 2);
+					md.update(lobMd.digest());
+				} else {
+					md.update((byte) 0);
+				}
+			} else {
+				update(rs.getString(i));
+			}
+		}
+		byte[] hash = md.digest();
+		add(hash);
+		return hash;
+	}
+
+	private void update(String value) {
+		if (value == null) {
+			//a null value differs from every string, including the empty one
+			md.update((byte) 0);
+		} else {
+			byte[] bytes = value.getBytes(UTF8);
+			md.update((byte) 1);
+			md.update((byte) (bytes.length >>> 24));
+			md.update((byte) (bytes.length >>> 16));
+			md.update((byte) (bytes.length >>> 8));
+			md.update((byte) bytes.length);
+			md.update(bytes);
+		}
+	}
+
+	/**
+	 * Adds a row hash, as returned by {@link #add(ResultSet, int[], LexicalFormWriter)}
+	 */
+	public void add(byte[] hash) {
+		long rowHigh = 0, rowLow = 0;
+		for (int i = 0; i < 8; i++) {
+			rowHigh = (rowHigh << 8) | (hash[i] & 0xff);
+			rowLow = (rowLow << 8) | (hash[i + 8] & 0xff);
+		}
+		long sum = low + rowLow;
+		//carry when the unsigned sum overflows
+		high += rowHigh + ((Long.compare(sum ^ Long.MIN_VALUE, low ^ Long.MIN_VALUE) < 0) ? 1 : 0);
+		low = sum;
+		rows++;
+	}
+
+	/**
+	 * Adds the remaining rows of a result set
+	 */
+	public void addAll(ResultSet rs) throws SQLException {
+		int[] types = findTypes(rs);
+		//large objects are only hashed, none of them is kept
+		LexicalFormWriter writer = new LexicalFormWriter(0, false);
+		while (rs.next()) {
+			add(rs, types, writer);
+		}
+	}
+
+	/**
+	 * The java.sql.Types of the columns of a result set
+	 */
+	public static int[] findTypes(ResultSet rs) throws SQLException {
+		ResultSetMetaData rsMeta = rs.getMetaData();
+		int[] results = new int[rsMeta.getColumnCount()];
+		for (int i = 0; i < results.length; i++) {
+			results[i] = rsMeta.getColumnType(i + 1);
+		}
+		return results;
+	}
+
+	public long getRows() {
+		return rows;
+	}
+
+	/**
+	 * The digest of the rows added, as 32 hexadecimal digits
+	 */
+	public String getDigest() {
+		StringBuilder result = new StringBuilder(32);
+		appendHex(result, high);
+		appendHex(result, low);
+		return result.toString();
+	}
+
+	private static void appendHex(StringBuilder sb, long value) {
+		for (int shift = 60; shift >= 0; shift -= 4) {
+			sb.append(HEX[(int) (value >>> shift) & 0xf]);
+		}
+	}
+
+	public static String toHex(byte[] hash) {
+		StringBuilder result = new StringBuilder(2 * hash.length);
+		for (byte b : hash) {
+			result.append(HEX[(b >>> 4) & 0xf]).append(HEX[b & 0xf]);
+		}
+		return result.toString();
+	}
+
+}
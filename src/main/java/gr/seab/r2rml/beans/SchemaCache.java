@@ -0,0 +1,210 @@
+package gr.seab.r2rml.beans;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The metadata of the source database that the parser needs: the columns of the tables, their types and primary keys,
+ * and the sql queries already tested. It is kept in a file between runs, along with a fingerprint of the schema,
+ * and is discarded when the fingerprint of the database no longer matches.
+ *
+ */
+public class SchemaCache implements Serializable {
+
+	private static final long serialVersionUID = 2L;
+
+	private static final Logger log = LoggerFactory.getLogger(SchemaCache.class);
+
+	private final String fingerprint;
+
+	/**
+	 * The tables by name qualified with their schema, or by name where there are no schemas, e.g. in mysql
+	 */
+	private HashMap<String, TableMetadata> tables = new HashMap<String, TableMetadata>();
+
+	/**
+	 * Whether the columns of all the tables have been read at once
+	 */
+	private boolean tablesRead;
+
+	/**
+	 * The column labels and types of the tested queries, by query
+	 */
+	private HashMap<String, TableMetadata> queries = new HashMap<String, TableMetadata>();
+
+	private transient boolean modified;
+
+	public SchemaCache(String fingerprint) {
+		this.fingerprint = fingerprint;
+	}
+
+	/**
+	 * Reads the cache kept in a file. Returns null when there is no file, or when it was kept for another schema.
+	 */
+	public static SchemaCache load(File file, String fingerprint) {
+		if (!file.exists()) return null;
+		ObjectInputStream in = null;
+		try {
+			in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)));
+			SchemaCache result = (SchemaCache) in.readObject();
+			if (fingerprint == null || !fingerprint.equals(result.fingerprint)) {
+				log.info("The schema has changed since the schema cache " + file + " was kept. Reading the schema again.");
+				return null;
+			}
+			log.info("Read the schema cache " + file + ".");
+			return result;
+		} catch (Exception e) {
+			log.error("Error reading the schema cache " + file + ". Reading the schema again.", e);
+			return null;
+		} finally {
+			try { if (in != null) in.close(); } catch (IOException e) {}
+		}
+	}
+
+	/**
+	 * Keeps the cache in a file, if it has changed
+	 */
+	public void save(File file) {
+		if (!modified || fingerprint == null) return;
+		ObjectOutputStream out = null;
+		try {
+			out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+			out.writeObject(this);
+			modified = false;
+			log.info("Kept the schema cache in " + file + ".");
+		} catch (IOException e) {
+			log.error("Error keeping the schema cache in " + file + ".", e);
+		} finally {
+			try { if (out != null) out.close(); } catch (IOException e) {}
+		}
+	}
+
+	public boolean hasTables() {
+		return tablesRead;
+	}
+
+	/**
+	 * Finds a table by its schema and name, or by its name only where there are no schemas. Where there is no table with
+	 * the exact name, a table whose name differs only in case is returned, as in databases with case-insensitive names.
+	 */
+	public TableMetadata getTable(String schema, String name) {
+		String key = createKey(schema, name);
+		TableMetadata result = tables.get(key);
+		if (result != null) return result;
+		for (String other : tables.keySet()) {
+			if (other.equalsIgnoreCase(key)) return tables.get(other);
+		}
+		return null;
+	}
+
+	/**
+	 * Adds a table under its name qualified with its schema, or under its name where there are no schemas
+	 */
+	public void putTable(String schema, String name, TableMetadata table) {
+		tables.put(createKey(schema, name), table);
+		modified = true;
+	}
+
+	/**
+	 * Marks the columns of all the tables as read, even if there are none
+	 */
+	public void setTablesRead() {
+		tablesRead = true;
+		modified = true;
+	}
+
+	public TableMetadata getQuery(String query) {
+		return queries.get(query);
+	}
+
+	public void putQuery(String query, TableMetadata columns) {
+		queries.put(query, columns);
+		modified = true;
+	}
+
+	/**
+	 * Marks the cache as changed, after the metadata of a table has been completed
+	 */
+	public void setModified() {
+		modified = true;
+	}
+
+	public String getFingerprint() {
+		return fingerprint;
+	}
+
+	private static String createKey(String schema, String name) {
+		return (schema != null) ? schema + "." + name : name;
+	}
+
+	/**
+	 * The columns of a table, in their order in the table, with their types and the columns of its primary key.
+	 * Also the column labels and types of a query, which has no primary key.
+	 */
+	public static class TableMetadata implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private final ArrayList<String> columns = new ArrayList<String>();
+
+		/**
+		 * The java.sql.Types of the columns
+		 */
+		private final ArrayList<Integer> types = new ArrayList<Integer>();
+
+		/**
+		 * The digits after the decimal point of numeric columns
+		 */
+		private final ArrayList<Integer> scales = new ArrayList<Integer>();
+
+		/**
+		 * Null until the primary key has been read
+		 */
+		private ArrayList<String> primaryKey;
+
+		public void addColumn(String name, int type, int scale) {
+			columns.add(name);
+			types.add(type);
+			scales.add(scale);
+		}
+
+		public List<String> getColumns() {
+			return columns;
+		}
+
+		/**
+		 * The java.sql.Types of a column, or null if there is no such column
+		 */
+		public Integer getType(String column) {
+			int index = columns.indexOf(column);
+			return (index != -1) ? types.get(index) : null;
+		}
+
+		public Integer getScale(String column) {
+			int index = columns.indexOf(column);
+			return (index != -1) ? scales.get(index) : null;
+		}
+
+		public List<String> getPrimaryKey() {
+			return primaryKey;
+		}
+
+		public void setPrimaryKey(ArrayList<String> primaryKey) {
+			this.primaryKey = primaryKey;
+		}
+	}
+
+}
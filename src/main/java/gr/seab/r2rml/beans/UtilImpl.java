@@ -2,6 +2,7 @@ package gr.seab.r2rml.beans;
 
 import gr.seab.r2rml.entities.LogicalTableMapping;
 import gr.seab.r2rml.entities.PredicateObjectMap;
+import gr.seab.r2rml.entities.SubjectMap;
 import gr.seab.r2rml.entities.Template;
 import gr.seab.r2rml.entities.TermType;
 import gr.seab.r2rml.entities.sparql.LocalResource;
@@ -15,6 +16,8 @@ import java.security.NoSuchAlgorithmException;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 
 import org.slf4j.Logger;
@@ -50,82 +53,43 @@ public class UtilImpl implements Util {
 	
 	public String fillTemplate(Template template, ResultSet rs, boolean encodeURLs) {
 		//log.info("filling in template " + template.getText());
-		String result = new String();
-		if (template!= null && template.getText() != null) {
-			result = template.getText();
-		} else {
-			result = "";
-		}
-		
+		String result;
 		try {
-			for (String field : template.getFields()) {
-				if (field.startsWith("\"") && field.endsWith("\"")) {
-					field = field.replaceAll("\"", "");
-					//log.info("Cleaning. Field is now " + field);
-				}
-				if (rs.getString(field) != null) {
-					String before = result.substring(0, result.indexOf(field));
-					before = before.substring(0, Math.max(before.lastIndexOf('{'), 0));
-
-					String after = result.substring(result.indexOf(field) + field.length());
-					after = after.substring(after.indexOf('}') + 1);
-					
-					result = before + rs.getString(field) + after;
-				} else {
-					result = null;
-				}
-			}
-			
-			if (result != null && template.getTermType() == TermType.IRI && !isUri(result, template.getModel())) {
-				//log.info("Processing URI template with namespace " + template.getText());
-				if (encodeURLs) {
-					try {
-						result = template.getNamespace() + "/" + URLEncoder.encode(result, "UTF-8");
-					} catch (UnsupportedEncodingException e) {
-						log.error("An error occurred!", e);
-						System.exit(1);
-					}
-				} else {
-					result = template.getNamespace() + "/" + result;
-				}
-			}
-			if(result != null && template.getTermType() == TermType.IRI && isUri(result, template.getModel())){
-				if (encodeURLs) {
-					try {
-						result = URLEncoder.encode(result, "UTF-8");
-					} catch (UnsupportedEncodingException e) {
-						log.error("An error occurred!", e);
-						System.exit(1);
-					}
-				}
-			}
-			
-			if (template.isUri()) {
-				//log.info("Processing URI template " + template.getText());
-				
-				if (result != null) {
-					int r = Math.max(result.lastIndexOf('#'), result.lastIndexOf('/')) + 1;
-					if (r > -1) {
-						if (encodeURLs) {
-							try {
-								result = result.substring(0, r) + URLEncoder.encode(result.substring(r), "UTF-8");
-							} catch (UnsupportedEncodingException e) {
-								log.error("An error occurred!", e);
-								System.exit(1);
-							}
-						} else {
-							result = result.substring(0, r) + result.substring(r);
-						}
-					}
-				}
-			}
-			
+			result = template.fill(rs);
 		} catch (SQLException e) {
 			e.printStackTrace();
+			return null;
+		}
+		if (result == null) return null;
+		
+		if (template.getTermType() == TermType.IRI && !template.isUri(result)) {
+			//log.info("Processing URI template with namespace " + template.getText());
+			result = template.getNamespace() + "/" + (encodeURLs ? encode(result) : result);
+			if (encodeURLs && (template.isNamespaceUri() || template.isUri(result))) {
+				result = encode(result);
+			}
+		} else if (template.getTermType() == TermType.IRI && encodeURLs) {
+			result = encode(result);
+		}
+		
+		if (template.isUri() && encodeURLs) {
+			//log.info("Processing URI template " + template.getText());
+			int r = Math.max(result.lastIndexOf('#'), result.lastIndexOf('/')) + 1;
+			result = result.substring(0, r) + encode(result.substring(r));
 		}
 		return result;
 	}
 	
+	private String encode(String s) {
+		try {
+			return URLEncoder.encode(s, "UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			log.error("An error occurred!", e);
+			System.exit(1);
+		}
+		return s;
+	}
+	
 	public DatabaseType findDatabaseType(String driver) {
 		
 		if (driver.contains("mysql")) {
@@ -308,7 +272,8 @@ public class UtilImpl implements Util {
 	public BaseDatatype findDataTypeFromSql(String sqlDataType) {
 		sqlDataType = sqlDataType.toLowerCase();
 		if (sqlDataType.equals("character")
-				|| sqlDataType.equals("text") 
+				|| sqlDataType.contains("text") 
+				|| sqlDataType.contains("clob")
 				|| sqlDataType.contains("varchar")
 				|| sqlDataType.contains("char")
 				|| sqlDataType.contains("varbit")
@@ -320,6 +285,9 @@ public class UtilImpl implements Util {
 			//if the sql field type is a string, it is ok to omit the xsd datatype from the result
 			return null;
     	} else if (sqlDataType.equals("binary")
+    			|| sqlDataType.equals("varbinary")
+    			|| sqlDataType.contains("blob")
+    			|| sqlDataType.contains("raw")
     			|| sqlDataType.equals("bytea")) {
     		return XSDDatatype.XSDbase64Binary;
     	} else if (sqlDataType.contains("numeric")
@@ -361,64 +329,62 @@ public class UtilImpl implements Util {
 		return null;
 	}
 	
+	/**
+	 * The digest of the rows of a result set, in any order. See {@link ResultDigest}.
+	 */
 	public String md5(ResultSet rs) {
 		String digest = null;
 		try {
-			MessageDigest md = MessageDigest.getInstance("MD5");
-			String s = new String();
-			rs.beforeFirst();
-			int columns = rs.getMetaData().getColumnCount();
-			while (rs.next()) {
-				for (int i = 1; i <= columns; i++) {
-					s += rs.getString(i);					
-				}
-				s = md5(s);
-			}
+			ResultDigest resultDigest = new ResultDigest();
+			resultDigest.addAll(rs);
 			rs.close();
-			
-			byte[] hash = md.digest(s.getBytes("UTF-8"));
-			StringBuilder sb = new StringBuilder(2 * hash.length);
-			for (byte b : hash) {
-				sb.append(String.format("%02x", b & 0xff));
-			}
-			digest = sb.toString();
-		} catch (UnsupportedEncodingException ex) {
-			log.error(ex.getMessage());
-		} catch (NoSuchAlgorithmException ex) {
-			log.error(ex.getMessage());
+			digest = resultDigest.getDigest();
 		} catch (SQLException e) {
 			e.printStackTrace();
 		}
 		return digest;
 	}
 	
+	/**
+	 * Hashes the parts of a logical table mapping that its triples depend on. The class uris, the predicates and the predicate 
+	 * object maps are hashed in sorted order, since the order they are listed in the mapping model changes between runs.
+	 */
 	public String md5(LogicalTableMapping logicalTableMapping) {
 		String digest = null;
 		try {
 			MessageDigest md = MessageDigest.getInstance("MD5");
 			String s = new String();
-			s += logicalTableMapping.getSubjectMap().getSelectQuery().getQuery();
-			s += logicalTableMapping.getSubjectMap().getTemplate().getText();
-			for (String classUri : logicalTableMapping.getSubjectMap().getClassUris()) {
+			SubjectMap subjectMap = logicalTableMapping.getSubjectMap();
+			s += subjectMap.getSelectQuery() != null ? subjectMap.getSelectQuery().getQuery() : "null";
+			s += subjectMap.getTemplate() != null ? subjectMap.getTemplate().getText() : "null";
+			for (String classUri : sorted(logicalTableMapping.getSubjectMap().getClassUris())) {
 				s += classUri;
 			}
 			
+			List<String> predicateObjectMaps = new ArrayList<String>();
 			for (PredicateObjectMap predicateObjectMap : logicalTableMapping.getPredicateObjectMaps()) {
-				s += predicateObjectMap.getObjectColumn();
-				s += predicateObjectMap.getDataType() != null ?  predicateObjectMap.getDataType().toString() : "null";
-				s += predicateObjectMap.getObjectTemplate().getLanguage();
+				String p = predicateObjectMap.getObjectColumn();
+				p += predicateObjectMap.getDataType() != null ?  predicateObjectMap.getDataType().toString() : "null";
 				if (predicateObjectMap.getObjectTemplate() != null) {
-					s += predicateObjectMap.getObjectTemplate().getText();
+					p += predicateObjectMap.getObjectTemplate().getLanguage();
+					p += predicateObjectMap.getObjectTemplate().getText();
 				} else {
-					s += predicateObjectMap.getObjectColumn();
+					p += "null";
+					p += predicateObjectMap.getObjectColumn();
 				}
 				
-				for (String predicate : predicateObjectMap.getPredicates()) {
-					s += predicate;
+				for (String predicate : sorted(predicateObjectMap.getPredicates())) {
+					p += predicate;
 				}
 				
-				s += predicateObjectMap.getRefObjectMap() != null? predicateObjectMap.getRefObjectMap().getParentTriplesMapUri() : "null";
+				p += predicateObjectMap.getRefObjectMap() != null? predicateObjectMap.getRefObjectMap().getParentTriplesMapUri() : "null";
+				predicateObjectMaps.add(p);
+			}
+			for (String p : sorted(predicateObjectMaps)) {
+				s += p;
 			}
+			//the rows read in incremental mode depend on the watermark column, when there is one
+			if (logicalTableMapping.getWatermarkColumn() != null) s += "watermark" + logicalTableMapping.getWatermarkColumn();
 
 			//log.info("about to hash logicalTableMapping " + s);
 			byte[] hash = md.digest(s.getBytes("UTF-8"));
@@ -436,6 +402,12 @@ public class UtilImpl implements Util {
 		return digest;
 	}
 	
+	private static List<String> sorted(List<String> values) {
+		List<String> result = new ArrayList<String>(values);
+		Collections.sort(result);
+		return result;
+	}
+	
 	public String md5(String s) {
 		String digest = null;
 		try {
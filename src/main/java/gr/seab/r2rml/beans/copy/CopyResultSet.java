@@ -0,0 +1,1170 @@
+package gr.seab.r2rml.beans.copy;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.sql.Array;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.Date;
+import java.sql.NClob;
+import java.sql.PreparedStatement;
+import java.sql.Ref;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.RowId;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLWarning;
+import java.sql.SQLXML;
+import java.sql.Statement;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TimeZone;
+
+import org.postgresql.PGStatement;
+import org.postgresql.copy.CopyOut;
+
+/**
+ * The rows of a PostgreSQL COPY (...) TO STDOUT in text format, read as a forward-only result set, so that the
+ * templates and the binding plan consume them as they would consume the rows of a query.
+ * Each row is split and unescaped in place, in the buffer the driver returns it in, and its values are decoded only when read.
+ * The metadata come from the query prepared without being executed, since the connection cannot run other statements during the copy.
+ *
+ */
+public class CopyResultSet implements ResultSet {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private final CopyOut copyOut;
+
+	private final PreparedStatement statement;
+
+	private final ResultSetMetaData metaData;
+
+	private final int[] sqlTypes;
+
+	/**
+	 * The index of each column, by its name in lower case
+	 */
+	private final Map<String, Integer> columnIndexes = new HashMap<String, Integer>();
+
+	private byte[] row;
+
+	/**
+	 * The offsets of each value in the row. The end of a null value is -1.
+	 */
+	private final int[] starts, ends;
+
+	private final String[] strings;
+
+	private boolean wasNull;
+
+	private boolean closed;
+
+	private int rowCount;
+
+	private final Calendar localCalendar = Calendar.getInstance();
+
+	private final Calendar utcCalendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+
+	/**
+	 * The position of the parser in the value being parsed, and the nanoseconds of the last timestamp parsed
+	 */
+	private int position, nanos;
+
+	/**
+	 * @param copyOut a copy in text format, that has been started
+	 * @param statement the query prepared without being executed, closed with the result set
+	 * @param metaData the metadata of the prepared query, read before the copy was started
+	 */
+	public CopyResultSet(CopyOut copyOut, PreparedStatement statement, ResultSetMetaData metaData) throws SQLException {
+		this.copyOut = copyOut;
+		this.statement = statement;
+		this.metaData = metaData;
+		int columnCount = metaData.getColumnCount();
+		sqlTypes = new int[columnCount + 1];
+		for (int i = columnCount; i >= 1; i--) {
+			sqlTypes[i] = metaData.getColumnType(i);
+			columnIndexes.put(metaData.getColumnName(i).toLowerCase(), i);
+		}
+		starts = new int[columnCount];
+		ends = new int[columnCount];
+		strings = new String[columnCount];
+	}
+
+	public boolean next() throws SQLException {
+		if (closed) throw new SQLException("The result set is closed.");
+		row = copyOut.readFromCopy();
+		if (row == null) return false;
+		parse();
+		rowCount++;
+		return true;
+	}
+
+	/**
+	 * Finds the values of the row, separated by tabs, and removes their backslash escapes. A value \N is null.
+	 */
+	private void parse() throws SQLException {
+		int length = row.length;
+		if (length > 0 && row[length - 1] == '\n') length--;
+		int field = 0, start = 0, w = 0;
+		boolean isNull = false;
+		for (int r = 0; r < length; r++) {
+			byte b = row[r];
+			if (b == '\t') {
+				endValue(field++, start, w, isNull);
+				start = w;
+				isNull = false;
+				continue;
+			}
+			if (b == '\\' && r + 1 < length) {
+				b = row[++r];
+				switch (b) {
+				case 'N': isNull = true; continue;
+				case 'b': b = '\b'; break;
+				case 'f': b = '\f'; break;
+				case 'n': b = '\n'; break;
+				case 'r': b = '\r'; break;
+				case 't': b = '\t'; break;
+				case 'v': b = 0x0b; break;
+				case 'x':
+					if (r + 1 < length && hex(row[r + 1]) >= 0) {
+						int value = hex(row[++r]);
+						if (r + 1 < length && hex(row[r + 1]) >= 0) value = value * 16 + hex(row[++r]);
+						b = (byte) value;
+					}
+					break;
+				default:
+					if (b >= '0' && b <= '7') {
+						int value = b - '0';
+						for (int i = 0; i < 2 && r + 1 < length && row[r + 1] >= '0' && row[r + 1] <= '7'; i++) {
+							value = value * 8 + row[++r] - '0';
+						}
+						b = (byte) value;
+					}
+				}
+			}
+			row[w++] = b;
+		}
+		endValue(field, start, w, isNull);
+		if (field != starts.length - 1) throw new SQLException("Expected " + starts.length + " values in row " + (rowCount + 1) + " of the copy, found " + (field + 1) + ".");
+		Arrays.fill(strings, null);
+	}
+
+	private void endValue(int field, int start, int end, boolean isNull) throws SQLException {
+		if (field >= starts.length) throw new SQLException("Expected " + starts.length + " values in row " + (rowCount + 1) + " of the copy.");
+		starts[field] = start;
+		ends[field] = isNull ? -1 : end;
+	}
+
+	private static int hex(byte b) {
+		if (b >= '0' && b <= '9') return b - '0';
+		if (b >= 'a' && b <= 'f') return b - 'a' + 10;
+		if (b >= 'A' && b <= 'F') return b - 'A' + 10;
+		return -1;
+	}
+
+	/**
+	 * Checks the column index and whether the value is null
+	 */
+	private boolean isNull(int columnIndex) throws SQLException {
+		if (row == null) throw new SQLException("The result set is not positioned on a row.");
+		if (columnIndex < 1 || columnIndex > starts.length) throw new SQLException("The column index is out of range: " + columnIndex + ", number of columns: " + starts.length + ".");
+		wasNull = ends[columnIndex - 1] < 0;
+		return wasNull;
+	}
+
+	public boolean wasNull() throws SQLException {
+		return wasNull;
+	}
+
+	public String getString(int columnIndex) throws SQLException {
+		if (isNull(columnIndex)) return null;
+		String result = strings[columnIndex - 1];
+		if (result == null) {
+			int start = starts[columnIndex - 1];
+			result = new String(row, start, ends[columnIndex - 1] - start, UTF8);
+			strings[columnIndex - 1] = result;
+		}
+		return result;
+	}
+
+	public boolean getBoolean(int columnIndex) throws SQLException {
+		String value = getString(columnIndex);
+		if (value == null) return false;
+		value = value.trim();
+		return "t".equalsIgnoreCase(value) || "true".equalsIgnoreCase(value) || "1".equals(value) || "y".equalsIgnoreCase(value)
+				|| "yes".equalsIgnoreCase(value) || "on".equalsIgnoreCase(value);
+	}
+
+	public byte getByte(int columnIndex) throws SQLException {
+		return (byte) getLong(columnIndex);
+	}
+
+	public short getShort(int columnIndex) throws SQLException {
+		return (short) getLong(columnIndex);
+	}
+
+	public int getInt(int columnIndex) throws SQLException {
+		return (int) getLong(columnIndex);
+	}
+
+	/**
+	 * Parses the digits in place, and other forms, e.g. of a numeric, through BigDecimal
+	 */
+	public long getLong(int columnIndex) throws SQLException {
+		if (isNull(columnIndex)) return 0;
+		int start = starts[columnIndex - 1], end = ends[columnIndex - 1];
+		boolean negative = start < end && row[start] == '-';
+		int i = negative ? start + 1 : start;
+		long result = 0;
+		if (i < end && end - i < 19) {
+			for (; i < end && row[i] >= '0' && row[i] <= '9'; i++) {
+				result = result * 10 + row[i] - '0';
+			}
+			if (i == end) return negative ? -result : result;
+		}
+		try {
+			return new BigDecimal(getString(columnIndex).trim()).longValue();
+		} catch (NumberFormatException e) {
+			throw new SQLException("Bad value for type long: " + getString(columnIndex));
+		}
+	}
+
+	public float getFloat(int columnIndex) throws SQLException {
+		if (isNull(columnIndex)) return 0;
+		try {
+			return Float.parseFloat(getString(columnIndex));
+		} catch (NumberFormatException e) {
+			throw new SQLException("Bad value for type float: " + getString(columnIndex));
+		}
+	}
+
+	public double getDouble(int columnIndex) throws SQLException {
+		if (isNull(columnIndex)) return 0;
+		try {
+			return Double.parseDouble(getString(columnIndex));
+		} catch (NumberFormatException e) {
+			throw new SQLException("Bad value for type double: " + getString(columnIndex));
+		}
+	}
+
+	public BigDecimal getBigDecimal(int columnIndex) throws SQLException {
+		if (isNull(columnIndex)) return null;
+		try {
+			return new BigDecimal(getString(columnIndex).trim());
+		} catch (NumberFormatException e) {
+			throw new SQLException("Bad value for type BigDecimal: " + getString(columnIndex));
+		}
+	}
+
+	@Deprecated
+	public BigDecimal getBigDecimal(int columnIndex, int scale) throws SQLException {
+		BigDecimal result = getBigDecimal(columnIndex);
+		return (result == null) ? null : result.setScale(scale, BigDecimal.ROUND_HALF_UP);
+	}
+
+	/**
+	 * Decodes a bytea in hex format, e.g. \x4d61, or in escape format, where bytes are written in octal, e.g. \115a
+	 */
+	public byte[] getBytes(int columnIndex) throws SQLException {
+		if (isNull(columnIndex)) return null;
+		int start = starts[columnIndex - 1], end = ends[columnIndex - 1];
+		if (sqlTypes[columnIndex] != Types.BINARY && sqlTypes[columnIndex] != Types.VARBINARY && sqlTypes[columnIndex] != Types.LONGVARBINARY) {
+			return Arrays.copyOfRange(row, start, end);
+		}
+		if (end - start >= 2 && row[start] == '\\' && row[start + 1] == 'x') {
+			byte[] result = new byte[(end - start - 2) / 2];
+			for (int i = 0, r = start + 2; i < result.length; i++, r += 2) {
+				result[i] = (byte) (hex(row[r]) * 16 + hex(row[r + 1]));
+			}
+			return result;
+		}
+		byte[] buffer = new byte[end - start];
+		int length = 0;
+		for (int r = start; r < end; r++) {
+			byte b = row[r];
+			if (b == '\\' && r + 1 < end) {
+				if (row[r + 1] == '\\') {
+					r++;
+				} else if (r + 3 < end) {
+					b = (byte) ((row[r + 1] - '0') * 64 + (row[r + 2] - '0') * 8 + (row[r + 3] - '0'));
+					r += 3;
+				}
+			}
+			buffer[length++] = b;
+		}
+		return Arrays.copyOf(buffer, length);
+	}
+
+	public Date getDate(int columnIndex) throws SQLException {
+		String value = getString(columnIndex);
+		if (value == null) return null;
+		if ("infinity".equals(value)) return new Date(PGStatement.DATE_POSITIVE_INFINITY);
+		if ("-infinity".equals(value)) return new Date(PGStatement.DATE_NEGATIVE_INFINITY);
+		return new Date(parseTimestamp(value, true));
+	}
+
+	public Time getTime(int columnIndex) throws SQLException {
+		String value = getString(columnIndex);
+		if (value == null) return null;
+		return new Time(parseTimestamp(value, false));
+	}
+
+	public Timestamp getTimestamp(int columnIndex) throws SQLException {
+		String value = getString(columnIndex);
+		if (value == null) return null;
+		if ("infinity".equals(value)) return new Timestamp(PGStatement.DATE_POSITIVE_INFINITY);
+		if ("-infinity".equals(value)) return new Timestamp(PGStatement.DATE_NEGATIVE_INFINITY);
+		Timestamp result = new Timestamp(parseTimestamp(value, true));
+		result.setNanos(nanos);
+		return result;
+	}
+
+	/**
+	 * Parses a date, time or timestamp in the ISO style of PostgreSQL, e.g. 2009-10-10 12:12:22.05+03 or 12:12:22,
+	 * and returns its milliseconds. A value without an offset is in the local time zone.
+	 */
+	private long parseTimestamp(String value, boolean hasDate) throws SQLException {
+		try {
+			position = 0;
+			nanos = 0;
+			int year = 1970, month = 1, day = 1, hour = 0, minute = 0, second = 0, offset = 0;
+			boolean hasOffset = false;
+			if (hasDate) {
+				year = parseNumber(value);
+				expect(value, '-');
+				month = parseNumber(value);
+				expect(value, '-');
+				day = parseNumber(value);
+				if (position < value.length() && (value.charAt(position) == ' ' || value.charAt(position) == 'T')
+						&& position + 1 < value.length() && Character.isDigit(value.charAt(position + 1))) {
+					position++;
+				}
+			}
+			if (position < value.length() && Character.isDigit(value.charAt(position))) {
+				hour = parseNumber(value);
+				expect(value, ':');
+				minute = parseNumber(value);
+				expect(value, ':');
+				second = parseNumber(value);
+				if (position < value.length() && value.charAt(position) == '.') {
+					position++;
+					int digits = 0;
+					while (position < value.length() && Character.isDigit(value.charAt(position))) {
+						if (digits++ < 9) nanos = nanos * 10 + value.charAt(position) - '0';
+						position++;
+					}
+					for (; digits < 9; digits++) nanos *= 10;
+				}
+			}
+			if (position < value.length() && (value.charAt(position) == '+' || value.charAt(position) == '-')) {
+				int sign = (value.charAt(position++) == '-') ? -1 : 1;
+				offset = parseNumber(value) * 3600;
+				if (position < value.length() && value.charAt(position) == ':') {
+					position++;
+					offset += parseNumber(value) * 60;
+					if (position < value.length() && value.charAt(position) == ':') {
+						position++;
+						offset += parseNumber(value);
+					}
+				}
+				offset *= sign;
+				hasOffset = true;
+			}
+			Calendar calendar = hasOffset ? utcCalendar : localCalendar;
+			calendar.clear();
+			calendar.set(year, month - 1, day, hour, minute, second);
+			if (value.endsWith(" BC")) calendar.set(Calendar.ERA, java.util.GregorianCalendar.BC);
+			return calendar.getTimeInMillis() + nanos / 1000000 - offset * 1000L;
+		} catch (RuntimeException e) {
+			throw new SQLException("Bad value for a date or time: " + value);
+		}
+	}
+
+	private int parseNumber(String value) {
+		int start = position;
+		int result = 0;
+		while (position < value.length() && Character.isDigit(value.charAt(position))) {
+			result = result * 10 + value.charAt(position++) - '0';
+		}
+		if (position == start) throw new IllegalArgumentException();
+		return result;
+	}
+
+	private void expect(String value, char c) {
+		if (position >= value.length() || value.charAt(position) != c) throw new IllegalArgumentException();
+		position++;
+	}
+
+	public InputStream getBinaryStream(int columnIndex) throws SQLException {
+		byte[] value = getBytes(columnIndex);
+		return (value == null) ? null : new ByteArrayInputStream(value);
+	}
+
+	public Reader getCharacterStream(int columnIndex) throws SQLException {
+		String value = getString(columnIndex);
+		return (value == null) ? null : new StringReader(value);
+	}
+
+	/**
+	 * Returns the value as the class the driver would return for its type
+	 */
+	public Object getObject(int columnIndex) throws SQLException {
+		if (isNull(columnIndex)) return null;
+		switch (sqlTypes[columnIndex]) {
+		case Types.BIT:
+		case Types.BOOLEAN:
+			return getBoolean(columnIndex);
+		case Types.TINYINT:
+		case Types.SMALLINT:
+		case Types.INTEGER:
+			return getInt(columnIndex);
+		case Types.BIGINT:
+			return getLong(columnIndex);
+		case Types.NUMERIC:
+		case Types.DECIMAL:
+			return getBigDecimal(columnIndex);
+		case Types.REAL:
+			return getFloat(columnIndex);
+		case Types.FLOAT:
+		case Types.DOUBLE:
+			return getDouble(columnIndex);
+		case Types.DATE:
+			return getDate(columnIndex);
+		case Types.TIME:
+			return getTime(columnIndex);
+		case Types.TIMESTAMP:
+			return getTimestamp(columnIndex);
+		case Types.BINARY:
+		case Types.VARBINARY:
+		case Types.LONGVARBINARY:
+			return getBytes(columnIndex);
+		default:
+			return getString(columnIndex);
+		}
+	}
+
+	public int findColumn(String columnLabel) throws SQLException {
+		Integer result = columnIndexes.get(columnLabel.toLowerCase());
+		if (result == null) throw new SQLException("The column name " + columnLabel + " was not found in this ResultSet.");
+		return result;
+	}
+
+	public String getString(String columnLabel) throws SQLException {
+		return getString(findColumn(columnLabel));
+	}
+
+	public boolean getBoolean(String columnLabel) throws SQLException {
+		return getBoolean(findColumn(columnLabel));
+	}
+
+	public byte getByte(String columnLabel) throws SQLException {
+		return getByte(findColumn(columnLabel));
+	}
+
+	public short getShort(String columnLabel) throws SQLException {
+		return getShort(findColumn(columnLabel));
+	}
+
+	public int getInt(String columnLabel) throws SQLException {
+		return getInt(findColumn(columnLabel));
+	}
+
+	public long getLong(String columnLabel) throws SQLException {
+		return getLong(findColumn(columnLabel));
+	}
+
+	public float getFloat(String columnLabel) throws SQLException {
+		return getFloat(findColumn(columnLabel));
+	}
+
+	public double getDouble(String columnLabel) throws SQLException {
+		return getDouble(findColumn(columnLabel));
+	}
+
+	public BigDecimal getBigDecimal(String columnLabel) throws SQLException {
+		return getBigDecimal(findColumn(columnLabel));
+	}
+
+	@Deprecated
+	public BigDecimal getBigDecimal(String columnLabel, int scale) throws SQLException {
+		return getBigDecimal(findColumn(columnLabel), scale);
+	}
+
+	public byte[] getBytes(String columnLabel) throws SQLException {
+		return getBytes(findColumn(columnLabel));
+	}
+
+	public Date getDate(String columnLabel) throws SQLException {
+		return getDate(findColumn(columnLabel));
+	}
+
+	public Time getTime(String columnLabel) throws SQLException {
+		return getTime(findColumn(columnLabel));
+	}
+
+	public Timestamp getTimestamp(String columnLabel) throws SQLException {
+		return getTimestamp(findColumn(columnLabel));
+	}
+
+	public InputStream getBinaryStream(String columnLabel) throws SQLException {
+		return getBinaryStream(findColumn(columnLabel));
+	}
+
+	public Reader getCharacterStream(String columnLabel) throws SQLException {
+		return getCharacterStream(findColumn(columnLabel));
+	}
+
+	public Object getObject(String columnLabel) throws SQLException {
+		return getObject(findColumn(columnLabel));
+	}
+
+	public ResultSetMetaData getMetaData() throws SQLException {
+		return metaData;
+	}
+
+	/**
+	 * Cancels the copy if it has not been read completely, and closes the prepared query
+	 */
+	public void close() throws SQLException {
+		if (closed) return;
+		closed = true;
+		row = null;
+		try {
+			if (copyOut.isActive()) copyOut.cancelCopy();
+		} finally {
+			statement.close();
+		}
+	}
+
+	public boolean isClosed() throws SQLException {
+		return closed;
+	}
+
+	public Statement getStatement() throws SQLException {
+		return statement;
+	}
+
+	public int getRow() throws SQLException {
+		return (row == null) ? 0 : rowCount;
+	}
+
+	public int getType() throws SQLException {
+		return ResultSet.TYPE_FORWARD_ONLY;
+	}
+
+	public int getConcurrency() throws SQLException {
+		return ResultSet.CONCUR_READ_ONLY;
+	}
+
+	public int getHoldability() throws SQLException {
+		return ResultSet.CLOSE_CURSORS_AT_COMMIT;
+	}
+
+	public int getFetchDirection() throws SQLException {
+		return ResultSet.FETCH_FORWARD;
+	}
+
+	public void setFetchDirection(int direction) throws SQLException {
+		if (direction != ResultSet.FETCH_FORWARD) throw unsupported();
+	}
+
+	/**
+	 * The server streams the rows of a copy, so the fetch size has no effect
+	 */
+	public int getFetchSize() throws SQLException {
+		return 0;
+	}
+
+	public void setFetchSize(int rows) throws SQLException {
+	}
+
+	public SQLWarning getWarnings() throws SQLException {
+		return null;
+	}
+
+	public void clearWarnings() throws SQLException {
+	}
+
+	@SuppressWarnings("unchecked")
+	public <T> T unwrap(Class<T> iface) throws SQLException {
+		if (iface.isInstance(this)) return (T) this;
+		throw new SQLException("Not a wrapper for " + iface.getName());
+	}
+
+	public boolean isWrapperFor(Class<?> iface) throws SQLException {
+		return iface.isInstance(this);
+	}
+
+	private SQLException unsupported() {
+		return new SQLFeatureNotSupportedException("Not supported by a forward-only, read-only copy result set.");
+	}
+
+	//Not supported
+
+	public InputStream getAsciiStream(int columnIndex) throws SQLException {
+		throw unsupported();
+	}
+
+	@Deprecated
+	public InputStream getUnicodeStream(int columnIndex) throws SQLException {
+		throw unsupported();
+	}
+
+	public InputStream getAsciiStream(String columnLabel) throws SQLException {
+		throw unsupported();
+	}
+
+	@Deprecated
+	public InputStream getUnicodeStream(String columnLabel) throws SQLException {
+		throw unsupported();
+	}
+
+	public String getCursorName() throws SQLException {
+		throw unsupported();
+	}
+
+	public boolean isBeforeFirst() throws SQLException {
+		throw unsupported();
+	}
+
+	public boolean isAfterLast() throws SQLException {
+		throw unsupported();
+	}
+
+	public boolean isFirst() throws SQLException {
+		throw unsupported();
+	}
+
+	public boolean isLast() throws SQLException {
+		throw unsupported();
+	}
+
+	public void beforeFirst() throws SQLException {
+		throw unsupported();
+	}
+
+	public void afterLast() throws SQLException {
+		throw unsupported();
+	}
+
+	public boolean first() throws SQLException {
+		throw unsupported();
+	}
+
+	public boolean last() throws SQLException {
+		throw unsupported();
+	}
+
+	public boolean absolute(int rows) throws SQLException {
+		throw unsupported();
+	}
+
+	public boolean relative(int rows) throws SQLException {
+		throw unsupported();
+	}
+
+	public boolean previous() throws SQLException {
+		throw unsupported();
+	}
+
+	public boolean rowUpdated() throws SQLException {
+		throw unsupported();
+	}
+
+	public boolean rowInserted() throws SQLException {
+		throw unsupported();
+	}
+
+	public boolean rowDeleted() throws SQLException {
+		throw unsupported();
+	}
+
+	public void updateNull(int columnIndex) throws SQLException {
+		throw unsupported();
+	}
+
+	public void updateBoolean(int columnIndex, boolean x) throws SQLException {
+		throw unsupported();
+	}
+
+	public void updateByte(int columnIndex, byte x) throws SQLException {
+		throw unsupported();
+	}
+
+	public void updateShort(int columnIndex, short x) throws SQLException {
+		throw unsupported();
+	}
+
+	public void updateInt(int columnIndex, int x) throws SQLException {
+		throw unsupported();
+	}
+
+	public void updateLong(int columnIndex, long x) throws SQLException {
+		throw unsupported();
+	}
+
+	public void updateFloat(int columnIndex, float x) throws SQLException {
+		throw unsupported();
+	}
+
+	public void updateDouble(int columnIndex, double x) throws SQLException {
+		throw unsupported();
+	}
+
+	public void updateBigDecimal(int columnIndex, BigDecimal x) throws SQLException {
+		throw unsupported();
+	}
+
+	public void updateString(int columnIndex, String x) throws SQLException {
+		throw unsupported();
+	}
+
+	public void updateBytes(int columnIndex, byte[] x) throws SQLException {
+		throw unsupported();
+	}
+
+	public void updateDate(int columnIndex, Date x) throws SQLException {
+		throw unsupported();
+	}
+
+	public void updateTime(int columnIndex, Time x) throws SQLException {
+		throw unsupported();
+	}
+
+	public void updateTimestamp(int columnIndex, Timestamp x) throws SQLException {
+		throw unsupported();
+	}
+
+	public void updateAsciiStream(int columnIndex, InputStream x, int length) throws SQLException {
+		throw unsupported();
+	}
+
+	public void updateBinaryStream(int columnIndex, InputStream x, int length) throws SQLException {
+		throw unsupported();
+	}
+
+	public void updateCharacterStream(int columnIndex, Reader x, int length) throws SQLException {
+		throw unsupported();
+	}
+
+	public void updateObject(int columnIndex, Object x, int scaleOrLength) throws SQLException {
+		throw unsupported();
+	}
+
+	public void updateObject(int columnIndex, Object x) throws SQLException {
+		throw unsupported();
+	}
+
+	public void updateNull(String columnLabel) throws SQLException {
+		throw unsupported();
+	}
+
+	public void updateBoolean(String columnLabel, boolean x) throws SQLException {
+		throw unsupported();
+	}
+
+	public void updateByte(String columnLabel, byte x) throws SQLException {
+		throw unsupported();
+	}
+
+	public void updateShort(String columnLabel, short x) throws SQLException {
+		throw unsupported();
+	}
+
+	public void updateInt(String columnLabel, int x) throws SQLException {
+		throw unsupported();
+	}
+
+	public void updateLong(String columnLabel, long x) throws SQLException {
+		throw unsupported();
+	}
+
+	public void updateFloat(String columnLabel, float x) throws SQLException {
+		throw unsupported();
+	}
+
+	public void updateDouble(String columnLabel, double x) throws SQLException {
+		throw unsupported();
+	}
+
+	public void updateBigDecimal(String columnLabel, BigDecimal x) throws SQLException {
+		throw unsupported();
+	}
+
+	public void updateString(String columnLabel, String x) throws SQLException {
+		throw unsupported();
+	}
+
+	public void updateBytes(String columnLabel, byte[] x) throws SQLException {
+		throw unsupported();
+	}
+
+	public void updateDate(String columnLabel, Date x) throws SQLException {
+		throw unsupported();
+	}
+
+	public void updateTime(String columnLabel, Time x) throws SQLException {
+		throw unsupported();
+	}
+
+	public void updateTimestamp(String columnLabel, Timestamp x) throws SQLException {
+		throw unsupported();
+	}
+
+	public void updateAsciiStream(String columnLabel, InputStream x, int length) throws SQLException {
+		throw unsupported();
+	}
+
+	public void updateBinaryStream(String columnLabel, InputStream x, int length) throws SQLException {
+		throw unsupported();
+	}
+
+	public void updateCharacterStream(String columnLabel, Reader x, int length) throws SQLException {
+		throw unsupported();
+	}
+
+	public void updateObject(String columnLabel, Object x, int scaleOrLength) throws SQLException {
+		throw unsupported();
+	}
+
+	public void updateObject(String columnLabel, Object x) throws SQLException {
+		throw unsupported();
+	}
+
+	public void insertRow() throws SQLException {
+		throw unsupported();
+	}
+
+	public void updateRow() throws SQLException {
+		throw unsupported();
+	}
+
+	public void deleteRow() throws SQLException {
+		throw unsupported();
+	}
+
+	public void refreshRow() throws SQLException {
+		throw unsupported();
+	}
+
+	public void cancelRowUpdates() throws SQLException {
+		throw unsupported();
+	}
+
+	public void moveToInsertRow() throws SQLException {
+		throw unsupported();
+	}
+
+	public void moveToCurrentRow() throws SQLException {
+		throw unsupported();
+	}
+
+	public Object getObject(int columnIndex, Map<String, Class<?>> map) throws SQLException {
+		throw unsupported();
+	}
+
+	public Ref getRef(int columnIndex) throws SQLException {
+		throw unsupported();
+	}
+
+	public Blob getBlob(int columnIndex) throws SQLException {
+		throw unsupported();
+	}
+
+	public Clob getClob(int columnIndex) throws SQLException {
+		throw unsupported();
+	}
+
+	public Array getArray(int columnIndex) throws SQLException {
+		throw unsupported();
+	}
+
+	public Object getObject(String columnLabel, Map<String, Class<?>> map) throws SQLException {
+		throw unsupported();
+	}
+
+	public Ref getRef(String columnLabel) throws SQLException {
+		throw unsupported();
+	}
+
+	public Blob getBlob(String columnLabel) throws SQLException {
+		throw unsupported();
+	}
+
+	public Clob getClob(String columnLabel) throws SQLException {
+		throw unsupported();
+	}
+
+	public Array getArray(String columnLabel) throws SQLException {
+		throw unsupported();
+	}
+
+	public Date getDate(int columnIndex, Calendar cal) throws SQLException {
+		throw unsupported();
+	}
+
+	public Date getDate(String columnLabel, Calendar cal) throws SQLException {
+		throw unsupported();
+	}
+
+	public Time getTime(int columnIndex, Calendar cal) throws SQLException {
+		throw unsupported();
+	}
+
+	public Time getTime(String columnLabel, Calendar cal) throws SQLException {
+		throw unsupported();
+	}
+
+	public Timestamp getTimestamp(int columnIndex, Calendar cal) throws SQLException {
+		throw unsupported();
+	}
+
+	public Timestamp getTimestamp(String columnLabel, Calendar cal) throws SQLException {
+		throw unsupported();
+	}
+
+	public URL getURL(int columnIndex) throws SQLException {
+		throw unsupported();
+	}
+
+	public URL getURL(String columnLabel) throws SQLException {
+		throw unsupported();
+	}
+
+	public void updateRef(int columnIndex, Ref x) throws SQLException {
+		throw unsupported();
+	}
+
+	public void updateRef(String columnLabel, Ref x) throws SQLException {
+		throw unsupported();
+	}
+
+	public void updateBlob(int columnIndex, Blob x) throws SQLException {
+		throw unsupported();
+	}
+
+	public void updateBlob(String columnLabel, Blob x) throws SQLException {
+		throw unsupported();
+	}
+
+	public void updateClob(int columnIndex, Clob x) throws SQLException {
+		throw unsupported();
+	}
+
+	public void updateClob(String columnLabel, Clob x) throws SQLException {
+		throw unsupported();
+	}
+
+	public void updateArray(int columnIndex, Array x) throws SQLException {
+		throw unsupported();
+	}
+
+	public void updateArray(String columnLabel, Array x) throws SQLException {
+		throw unsupported();
+	}
+
+	public RowId getRowId(int columnIndex) throws SQLException {
+		throw unsupported();
+	}
+
+	public RowId getRowId(String columnLabel) throws SQLException {
+		throw unsupported();
+	}
+
+	public void updateRowId(int columnIndex, RowId x) throws SQLException {
+		throw unsupported();
+	}
+
+	public void updateRowId(String columnLabel, RowId x) throws SQLException {
+		throw unsupported();
+	}
+
+	public void updateNString(int columnIndex, String x) throws SQLException {
+		throw unsupported();
+	}
+
+	public void updateNString(String columnLabel, String x) throws SQLException {
+		throw unsupported();
+	}
+
+	public void updateNClob(int columnIndex, NClob x) throws SQLException {
+		throw unsupported();
+	}
+
+	public void updateNClob(String columnLabel, NClob x) throws SQLException {
+		throw unsupported();
+	}
+
+	public NClob getNClob(int columnIndex) throws SQLException {
+		throw unsupported();
+	}
+
+	public NClob getNClob(String columnLabel) throws SQLException {
+		throw unsupported();
+	}
+
+	public SQLXML getSQLXML(int columnIndex) throws SQLException {
+		throw unsupported();
+	}
+
+	public SQLXML getSQLXML(String columnLabel) throws SQLException {
+		throw unsupported();
+	}
+
+	public void updateSQLXML(int columnIndex, SQLXML x) throws SQLException {
+		throw unsupported();
+	}
+
+	public void updateSQLXML(String columnLabel, SQLXML x) throws SQLException {
+		throw unsupported();
+	}
+
+	public String getNString(int columnIndex) throws SQLException {
+		throw unsupported();
+	}
+
+	public String getNString(String columnLabel) throws SQLException {
+		throw unsupported();
+	}
+
+	public Reader getNCharacterStream(int columnIndex) throws SQLException {
+		throw unsupported();
+	}
+
+	public Reader getNCharacterStream(String columnLabel) throws SQLException {
+		throw unsupported();
+	}
+
+	public void updateNCharacterStream(int columnIndex, Reader x, long length) throws SQLException {
+		throw unsupported();
+	}
+
+	public void updateNCharacterStream(String columnLabel, Reader x, long length) throws SQLException {
+		throw unsupported();
+	}
+
+	public void updateAsciiStream(int columnIndex, InputStream x, long length) throws SQLException {
+		throw unsupported();
+	}
+
+	public void updateBinaryStream(int columnIndex, InputStream x, long length) throws SQLException {
+		throw unsupported();
+	}
+
+	public void updateCharacterStream(int columnIndex, Reader x, long length) throws SQLException {
+		throw unsupported();
+	}
+
+	public void updateAsciiStream(String columnLabel, InputStream x, long length) throws SQLException {
+		throw unsupported();
+	}
+
+	public void updateBinaryStream(String columnLabel, InputStream x, long length) throws SQLException {
+		throw unsupported();
+	}
+
+	public void updateCharacterStream(String columnLabel, Reader x, long length) throws SQLException {
+		throw unsupported();
+	}
+
+	public void updateBlob(int columnIndex, InputStream x, long length) throws SQLException {
+		throw unsupported();
+	}
+
+	public void updateBlob(String columnLabel, InputStream x, long length) throws SQLException {
+		throw unsupported();
+	}
+
+	public void updateClob(int columnIndex, Reader x, long length) throws SQLException {
+		throw unsupported();
+	}
+
+	public void updateClob(String columnLabel, Reader x, long length) throws SQLException {
+		throw unsupported();
+	}
+
+	public void updateNClob(int columnIndex, Reader x, long length) throws SQLException {
+		throw unsupported();
+	}
+
+	public void updateNClob(String columnLabel, Reader x, long length) throws SQLException {
+		throw unsupported();
+	}
+
+	public void updateNCharacterStream(int columnIndex, Reader x) throws SQLException {
+		throw unsupported();
+	}
+
+	public void updateNCharacterStream(String columnLabel, Reader x) throws SQLException {
+		throw unsupported();
+	}
+
+	public void updateAsciiStream(int columnIndex, InputStream x) throws SQLException {
+		throw unsupported();
+	}
+
+	public void updateBinaryStream(int columnIndex, InputStream x) throws SQLException {
+		throw unsupported();
+	}
+
+	public void updateCharacterStream(int columnIndex, Reader x) throws SQLException {
+		throw unsupported();
+	}
+
+	public void updateAsciiStream(String columnLabel, InputStream x) throws SQLException {
+		throw unsupported();
+	}
+
+	public void updateBinaryStream(String columnLabel, InputStream x) throws SQLException {
+		throw unsupported();
+	}
+
+	public void updateCharacterStream(String columnLabel, Reader x) throws SQLException {
+		throw unsupported();
+	}
+
+	public void updateBlob(int columnIndex, InputStream x) throws SQLException {
+		throw unsupported();
+	}
+
+	public void updateBlob(String columnLabel, InputStream x) throws SQLException {
+		throw unsupported();
+	}
+
+	public void updateClob(int columnIndex, Reader x) throws SQLException {
+		throw unsupported();
+	}
+
+	public void updateClob(String columnLabel, Reader x) throws SQLException {
+		throw unsupported();
+	}
+
+	public void updateNClob(int columnIndex, Reader x) throws SQLException {
+		throw unsupported();
+	}
+
+	public void updateNClob(String columnLabel, Reader x) throws SQLException {
+		throw unsupported();
+	}
+
+	public <T> T getObject(int columnIndex, Class<T> type) throws SQLException {
+		throw unsupported();
+	}
+
+	public <T> T getObject(String columnLabel, Class<T> type) throws SQLException {
+		throw unsupported();
+	}
+
+}
@@ -0,0 +1,264 @@
+package gr.seab.r2rml.beans.join;
+
+import gr.seab.r2rml.beans.Util;
+import gr.seab.r2rml.entities.Template;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Looks up the parent subjects of child rows in batches. The join values of the child rows are collected until there are
+ * as many distinct keys as the size of the batch, and all of them are looked up with a single execution of a prepared statement
+ * of the form SELECT r2rml_parent.*, r2rml_keys.r2rml_key FROM (parent query) r2rml_parent JOIN (SELECT 0 AS r2rml_key, ? AS r2rml_value0
+ * UNION ALL SELECT 1, ? ...) r2rml_keys ON r2rml_parent.parent = r2rml_keys.r2rml_value0. A parent row is returned once for each
+ * key of the batch the database finds equal to it, e.g. under a case-insensitive collation, and the last column holds the position
+ * of that key, so the parent subjects are routed back to the child rows as the database compared them, not by the string the driver
+ * returns for the parent columns. The child values are bound as the types of the parent columns, as far as the driver reports them. A batch is also
+ * looked up once it holds {@value #CHILDREN_PER_KEY} child rows per key of a full batch, so that child rows with few distinct keys
+ * are not all kept in memory. A lookup that fails throws an {@link IllegalStateException}, since the mapping would be incomplete.
+ *
+ */
+public class BatchJoin {
+
+	private static final Logger log = LoggerFactory.getLogger(BatchJoin.class);
+
+	public static final String PARENT_ALIAS = "r2rml_parent";
+
+	/**
+	 * The alias of the derived table of the keys of the batch
+	 */
+	public static final String KEYS_ALIAS = "r2rml_keys";
+
+	/**
+	 * The alias of the column holding the position of the key of a parent row in the batch
+	 */
+	public static final String KEY_ALIAS = "r2rml_key";
+
+	/**
+	 * The prefix of the aliases of the columns holding the values of the keys, followed by the index of the parent column
+	 */
+	public static final String VALUE_ALIAS = "r2rml_value";
+
+	public static final int CHILDREN_PER_KEY = 16;
+
+	private final PreparedStatement statement;
+
+	private final int batchSize;
+
+	private final List<String> childColumns;
+
+	private final Template parentTemplate;
+
+	private final Util util;
+
+	private final boolean encodeURLs;
+
+	private final MatchHandler handler;
+
+	/**
+	 * The jdbc types of the parent columns, to bind the child values as. Types.NULL where unknown.
+	 */
+	private final int[] parentTypes;
+
+	/**
+	 * The child columns in the result set of the child rows, once the first one has been added
+	 */
+	private HashJoin.KeyColumns childKeyColumns;
+
+	/**
+	 * The values to bind for each distinct key of the batch
+	 */
+	private Map<String, List<Object>> keys = new LinkedHashMap<String, List<Object>>();
+
+	/**
+	 * The key and the subject of each child row of the batch
+	 */
+	private List<String[]> children = new ArrayList<String[]>();
+
+	private long lookups;
+
+	/**
+	 * @param statement a statement created from {@link #createQuery(String, List, int, boolean)} with the same parent columns and batch size
+	 * @param childColumns the rr:child columns, with any quotes removed
+	 * @param parentColumns the rr:parent columns, with any quotes removed
+	 */
+	public BatchJoin(PreparedStatement statement, int batchSize, List<String> childColumns, List<String> parentColumns, Template parentTemplate,
+			Util util, boolean encodeURLs, MatchHandler handler) {
+		this.statement = statement;
+		this.batchSize = batchSize;
+		this.childColumns = childColumns;
+		this.parentTemplate = parentTemplate;
+		this.util = util;
+		this.encodeURLs = encodeURLs;
+		this.handler = handler;
+		this.parentTypes = findParentTypes(statement, parentColumns);
+	}
+
+	/**
+	 * Creates the lookup query for a batch. The keys are a derived table with a row per key, holding its position
+	 * and its values, and composite keys are compared column by column.
+	 * @param parentColumns the parent columns, as they should appear in the query
+	 * @param fromDual whether a select without a table needs FROM dual, as in Oracle
+	 */
+	public static String createQuery(String parentQuery, List<String> parentColumns, int batchSize, boolean fromDual) {
+		StringBuilder keys = new StringBuilder();
+		for (int i = 0; i < batchSize; i++) {
+			keys.append((i > 0 ? " UNION ALL SELECT " : "SELECT ") + i + ((i == 0) ? " AS " + KEY_ALIAS : ""));
+			for (int j = 0; j < parentColumns.size(); j++) {
+				keys.append(", ?" + ((i == 0) ? " AS " + VALUE_ALIAS + j : ""));
+			}
+			if (fromDual) keys.append(" FROM dual");
+		}
+		StringBuilder comparison = new StringBuilder();
+		for (int j = 0; j < parentColumns.size(); j++) {
+			comparison.append((j > 0 ? " AND " : "") + PARENT_ALIAS + "." + parentColumns.get(j) + " = " + KEYS_ALIAS + "." + VALUE_ALIAS + j);
+		}
+		return "SELECT " + PARENT_ALIAS + ".*, " + KEYS_ALIAS + "." + KEY_ALIAS + " FROM (" + parentQuery + ") " + PARENT_ALIAS
+				+ " JOIN (" + keys + ") " + KEYS_ALIAS + " ON " + comparison;
+	}
+
+	/**
+	 * Finds the jdbc types of the parent columns in the columns of the lookup statement. A driver that cannot describe
+	 * the statement before it is executed leaves them unknown, and the child values are bound as they were read.
+	 */
+	private static int[] findParentTypes(PreparedStatement statement, List<String> parentColumns) {
+		int[] results = new int[parentColumns.size()];
+		Arrays.fill(results, Types.NULL);
+		try {
+			ResultSetMetaData metaData = statement.getMetaData();
+			if (metaData == null) return results;
+			for (int i = 0; i < parentColumns.size(); i++) {
+				for (int column = 1; column <= metaData.getColumnCount(); column++) {
+					if (parentColumns.get(i).equalsIgnoreCase(metaData.getColumnLabel(column))) {
+						results[i] = metaData.getColumnType(column);
+						break;
+					}
+				}
+			}
+		} catch (SQLException e) {
+			log.info("Could not find the types of the parent columns (" + e.getMessage().trim() + "). Binding the child values as read.");
+		}
+		return results;
+	}
+
+	/**
+	 * Adds the current row of the child logical table to the batch, and looks the batch up once it is full
+	 */
+	public void add(ResultSet rs, String childSubject) throws SQLException {
+		if (childSubject == null) return;
+		//child values the database compares as equal, e.g. 1.0 and 1.00, are looked up once
+		if (childKeyColumns == null) childKeyColumns = new HashJoin.KeyColumns(rs, childColumns);
+		String key = childKeyColumns.createKey(rs);
+		if (key == null) return;
+		List<Object> objects = new ArrayList<Object>();
+		for (String column : childColumns) {
+			objects.add(rs.getObject(column));
+		}
+
+		if (!keys.containsKey(key)) {
+			if (keys.size() == batchSize) {
+				flush();
+			}
+			keys.put(key, objects);
+		}
+		children.add(new String[] {key, childSubject});
+		if (children.size() >= batchSize * CHILDREN_PER_KEY) {
+			flush();
+		}
+	}
+
+	/**
+	 * Binds the values of the keys of the batch, starting at the given parameter, and returns the parameter after them.
+	 * An incomplete batch repeats its last key, so that the same statement is used.
+	 */
+	private int bindKeys(int parameter) throws SQLException {
+		List<Object> last = null;
+		for (List<Object> objects : keys.values()) {
+			parameter = bindValues(parameter, objects);
+			last = objects;
+		}
+		for (int i = keys.size(); i < batchSize; i++) {
+			parameter = bindValues(parameter, last);
+		}
+		return parameter;
+	}
+
+	private int bindValues(int parameter, List<Object> objects) throws SQLException {
+		for (int i = 0; i < objects.size(); i++) {
+			if (parentTypes[i] == Types.NULL) {
+				statement.setObject(parameter++, objects.get(i));
+			} else {
+				statement.setObject(parameter++, objects.get(i), parentTypes[i]);
+			}
+		}
+		return parameter;
+	}
+
+	/**
+	 * Looks up the last, incomplete batch
+	 */
+	public void finish() throws SQLException {
+		if (!keys.isEmpty()) {
+			flush();
+		}
+	}
+
+	public long getLookups() {
+		return lookups;
+	}
+
+	private void flush() {
+		List<String> batchKeys = new ArrayList<String>(keys.keySet());
+		Map<String, List<String>> parents = new HashMap<String, List<String>>();
+		try {
+			bindKeys(1);
+
+			ResultSet rs = statement.executeQuery();
+			try {
+				int keyColumn = rs.getMetaData().getColumnCount();
+				while (rs.next()) {
+					int position = rs.getInt(keyColumn);
+					if (rs.wasNull() || position >= batchKeys.size()) continue;
+					String key = batchKeys.get(position);
+					String parentSubject = util.fillTemplate(parentTemplate, rs, encodeURLs);
+					if (parentSubject == null) continue;
+					List<String> subjects = parents.get(key);
+					if (subjects == null) {
+						subjects = new ArrayList<String>(1);
+						parents.put(key, subjects);
+					}
+					subjects.add(parentSubject);
+				}
+			} finally {
+				rs.close();
+			}
+		} catch (SQLException e) {
+			throw new IllegalStateException("Failed to look up the parent subjects of " + batchKeys.size() + " keys.", e);
+		}
+		lookups++;
+
+		for (String[] child : children) {
+			List<String> subjects = parents.get(child[0]);
+			if (subjects != null) {
+				for (String parentSubject : subjects) {
+					handler.match(child[1], parentSubject);
+				}
+			}
+		}
+		keys.clear();
+		children.clear();
+	}
+
+}
@@ -0,0 +1,159 @@
+package gr.seab.r2rml.beans.join;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The subjects of a parent triples map by the key of their join columns, as probed by the {@link HashJoin}s of its children.
+ * When the index outgrows its memory budget, the parent entries are partitioned on disk by the hash of their key.
+ * The index is built once, and once {@link #complete()} it is only read, so the range tasks of a child logical table
+ * mapping share it.
+ *
+ */
+public class HashIndex {
+
+	private static final Logger log = LoggerFactory.getLogger(HashIndex.class);
+
+	/**
+	 * Approximate bytes used by an index entry, besides its characters
+	 */
+	private static final int ENTRY_OVERHEAD = 96;
+
+	private final long memoryBudget;
+
+	private Map<String, List<String>> index = new HashMap<String, List<String>>();
+
+	private long memoryUsed;
+
+	private long parentCount;
+
+	private File[] parentFiles;
+
+	private DataOutputStream[] parentOutputs;
+
+	/**
+	 * @param memoryBudget the bytes the in-memory index may use before it is partitioned on disk
+	 */
+	public HashIndex(long memoryBudget) {
+		this.memoryBudget = memoryBudget;
+	}
+
+	/**
+	 * Adds a parent subject to the index
+	 */
+	public void addParent(String key, String parentSubject) throws IOException {
+		if (key == null || parentSubject == null) return;
+		parentCount++;
+		if (isSpilled()) {
+			HashJoin.write(parentOutputs[HashJoin.partition(key)], key, parentSubject);
+			return;
+		}
+		List<String> subjects = index.get(key);
+		if (subjects == null) {
+			subjects = new ArrayList<String>(1);
+			index.put(key, subjects);
+			memoryUsed += 2 * key.length() + ENTRY_OVERHEAD;
+		}
+		subjects.add(parentSubject);
+		memoryUsed += 2 * parentSubject.length() + ENTRY_OVERHEAD / 2;
+		if (memoryUsed > memoryBudget) {
+			spill();
+		}
+	}
+
+	/**
+	 * Ends the parent subjects. The index is only read from now on.
+	 */
+	public void complete() throws IOException {
+		if (!isSpilled()) return;
+		for (int i = 0; i < HashJoin.SPILL_PARTITIONS; i++) {
+			parentOutputs[i].close();
+		}
+	}
+
+	/**
+	 * The parent subjects of a key, when the index is in memory
+	 */
+	public List<String> get(String key) {
+		List<String> subjects = index.get(key);
+		return (subjects != null) ? subjects : Collections.<String>emptyList();
+	}
+
+	/**
+	 * Reads a disk partition of the parent subjects in memory
+	 */
+	public Map<String, List<String>> readPartition(int partition) throws IOException {
+		Map<String, List<String>> results = new HashMap<String, List<String>>();
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(parentFiles[partition])));
+		try {
+			String[] entry;
+			while ((entry = HashJoin.read(in)) != null) {
+				List<String> subjects = results.get(entry[0]);
+				if (subjects == null) {
+					subjects = new ArrayList<String>(1);
+					results.put(entry[0], subjects);
+				}
+				subjects.add(entry[1]);
+			}
+		} finally {
+			in.close();
+		}
+		return results;
+	}
+
+	/**
+	 * Releases the index and deletes any temporary files
+	 */
+	public void close() {
+		index = new HashMap<String, List<String>>();
+		if (!isSpilled()) return;
+		for (int i = 0; i < HashJoin.SPILL_PARTITIONS; i++) {
+			try { parentOutputs[i].close(); } catch (IOException e) {}
+			parentFiles[i].delete();
+		}
+	}
+
+	public boolean isSpilled() {
+		return parentFiles != null;
+	}
+
+	public long getParentCount() {
+		return parentCount;
+	}
+
+	/**
+	 * Moves the in-memory index to the disk partitions. Parents added from now on are written there directly.
+	 */
+	private void spill() throws IOException {
+		log.info("Index of " + parentCount + " parent subjects exceeds " + memoryBudget + " bytes. Partitioning it in " + HashJoin.SPILL_PARTITIONS + " temporary files.");
+		parentFiles = new File[HashJoin.SPILL_PARTITIONS];
+		parentOutputs = new DataOutputStream[HashJoin.SPILL_PARTITIONS];
+		for (int i = 0; i < HashJoin.SPILL_PARTITIONS; i++) {
+			parentFiles[i] = File.createTempFile("r2rml-parent-", ".part");
+			parentFiles[i].deleteOnExit();
+			parentOutputs[i] = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(parentFiles[i])));
+		}
+		for (Map.Entry<String, List<String>> entry : index.entrySet()) {
+			for (String parentSubject : entry.getValue()) {
+				HashJoin.write(parentOutputs[HashJoin.partition(entry.getKey())], entry.getKey(), parentSubject);
+			}
+		}
+		index = new HashMap<String, List<String>>();
+		memoryUsed = 0;
+	}
+
+}
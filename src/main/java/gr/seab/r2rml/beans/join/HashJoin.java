@@ -0,0 +1,252 @@
+package gr.seab.r2rml.beans.join;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Joins the rows of a child logical table with the subjects of a parent triples map, on the values of the join columns.
+ * The parent subjects are indexed by their join key once, in a {@link HashIndex} shared by the range tasks of the child,
+ * and each child row probes the index.
+ * When the index has been partitioned on disk, the child entries are partitioned the same way by the hash of their key,
+ * and each partition is joined in memory after the child rows have been read.
+ * Keys are compared as strings, as returned by the JDBC driver and normalized by {@link #normalize(String, int)}, so that the
+ * child and the parent columns match as the database would compare them even when their types differ, e.g. an integer child
+ * and a numeric parent, or a char(n) child and a varchar parent. A key containing a null value matches nothing.
+ *
+ */
+public class HashJoin {
+
+	/**
+	 * The number of disk partitions, once the index does not fit in memory
+	 */
+	static final int SPILL_PARTITIONS = 32;
+
+	private final HashIndex index;
+
+	private final MatchHandler handler;
+
+	private final List<String> childColumns;
+
+	/**
+	 * The child columns in the result set of the child rows, once the first one has been probed
+	 */
+	private KeyColumns childKeyColumns;
+
+	private File[] childFiles;
+
+	private DataOutputStream[] childOutputs;
+
+	/**
+	 * @param index the parent subjects, completed
+	 * @param childColumns the rr:child columns, with any quotes removed
+	 * @param handler receives the matches
+	 */
+	public HashJoin(HashIndex index, List<String> childColumns, MatchHandler handler) {
+		this.index = index;
+		this.childColumns = childColumns;
+		this.handler = handler;
+	}
+
+	/**
+	 * Creates the key of a row from the values of its join columns. Returns null if any of them is null.
+	 */
+	public static String createKey(List<String> values) {
+		StringBuilder result = new StringBuilder();
+		for (int i = 0; i < values.size(); i++) {
+			if (values.get(i) == null) return null;
+			if (i > 0) result.append('\u0000');
+			result.append(values.get(i));
+		}
+		return result.toString();
+	}
+
+	/**
+	 * Normalizes the value of a join column of the given java.sql.Types: numbers are written without an exponent and without
+	 * trailing zeros, and fixed-length character values without the trailing spaces they are padded with. Other values are kept.
+	 */
+	public static String normalize(String value, int sqlType) {
+		if (value == null) return null;
+		switch (sqlType) {
+			case Types.TINYINT:
+			case Types.SMALLINT:
+			case Types.INTEGER:
+			case Types.BIGINT:
+			case Types.NUMERIC:
+			case Types.DECIMAL:
+			case Types.REAL:
+			case Types.FLOAT:
+			case Types.DOUBLE:
+				try {
+					BigDecimal number = new BigDecimal(value.trim());
+					return (number.signum() == 0) ? "0" : number.stripTrailingZeros().toPlainString();
+				} catch (NumberFormatException e) {
+					//e.g. NaN or Infinity
+					return value;
+				}
+			case Types.CHAR:
+			case Types.NCHAR:
+				int end = value.length();
+				while (end > 0 && value.charAt(end - 1) == ' ') end--;
+				return value.substring(0, end);
+			default:
+				return value;
+		}
+	}
+
+	/**
+	 * Matches a child row with the indexed parent subjects. Once spilled, the child is kept on disk and matched in {@link #finish()}.
+	 */
+	public void probe(String key, String childSubject) throws IOException {
+		if (key == null || childSubject == null) return;
+		if (index.isSpilled()) {
+			if (childOutputs == null) spill();
+			write(childOutputs[partition(key)], key, childSubject);
+			return;
+		}
+		for (String parentSubject : index.get(key)) {
+			handler.match(childSubject, parentSubject);
+		}
+	}
+
+	/**
+	 * Matches the current row of the child logical table with the indexed parent subjects
+	 */
+	public void probe(ResultSet rs, String childSubject) throws SQLException, IOException {
+		if (childKeyColumns == null) childKeyColumns = new KeyColumns(rs, childColumns);
+		probe(childKeyColumns.createKey(rs), childSubject);
+	}
+
+	/**
+	 * Matches the child rows kept on disk, one partition at a time, and deletes the temporary files.
+	 */
+	public void finish() throws IOException {
+		if (childOutputs == null) return;
+		for (int i = 0; i < SPILL_PARTITIONS; i++) {
+			childOutputs[i].close();
+		}
+		for (int i = 0; i < SPILL_PARTITIONS; i++) {
+			Map<String, List<String>> partitionIndex = index.readPartition(i);
+			DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(childFiles[i])));
+			try {
+				String[] entry;
+				while ((entry = read(in)) != null) {
+					List<String> subjects = partitionIndex.get(entry[0]);
+					if (subjects != null) {
+						for (String parentSubject : subjects) {
+							handler.match(entry[1], parentSubject);
+						}
+					}
+				}
+			} finally {
+				in.close();
+			}
+		}
+		close();
+	}
+
+	/**
+	 * Deletes the temporary files of the child rows. The shared index is closed by its owner.
+	 */
+	public void close() {
+		if (childOutputs == null) return;
+		for (int i = 0; i < SPILL_PARTITIONS; i++) {
+			try { childOutputs[i].close(); } catch (IOException e) {}
+			childFiles[i].delete();
+		}
+		childOutputs = null;
+	}
+
+	/**
+	 * The join columns of a result set, resolved once to their indexes and types, to create the normalized keys of its rows
+	 */
+	public static class KeyColumns {
+
+		private final int[] indexes;
+
+		private final int[] types;
+
+		/**
+		 * @param columns the join columns, with any quotes removed
+		 */
+		public KeyColumns(ResultSet rs, List<String> columns) throws SQLException {
+			ResultSetMetaData rsMeta = rs.getMetaData();
+			indexes = new int[columns.size()];
+			types = new int[columns.size()];
+			for (int i = 0; i < columns.size(); i++) {
+				indexes[i] = rs.findColumn(columns.get(i));
+				types[i] = rsMeta.getColumnType(indexes[i]);
+			}
+		}
+
+		/**
+		 * Creates the key of the current row. Returns null if any of its join values is null.
+		 */
+		public String createKey(ResultSet rs) throws SQLException {
+			List<String> values = new ArrayList<String>(indexes.length);
+			for (int i = 0; i < indexes.length; i++) {
+				values.add(normalize(rs.getString(indexes[i]), types[i]));
+			}
+			return HashJoin.createKey(values);
+		}
+	}
+
+	/**
+	 * Opens the disk partitions of the child rows, matching the ones of the index
+	 */
+	private void spill() throws IOException {
+		childFiles = new File[SPILL_PARTITIONS];
+		childOutputs = new DataOutputStream[SPILL_PARTITIONS];
+		for (int i = 0; i < SPILL_PARTITIONS; i++) {
+			childFiles[i] = File.createTempFile("r2rml-child-", ".part");
+			childFiles[i].deleteOnExit();
+			childOutputs[i] = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(childFiles[i])));
+		}
+	}
+
+	static int partition(String key) {
+		return (key.hashCode() & Integer.MAX_VALUE) % SPILL_PARTITIONS;
+	}
+
+	static void write(DataOutputStream out, String key, String subject) throws IOException {
+		writeString(out, key);
+		writeString(out, subject);
+	}
+
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		byte[] bytes = value.getBytes("UTF-8");
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	static String[] read(DataInputStream in) throws IOException {
+		String key;
+		try {
+			key = readString(in);
+		} catch (EOFException e) {
+			return null;
+		}
+		return new String[] {key, readString(in)};
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		byte[] bytes = new byte[in.readInt()];
+		in.readFully(bytes);
+		return new String(bytes, "UTF-8");
+	}
+
+}
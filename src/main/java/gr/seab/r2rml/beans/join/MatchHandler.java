@@ -0,0 +1,11 @@
+package gr.seab.r2rml.beans.join;
+
+/**
+ * Receives the pairs of child and parent subjects whose join columns are equal
+ *
+ */
+public interface MatchHandler {
+
+	public void match(String childSubject, String parentSubject);
+
+}
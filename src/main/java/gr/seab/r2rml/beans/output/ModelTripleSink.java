@@ -0,0 +1,51 @@
+package gr.seab.r2rml.beans.output;
+
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.Statement;
+
+/**
+ * Keeps every generated triple in the result model, which is serialized after generation has finished.
+ *
+ */
+public class ModelTripleSink implements TripleSink {
+
+	private Model model;
+	
+	private long count;
+	
+	public ModelTripleSink() {
+	}
+	
+	public void open(Model model) {
+		this.model = model;
+	}
+	
+	public void add(Statement statement) {
+		synchronized (this) {
+			model.add(statement);
+			count++;
+		}
+	}
+	
+	public void close() {
+	}
+	
+	public boolean requiresModel() {
+		return true;
+	}
+	
+	public long getCount() {
+		return count;
+	}
+	
+	/**
+	 * The model does not preserve any order, so parts write directly to it.
+	 */
+	public TripleSink createPart() {
+		return this;
+	}
+	
+	public void append(TripleSink part) {
+	}
+	
+}
@@ -0,0 +1,248 @@
+package gr.seab.r2rml.beans.output;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.system.StreamRDFBase;
+
+import com.hp.hpl.jena.graph.Graph;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.rdf.model.Statement;
+
+/**
+ * Keeps the triples generated by each triples map in a segment of its own, so that the triples of a triples map
+ * can be replaced without looking at the others. The output is the union of the segments.
+ * A segment may also keep its triples by row, under the hash of the row, so that only the triples of the rows
+ * that changed have to be replaced.
+ * In the file, each segment is written as N-Triples after a comment line with the uri of its triples map,
+ * and the triples of each row after a comment line with the hash of the row, so that the file is itself valid N-Triples.
+ *
+ */
+public class ProvenanceIndex {
+
+	private static final String SEGMENT_MARKER = "#source ";
+
+	private static final String ROW_MARKER = "#row ";
+
+	private LinkedHashMap<String, Model> segments = new LinkedHashMap<String, Model>();
+
+	/**
+	 * The segments kept by row: the triples of each row by the hash of the row, by triples map uri
+	 */
+	private LinkedHashMap<String, Map<String, List<Triple>>> rowSegments = new LinkedHashMap<String, Map<String, List<Triple>>>();
+
+	public ProvenanceIndex() {
+	}
+
+	/**
+	 * Reads the segments kept in a file by {@link #write(File)}. The comment lines are read first, along with the number
+	 * of triples after each one, and then the triples are parsed at once, so that blank nodes are shared among segments.
+	 */
+	public static ProvenanceIndex read(File file) throws IOException {
+		List<String> markers = new ArrayList<String>();
+		List<Integer> counts = new ArrayList<Integer>();
+		BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+		try {
+			String line;
+			while ((line = in.readLine()) != null) {
+				if (line.startsWith(SEGMENT_MARKER) || line.startsWith(ROW_MARKER)) {
+					markers.add(line);
+					counts.add(0);
+				} else if (!markers.isEmpty() && line.trim().length() > 0 && !line.startsWith("#")) {
+					counts.set(counts.size() - 1, counts.get(counts.size() - 1) + 1);
+				}
+			}
+		} finally {
+			in.close();
+		}
+
+		final List<Triple> triples = new ArrayList<Triple>();
+		InputStream is = new BufferedInputStream(new FileInputStream(file));
+		try {
+			RDFDataMgr.parse(new StreamRDFBase() {
+				public void triple(Triple triple) {
+					triples.add(triple);
+				}
+			}, is, Lang.NTRIPLES);
+		} finally {
+			is.close();
+		}
+
+		ProvenanceIndex result = new ProvenanceIndex();
+		Iterator<Triple> tripleIterator = triples.iterator();
+		String uri = null;
+		for (int i = 0; i < markers.size(); i++) {
+			String marker = markers.get(i);
+			List<Triple> markerTriples = new ArrayList<Triple>(counts.get(i));
+			for (int j = 0; j < counts.get(i); j++) {
+				markerTriples.add(tripleIterator.next());
+			}
+			if (marker.startsWith(SEGMENT_MARKER)) {
+				uri = marker.substring(SEGMENT_MARKER.length()).trim();
+				Graph graph = result.getSegment(uri).getGraph();
+				for (Triple triple : markerTriples) {
+					graph.add(triple);
+				}
+			} else if (uri != null) {
+				if (!result.rowSegments.containsKey(uri)) {
+					result.segments.remove(uri);
+					result.rowSegments.put(uri, new LinkedHashMap<String, List<Triple>>());
+				}
+				result.rowSegments.get(uri).put(marker.substring(ROW_MARKER.length()).trim(), markerTriples);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Keeps the segments in a file, in the order their triples maps were first generated
+	 */
+	public void write(File file) throws IOException {
+		OutputStream out = new BufferedOutputStream(new FileOutputStream(file));
+		try {
+			for (Map.Entry<String, Model> segment : segments.entrySet()) {
+				out.write((SEGMENT_MARKER + segment.getKey() + "\n").getBytes("UTF-8"));
+				RDFDataMgr.writeTriples(out, segment.getValue().getGraph().find(Node.ANY, Node.ANY, Node.ANY));
+			}
+			for (Map.Entry<String, Map<String, List<Triple>>> segment : rowSegments.entrySet()) {
+				out.write((SEGMENT_MARKER + segment.getKey() + "\n").getBytes("UTF-8"));
+				for (Map.Entry<String, List<Triple>> row : segment.getValue().entrySet()) {
+					out.write((ROW_MARKER + row.getKey() + "\n").getBytes("UTF-8"));
+					RDFDataMgr.writeTriples(out, row.getValue().iterator());
+				}
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	public void add(String uri, Statement statement) {
+		getSegment(uri).add(statement);
+	}
+
+	/**
+	 * Returns the segment of a triples map, creating it if there is none. The segments kept by row are not returned.
+	 */
+	public Model getSegment(String uri) {
+		Model segment = segments.get(uri);
+		if (segment == null) {
+			segment = ModelFactory.createDefaultModel();
+			segments.put(uri, segment);
+		}
+		return segment;
+	}
+
+	/**
+	 * Whether the triples of a triples map are kept by row
+	 */
+	public boolean hasRows(String uri) {
+		return rowSegments.containsKey(uri);
+	}
+
+	/**
+	 * The triples of each row of a triples map, by the hash of the row. Null if they are not kept by row.
+	 */
+	public Map<String, List<Triple>> getRows(String uri) {
+		return rowSegments.get(uri);
+	}
+
+	/**
+	 * Replaces the triples of a triples map with the triples of its rows
+	 */
+	public void putRows(String uri, Map<String, List<Triple>> rows) {
+		Model segment = segments.remove(uri);
+		if (segment != null) segment.close();
+		rowSegments.put(uri, rows);
+	}
+
+	/**
+	 * Removes the triples of a triples map, and returns their number
+	 */
+	public long removeSegment(String uri) {
+		long result = 0;
+		Model segment = segments.remove(uri);
+		if (segment != null) {
+			result += segment.size();
+			segment.close();
+		}
+		Map<String, List<Triple>> rows = rowSegments.remove(uri);
+		if (rows != null) result += countTriples(rows);
+		return result;
+	}
+
+	/**
+	 * Removes the triples of the triples maps not in the given ones, and returns their number
+	 */
+	public long retainSegments(Collection<String> uris) {
+		long result = 0;
+		for (Iterator<Map.Entry<String, Model>> it = segments.entrySet().iterator(); it.hasNext(); ) {
+			Map.Entry<String, Model> segment = it.next();
+			if (!uris.contains(segment.getKey())) {
+				result += segment.getValue().size();
+				segment.getValue().close();
+				it.remove();
+			}
+		}
+		for (Iterator<Map.Entry<String, Map<String, List<Triple>>>> it = rowSegments.entrySet().iterator(); it.hasNext(); ) {
+			Map.Entry<String, Map<String, List<Triple>>> segment = it.next();
+			if (!uris.contains(segment.getKey())) {
+				result += countTriples(segment.getValue());
+				it.remove();
+			}
+		}
+		return result;
+	}
+
+	private static long countTriples(Map<String, List<Triple>> rows) {
+		long result = 0;
+		for (List<Triple> triples : rows.values()) {
+			result += triples.size();
+		}
+		return result;
+	}
+
+	public boolean isEmpty() {
+		return segments.isEmpty() && rowSegments.isEmpty();
+	}
+
+	/**
+	 * Adds the triples of all the segments to a model. A triple generated by more than one triples map, or row, is added once.
+	 */
+	public long addTo(Model model) {
+		long result = 0;
+		for (Model segment : segments.values()) {
+			model.add(segment);
+			result += segment.size();
+		}
+		Graph graph = model.getGraph();
+		for (Map<String, List<Triple>> rows : rowSegments.values()) {
+			for (List<Triple> triples : rows.values()) {
+				for (Triple triple : triples) {
+					graph.add(triple);
+				}
+				result += triples.size();
+			}
+		}
+		return result;
+	}
+
+}
@@ -0,0 +1,147 @@
+package gr.seab.r2rml.beans.output;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFLib;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.NodeFactory;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.Statement;
+import com.hp.hpl.jena.rdf.model.StmtIterator;
+
+/**
+ * Writes each generated triple directly to the destination file as N-Triples, or as N-Quads when a graph is given.
+ * Nothing is kept in memory, so the result model is only used to create the RDF terms.
+ *
+ */
+public class StreamTripleSink implements TripleSink {
+
+	private static final Logger log = LoggerFactory.getLogger(StreamTripleSink.class);
+
+	private File file;
+
+	/**
+	 * The graph of the quads. Null when writing N-Triples, or N-Quads in the default graph.
+	 */
+	private Node graph;
+
+	/**
+	 * Whether this sink writes to a temporary file, to be appended to the destination file
+	 */
+	private boolean part;
+
+	private Writer out;
+
+	private StreamRDF stream;
+
+	private long count;
+
+	public StreamTripleSink(String fileName, String graphUri) {
+		this.file = new File(fileName);
+		this.graph = (graphUri != null) ? NodeFactory.createURI(graphUri) : null;
+	}
+
+	private StreamTripleSink(File file, Node graph) {
+		this.file = file;
+		this.graph = graph;
+		this.part = true;
+	}
+
+	public void open(Model model) {
+		openStream();
+		if (model != null) {
+			StmtIterator stmtIter = model.listStatements();
+			while (stmtIter.hasNext()) {
+				add(stmtIter.nextStatement());
+			}
+			stmtIter.close();
+			log.info("Streaming triples to " + file + ". Wrote " + count + " statements from the input model.");
+		}
+	}
+
+	private void openStream() {
+		try {
+			out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+		} catch (IOException e) {
+			log.error("Error opening file " + file + " for writing.", e);
+			System.exit(1);
+		}
+		stream = StreamRDFLib.writer(out);
+		if (graph != null) {
+			stream = StreamRDFLib.extendTriplesToQuads(graph, stream);
+		}
+		stream.start();
+	}
+
+	public void add(Statement statement) {
+		stream.triple(statement.asTriple());
+		count++;
+	}
+
+	public void close() {
+		stream.finish();
+		try {
+			out.close();
+		} catch (IOException e) {
+			log.error("Error closing file " + file + ".", e);
+		}
+	}
+
+	public boolean requiresModel() {
+		return false;
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	public TripleSink createPart() {
+		StreamTripleSink result = null;
+		try {
+			File partFile = File.createTempFile("r2rml-", ".part", file.getAbsoluteFile().getParentFile());
+			partFile.deleteOnExit();
+			result = new StreamTripleSink(partFile, graph);
+			result.openStream();
+		} catch (IOException e) {
+			log.error("Error creating temporary file next to " + file + ".", e);
+			System.exit(1);
+		}
+		return result;
+	}
+
+	/**
+	 * Copies the contents of a closed part to this sink and deletes its temporary file.
+	 */
+	public void append(TripleSink part) {
+		StreamTripleSink streamPart = (StreamTripleSink) part;
+		try {
+			BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(streamPart.file), "UTF-8"));
+			char[] buffer = new char[8192];
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				out.write(buffer, 0, read);
+			}
+			in.close();
+		} catch (IOException e) {
+			log.error("Error appending " + streamPart.file + " to " + file + ".", e);
+			System.exit(1);
+		}
+		count += streamPart.count;
+		if (streamPart.part && !streamPart.file.delete()) {
+			log.info("Could not delete temporary file " + streamPart.file);
+		}
+	}
+
+}
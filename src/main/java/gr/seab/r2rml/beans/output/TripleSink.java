@@ -0,0 +1,38 @@
+package gr.seab.r2rml.beans.output;
+
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.Statement;
+
+/**
+ * Receives the generated triples, one at a time, as soon as they are produced.
+ * @see ModelTripleSink
+ * @see StreamTripleSink
+ *
+ */
+public interface TripleSink {
+
+	/**
+	 * Prepares the sink. The statements already contained in the model (i.e. the input model) are part of the output.
+	 */
+	public void open(Model model);
+	
+	public void add(Statement statement);
+	
+	public void close();
+	
+	/**
+	 * Whether the generated triples have to be kept in the result model, e.g. for incremental dumps or when storing in TDB.
+	 */
+	public boolean requiresModel();
+	
+	public long getCount();
+	
+	/**
+	 * Creates a sink that receives the triples of a single logical table mapping, when mappings are executed in parallel.
+	 * The part is closed by its worker and then appended to this sink, in the order of the logical table mappings.
+	 */
+	public TripleSink createPart();
+	
+	public void append(TripleSink part);
+	
+}
@@ -0,0 +1,368 @@
+package gr.seab.r2rml.beans.pool;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Set;
+import java.util.Timer;
+import java.util.TimerTask;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A bounded pool of connections to the source database, leased to the threads that execute logical table mappings
+ * and look up parent subjects. A lease waits while all connections are in use. Each connection keeps its prepared
+ * statements, so that repeated queries are prepared once. Connections idle for a while are validated before they are leased,
+ * and connections that are not returned within the leak threshold are reported once, with the place where they were leased,
+ * at most half the threshold after it has passed.
+ *
+ */
+public class ConnectionPool {
+
+	private static final Logger log = LoggerFactory.getLogger(ConnectionPool.class);
+
+	/**
+	 * Connections idle for longer are validated before they are leased
+	 */
+	private static final long VALIDATION_INTERVAL = 10000;
+
+	private static final int VALIDATION_TIMEOUT = 5;
+
+	private final String url;
+
+	private final String login;
+
+	private final String password;
+
+	private final int maxSize;
+
+	/**
+	 * The milliseconds a lease waits for a connection
+	 */
+	private final long timeout;
+
+	private final int statementCacheSize;
+
+	/**
+	 * The milliseconds after which a leased connection is reported as a possible leak, by the leak timer or on the next lease
+	 * or release, whichever comes first. 0 reports them only when a lease times out or the pool is closed.
+	 */
+	private final long leakThreshold;
+
+	/**
+	 * Checks for leaks every half of the leak threshold, so that they are reported even when every thread is stuck
+	 * and the pool is not used. Null when there is no leak threshold.
+	 */
+	private final Timer leakTimer;
+
+	private final LinkedList<PooledConnection> idle = new LinkedList<PooledConnection>();
+
+	private final Map<Connection, PooledConnection> leased = new IdentityHashMap<Connection, PooledConnection>();
+
+	/**
+	 * The open connections, including the ones being opened
+	 */
+	private int size;
+
+	private boolean closed;
+
+	private long leaseCount, createdCount, discardedCount, totalWaitNanos, maxWaitNanos;
+
+	private int peakActiveCount;
+
+	public ConnectionPool(String url, String login, String password, int maxSize, long timeout, int statementCacheSize, long leakThreshold) {
+		this.url = url;
+		this.login = login;
+		this.password = password;
+		this.maxSize = maxSize;
+		this.timeout = timeout;
+		this.statementCacheSize = statementCacheSize;
+		this.leakThreshold = leakThreshold;
+		if (leakThreshold > 0) {
+			long period = Math.max(1, leakThreshold / 2);
+			leakTimer = new Timer("r2rml-pool-leaks", true);
+			leakTimer.schedule(new TimerTask() {
+				public void run() {
+					reportLeaks(ConnectionPool.this.leakThreshold);
+				}
+			}, period, period);
+		} else {
+			leakTimer = null;
+		}
+	}
+
+	/**
+	 * Leases a connection, waiting up to the timeout of the pool if all of them are in use.
+	 * The connection has to be returned with {@link #release(Connection)}.
+	 */
+	public Connection lease() throws SQLException {
+		long start = System.nanoTime();
+		while (true) {
+			PooledConnection pooled = null;
+			synchronized (this) {
+				checkLeaks();
+				while (idle.isEmpty() && size >= maxSize) {
+					if (closed) throw new SQLException("The connection pool is closed.");
+					long remaining = timeout - (System.nanoTime() - start) / 1000000;
+					if (remaining <= 0) {
+						reportLeaks(leakThreshold);
+						throw new SQLException("Timed out after " + timeout + " ms waiting for one of the " + maxSize + " connections of the pool.");
+					}
+					try {
+						wait(remaining);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						throw new SQLException("Interrupted while waiting for a connection.", e);
+					}
+				}
+				if (closed) throw new SQLException("The connection pool is closed.");
+				if (!idle.isEmpty()) {
+					pooled = idle.removeFirst();
+				} else {
+					size++;
+				}
+			}
+
+			if (pooled == null) {
+				try {
+					pooled = new PooledConnection(DriverManager.getConnection(url, login, password));
+				} catch (SQLException e) {
+					synchronized (this) {
+						size--;
+						notifyAll();
+					}
+					throw e;
+				}
+				synchronized (this) {
+					createdCount++;
+				}
+			} else if (System.currentTimeMillis() - pooled.releasedAt > VALIDATION_INTERVAL && !isValid(pooled)) {
+				log.info("Discarding a connection of the pool that is no longer valid.");
+				discard(pooled);
+				continue;
+			}
+
+			long wait = System.nanoTime() - start;
+			synchronized (this) {
+				pooled.leasedAt = System.currentTimeMillis();
+				pooled.leaseSite = new Throwable("Connection leased by thread " + Thread.currentThread().getName());
+				pooled.leakReported = false;
+				leased.put(pooled.connection, pooled);
+				leaseCount++;
+				totalWaitNanos += wait;
+				maxWaitNanos = Math.max(maxWaitNanos, wait);
+				peakActiveCount = Math.max(peakActiveCount, leased.size());
+			}
+			return pooled.connection;
+		}
+	}
+
+	/**
+	 * Returns a leased connection to the pool. An open transaction is rolled back.
+	 */
+	public void release(Connection connection) {
+		PooledConnection pooled;
+		synchronized (this) {
+			pooled = leased.remove(connection);
+			checkLeaks();
+		}
+		if (pooled == null) {
+			log.error("Tried to return a connection that was not leased from the pool.");
+			return;
+		}
+		try {
+			if (connection.isClosed()) {
+				discard(pooled);
+				return;
+			}
+			if (!connection.getAutoCommit()) connection.rollback();
+			//the statements of the lease are no longer in use
+			pooled.pinned.clear();
+			pooled.trimStatements();
+		} catch (SQLException e) {
+			log.info("Discarding a connection of the pool that failed to roll back.", e);
+			discard(pooled);
+			return;
+		}
+		synchronized (this) {
+			pooled.releasedAt = System.currentTimeMillis();
+			pooled.leaseSite = null;
+			if (closed) {
+				closeConnection(pooled);
+				size--;
+			} else {
+				idle.addFirst(pooled);
+			}
+			notifyAll();
+		}
+	}
+
+	/**
+	 * Prepares a statement on a leased connection, or returns the one prepared earlier with the same query.
+	 * The statement belongs to the pool and must not be closed. It is kept open until the connection is released,
+	 * even when the statement cache is full.
+	 */
+	public PreparedStatement prepareStatement(Connection connection, String query) throws SQLException {
+		PooledConnection pooled;
+		synchronized (this) {
+			pooled = leased.get(connection);
+		}
+		if (pooled == null) throw new SQLException("The connection was not leased from the pool.");
+		PreparedStatement result = pooled.statements.get(query);
+		if (result == null) {
+			result = connection.prepareStatement(query);
+			pooled.statements.put(query, result);
+		}
+		pooled.pinned.add(result);
+		pooled.trimStatements();
+		return result;
+	}
+
+	/**
+	 * Closes the idle connections, and reports the ones that were not returned
+	 */
+	public void close() {
+		if (leakTimer != null) leakTimer.cancel();
+		synchronized (this) {
+			closed = true;
+			for (PooledConnection pooled : idle) {
+				closeConnection(pooled);
+				size--;
+			}
+			idle.clear();
+			if (!leased.isEmpty()) {
+				log.error(leased.size() + " connection(s) were not returned to the pool.");
+				reportLeaks(0);
+			}
+			notifyAll();
+		}
+		log.info("Closed the connection pool. " + getMetrics());
+	}
+
+	/**
+	 * Logs the connections leased for longer than the given milliseconds, along with the place they were leased. 
+	 * Each connection is reported once per lease.
+	 */
+	public synchronized void reportLeaks(long olderThan) {
+		long now = System.currentTimeMillis();
+		for (PooledConnection pooled : leased.values()) {
+			if (!pooled.leakReported && now - pooled.leasedAt >= olderThan) {
+				log.error("Connection leased " + (now - pooled.leasedAt) + " ms ago has not been returned.", pooled.leaseSite);
+				pooled.leakReported = true;
+			}
+		}
+	}
+
+	/**
+	 * Reports the connections leased for longer than the leak threshold, when there is one
+	 */
+	private void checkLeaks() {
+		if (leakThreshold > 0) reportLeaks(leakThreshold);
+	}
+
+	public synchronized int getActiveCount() {
+		return leased.size();
+	}
+
+	public synchronized int getIdleCount() {
+		return idle.size();
+	}
+
+	public synchronized int getPeakActiveCount() {
+		return peakActiveCount;
+	}
+
+	public synchronized long getLeaseCount() {
+		return leaseCount;
+	}
+
+	public synchronized long getTotalWaitMillis() {
+		return totalWaitNanos / 1000000;
+	}
+
+	public synchronized long getMaxWaitMillis() {
+		return maxWaitNanos / 1000000;
+	}
+
+	public synchronized String getMetrics() {
+		return "Leases: " + leaseCount + ", waited " + getTotalWaitMillis() + " ms in total and " + getMaxWaitMillis() + " ms at most. Active: "
+				+ leased.size() + " (peak " + peakActiveCount + "), idle: " + idle.size() + ", opened: " + createdCount + ", discarded: " + discardedCount + ".";
+	}
+
+	private boolean isValid(PooledConnection pooled) {
+		try {
+			return pooled.connection.isValid(VALIDATION_TIMEOUT);
+		} catch (SQLException e) {
+			return false;
+		}
+	}
+
+	private void discard(PooledConnection pooled) {
+		closeConnection(pooled);
+		synchronized (this) {
+			size--;
+			discardedCount++;
+			notifyAll();
+		}
+	}
+
+	private void closeConnection(PooledConnection pooled) {
+		for (PreparedStatement statement : pooled.statements.values()) {
+			try { statement.close(); } catch (SQLException e) {}
+		}
+		pooled.statements.clear();
+		try { pooled.connection.close(); } catch (SQLException e) {}
+	}
+
+	/**
+	 * A connection of the pool, with its prepared statements
+	 */
+	private class PooledConnection {
+
+		private final Connection connection;
+
+		/**
+		 * The prepared statements, by query, in the order they were last used
+		 */
+		private final Map<String, PreparedStatement> statements = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true);
+
+		/**
+		 * The statements handed out during the current lease, which may still be in use
+		 */
+		private final Set<PreparedStatement> pinned = Collections.newSetFromMap(new IdentityHashMap<PreparedStatement, Boolean>());
+
+		private long leasedAt;
+
+		private long releasedAt = System.currentTimeMillis();
+
+		private Throwable leaseSite;
+
+		private boolean leakReported;
+
+		private PooledConnection(Connection connection) {
+			this.connection = connection;
+		}
+
+		/**
+		 * Closes the least recently used statements while there are too many, except the ones of the current lease
+		 */
+		private void trimStatements() {
+			Iterator<PreparedStatement> iterator = statements.values().iterator();
+			while (statements.size() > statementCacheSize && iterator.hasNext()) {
+				PreparedStatement statement = iterator.next();
+				if (pinned.contains(statement)) continue;
+				try { statement.close(); } catch (SQLException e) {}
+				iterator.remove();
+			}
+		}
+	}
+
+}
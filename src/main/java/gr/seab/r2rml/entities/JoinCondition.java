@@ -0,0 +1,42 @@
+package gr.seab.r2rml.entities;
+
+import java.io.Serializable;
+
+/**
+ * A rr:joinCondition of a referencing object map, holding a column of the child and a column of the parent logical table.
+ * @see RefObjectMap
+ *
+ */
+public class JoinCondition implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private String child;
+	
+	private String parent;
+
+	public JoinCondition() {
+	}
+	
+	public JoinCondition(String child, String parent) {
+		this.child = child;
+		this.parent = parent;
+	}
+	
+	public String getChild() {
+		return child;
+	}
+
+	public void setChild(String child) {
+		this.child = child;
+	}
+
+	public String getParent() {
+		return parent;
+	}
+
+	public void setParent(String parent) {
+		this.parent = parent;
+	}
+	
+}
@@ -1,12 +1,15 @@
 package gr.seab.r2rml.entities;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 
 /**
  * Logical table mappings can either map an arbitrary query or a single table name
  *
  */
-public class LogicalTableMapping {
+public class LogicalTableMapping implements Serializable {
+
+	private static final long serialVersionUID = 1L;
 
 	/**
 	 * The uri of the mapping in the mapping document
@@ -34,6 +37,12 @@ public class LogicalTableMapping {
 	 */
 	private ArrayList<String> subjects;
 	
+	/**
+	 * The column whose values only increase as rows are added, so that incremental dumps read only the rows
+	 * after the greatest value of the last run. Null if there is none.
+	 */
+	private String watermarkColumn;
+	
 	/**
 	 * Default no-argument constructor
 	 */
@@ -98,4 +107,18 @@ public class LogicalTableMapping {
 	public void setSubjects(ArrayList<String> subjects) {
 		this.subjects = subjects;
 	}
+	
+	/**
+	 * @return the watermarkColumn
+	 */
+	public String getWatermarkColumn() {
+		return watermarkColumn;
+	}
+	
+	/**
+	 * @param watermarkColumn the watermarkColumn to set
+	 */
+	public void setWatermarkColumn(String watermarkColumn) {
+		this.watermarkColumn = watermarkColumn;
+	}
 }
@@ -1,12 +1,16 @@
 package gr.seab.r2rml.entities;
 
+import java.io.Serializable;
+
 import gr.seab.r2rml.entities.sql.SelectQuery;
 
 /**
  * The logical view of the mapping can be either the fields of a table or an arbitrary sql query.
  *
  */
-public class LogicalTableView {
+public class LogicalTableView implements Serializable {
+
+	private static final long serialVersionUID = 1L;
 
 	/**
 	 * The uri of this view. It has a value for declared sql queries and is null when the mapping is on a table
@@ -18,6 +22,11 @@ public class LogicalTableView {
 	 */
 	private SelectQuery selectQuery;
 	
+	/**
+	 * The table of this view, when the mapping is on a rr:tableName. Null for sql queries
+	 */
+	private String tableName;
+	
 	/**
 	 * Default no-argument constructor
 	 */
@@ -50,4 +59,16 @@ public class LogicalTableView {
 	}
 	
 	
+	/**
+	 * @return the tableName
+	 */
+	public String getTableName() {
+		return tableName;
+	}
+	/**
+	 * @param tableName the tableName to set
+	 */
+	public void setTableName(String tableName) {
+		this.tableName = tableName;
+	}
 }
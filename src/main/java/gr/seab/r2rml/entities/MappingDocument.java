@@ -1,9 +1,13 @@
 package gr.seab.r2rml.entities;
 
+import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.Map;
 
+import gr.seab.r2rml.entities.sql.SelectQuery;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -11,12 +15,22 @@ import org.slf4j.LoggerFactory;
  * Holds the information of the mapping file. It is useful for retrieving values on demand.
  *
  */
-public class MappingDocument {
+public class MappingDocument implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
 	private static final Logger log = LoggerFactory.getLogger(MappingDocument.class);
 
 	private LinkedList<LogicalTableView> logicalTableViews;
 	private LinkedList<LogicalTableMapping> logicalTableMappings;
 	private Map<String, String> prefixes;
+	
+	/**
+	 * Indexes of the lists above, rebuilt when a list is set. A list changed in place has to be set again.
+	 */
+	private transient HashMap<String, LogicalTableMapping> mappingsByUri;
+	private transient HashMap<String, LogicalTableView> viewsByUri;
+	private transient HashMap<String, LogicalTableView> viewsByQuery;
 	private ArrayList<Long> timestamps = new ArrayList<Long>();
 	
     private DatabaseType databaseType = DatabaseType.OTHER;
@@ -28,32 +42,49 @@ public class MappingDocument {
 	}
 	
 	public LogicalTableView findLogicalTableViewByUri(String uri) {
-		for (LogicalTableView logicalTableView : logicalTableViews) {
-			if (uri.equalsIgnoreCase(logicalTableView.getUri())) {
-				return logicalTableView;
-			}
-		}
-		return null;
+		if (viewsByUri == null) indexLogicalTableViews();
+		return viewsByUri.get(uri.toLowerCase());
 	}
 	
 	public LogicalTableMapping findLogicalTableMappingByUri(String uri) {
-		for (LogicalTableMapping logicalTableMapping : logicalTableMappings) {
-			if (uri.equalsIgnoreCase(logicalTableMapping.getUri())) {
-				return logicalTableMapping;
-			}
-		}
-		return null;
+		if (mappingsByUri == null) indexLogicalTableMappings();
+		return mappingsByUri.get(uri.toLowerCase());
 	}
 	
 	public LogicalTableView findLogicalTableViewByQuery(String query) {
 		log.info("Searching for query " + query);
+		if (viewsByQuery == null) indexLogicalTableViews();
+		LogicalTableView result = viewsByQuery.get(SelectQuery.normalize(query));
+		if (result != null) log.info("Found match");
+		return result;
+	}
+	
+	/**
+	 * Indexes the views by uri and by normalized query. The first view wins, as in the order of the list.
+	 */
+	private void indexLogicalTableViews() {
+		viewsByUri = new HashMap<String, LogicalTableView>();
+		viewsByQuery = new HashMap<String, LogicalTableView>();
+		if (logicalTableViews == null) return;
 		for (LogicalTableView logicalTableView : logicalTableViews) {
-			if (query.equalsIgnoreCase(logicalTableView.getSelectQuery().getQuery())) {
-				log.info("Found match");
-				return logicalTableView;
+			if (logicalTableView.getUri() != null && !viewsByUri.containsKey(logicalTableView.getUri().toLowerCase())) {
+				viewsByUri.put(logicalTableView.getUri().toLowerCase(), logicalTableView);
+			}
+			if (logicalTableView.getSelectQuery() != null) {
+				String query = logicalTableView.getSelectQuery().getNormalizedQuery();
+				if (!viewsByQuery.containsKey(query)) viewsByQuery.put(query, logicalTableView);
+			}
+		}
+	}
+	
+	private void indexLogicalTableMappings() {
+		mappingsByUri = new HashMap<String, LogicalTableMapping>();
+		if (logicalTableMappings == null) return;
+		for (LogicalTableMapping logicalTableMapping : logicalTableMappings) {
+			if (logicalTableMapping.getUri() != null && !mappingsByUri.containsKey(logicalTableMapping.getUri().toLowerCase())) {
+				mappingsByUri.put(logicalTableMapping.getUri().toLowerCase(), logicalTableMapping);
 			}
 		}
-		return null;
 	}
 	
 	/**
@@ -67,6 +98,7 @@ public class MappingDocument {
 	 */
 	public void setLogicalTableViews(LinkedList<LogicalTableView> logicalTableViews) {
 		this.logicalTableViews = logicalTableViews;
+		indexLogicalTableViews();
 	}
 	/**
 	 * @return the logicalTableMappings
@@ -79,6 +111,7 @@ public class MappingDocument {
 	 */
 	public void setLogicalTableMappings(LinkedList<LogicalTableMapping> logicalTableMappings) {
 		this.logicalTableMappings = logicalTableMappings;
+		indexLogicalTableMappings();
 	}
 	
 	public Map<String, String> getPrefixes() {
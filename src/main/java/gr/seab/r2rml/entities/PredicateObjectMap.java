@@ -1,14 +1,21 @@
 package gr.seab.r2rml.entities;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
 import java.util.ArrayList;
 
 import com.hp.hpl.jena.datatypes.BaseDatatype;
+import com.hp.hpl.jena.datatypes.TypeMapper;
 
 /**
  * The mapping of predicates and respective objects for a specific subject. Objects come either from a column or from a template.
  *
  */
-public class PredicateObjectMap {
+public class PredicateObjectMap implements Serializable {
+
+	private static final long serialVersionUID = 1L;
 
 	/**
 	 * The predicate value(s).
@@ -28,7 +35,7 @@ public class PredicateObjectMap {
 	/**
 	 * One of the XSD datatypes.
 	 */
-	private BaseDatatype dataType;
+	private transient BaseDatatype dataType;
 
 	/**
 	 * If the predicateObjectMap is a rr:RefObjectMap, i.e. references a rr:parentTriplesMap, store the referenced uri, child and parent fields in an object.
@@ -94,4 +101,19 @@ public class PredicateObjectMap {
 		this.refObjectMap = refObjectMap;
 	}
 	
+	/**
+	 * The datatype is kept by its URI, and resolved to the same datatype when read
+	 */
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		out.defaultWriteObject();
+		out.writeObject((dataType != null) ? dataType.getURI() : null);
+	}
+	
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		String dataTypeUri = (String) in.readObject();
+		if (dataTypeUri != null) {
+			dataType = (BaseDatatype) TypeMapper.getInstance().getSafeTypeByName(dataTypeUri);
+		}
+	}
 }
@@ -1,12 +1,18 @@
 package gr.seab.r2rml.entities;
 
-public class RefObjectMap {
+import java.io.Serializable;
+import java.util.ArrayList;
+
+public class RefObjectMap implements Serializable {
+
+	private static final long serialVersionUID = 1L;
 
 	private String parentTriplesMapUri;
 	
-	private String child;
-	
-	private String parent;
+	/**
+	 * The rr:joinCondition definitions. Their rr:child and rr:parent columns must all be equal for a parent subject to be referenced.
+	 */
+	private ArrayList<JoinCondition> joinConditions = new ArrayList<JoinCondition>();
 
 	public RefObjectMap() {
 	}
@@ -19,21 +25,16 @@ public class RefObjectMap {
 		this.parentTriplesMapUri = parentTriplesMapUri;
 	}
 	
-	public String getChild() {
-		return child;
-	}
-
-	public void setChild(String child) {
-		this.child = child;
-	}
-
-	public String getParent() {
-		return parent;
+	public ArrayList<JoinCondition> getJoinConditions() {
+		return joinConditions;
 	}
 
-	public void setParent(String parent) {
-		this.parent = parent;
+	public void setJoinConditions(ArrayList<JoinCondition> joinConditions) {
+		this.joinConditions = joinConditions;
 	}
 	
+	public boolean hasJoinConditions() {
+		return !joinConditions.isEmpty();
+	}
 	
-}
+}
\ No newline at end of file
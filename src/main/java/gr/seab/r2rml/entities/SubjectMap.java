@@ -2,6 +2,7 @@ package gr.seab.r2rml.entities;
 
 import gr.seab.r2rml.entities.sql.SelectQuery;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 
 /**
@@ -9,7 +10,9 @@ import java.util.ArrayList;
  * @see LogicalTableMapping
  *
  */
-public class SubjectMap {
+public class SubjectMap implements Serializable {
+
+	private static final long serialVersionUID = 1L;
 
 	private Template template;
 	private SelectQuery selectQuery;
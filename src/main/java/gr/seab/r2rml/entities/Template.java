@@ -1,6 +1,12 @@
 package gr.seab.r2rml.entities;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Map;
 
 import com.hp.hpl.jena.rdf.model.Literal;
 import com.hp.hpl.jena.rdf.model.Model;
@@ -12,7 +18,10 @@ import gr.seab.r2rml.beans.UtilImpl;
  * @see PredicateObjectMap
  *
  */
-public class Template {
+public class Template implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
 	//private static final Logger log = LoggerFactory.getLogger(Template.class);
 	/**
 	 * The initial template text
@@ -40,9 +49,39 @@ public class Template {
 	private String namespace;
 
 	/**
-	 * The model.
+	 * The model. It is not kept in a compiled mapping plan, and is set again when the plan is read.
+	 */
+	private transient Model model;
+	
+	/**
+	 * The text around the fields: the text before each field, followed by the text after the last one
+	 */
+	private String[] literals;
+	
+	/**
+	 * The column of each field, without quotes
+	 */
+	private String[] columns;
+	
+	/**
+	 * The prefixes (as prefix:) and the namespace URIs of the model, followed by http, read on first use
+	 */
+	private transient volatile String[] uriMarkers;
+	
+	/**
+	 * Whether the template text, the text around the fields, and the namespace followed by a slash contain a URI marker
+	 */
+	private boolean textIsUri, literalsAreUri, namespaceIsUri;
+	
+	/**
+	 * The length of the longest value filled in so far, used to size the next one
+	 */
+	private int capacity;
+	
+	/**
+	 * The column indexes of the fields in the result set last filled in by each thread
 	 */
-	private Model model;
+	private transient ThreadLocal<ColumnIndexes> columnIndexes = new ThreadLocal<ColumnIndexes>();
 	
 	public Template(String text, TermType termType, String namespace, Model model) {
 		this.text = text;
@@ -50,6 +89,7 @@ public class Template {
 		this.termType = termType;
 		this.namespace = namespace;
 		this.model = model;
+		compile();
 	}
 
 	public Template(Literal literal, TermType termType, String namespace, Model model) {
@@ -59,6 +99,121 @@ public class Template {
 		this.termType = termType;
 		this.namespace = namespace;
 		this.model = model;
+		compile();
+	}
+	
+	/**
+	 * Splits the text in the text around the fields and the columns of the fields, so that filling it in
+	 * does not have to search the text again for each row. Escaped braces \{ do not start a field.
+	 */
+	private void compile() {
+		ArrayList<String> literalList = new ArrayList<String>();
+		ArrayList<String> columnList = new ArrayList<String>();
+		int start = 0;
+		int from = nextField(0);
+		while (from != -1) {
+			int to = text.indexOf('}', from);
+			if (to == -1) break;
+			literalList.add(text.substring(start, from));
+			String field = text.substring(from + 1, to);
+			if (field.startsWith("\"") && field.endsWith("\"")) {
+				field = field.replaceAll("\"", "");
+			}
+			columnList.add(field);
+			start = to + 1;
+			from = nextField(start);
+		}
+		literalList.add(text.substring(start));
+		this.literals = literalList.toArray(new String[literalList.size()]);
+		this.columns = columnList.toArray(new String[columnList.size()]);
+		this.capacity = text.length() + 16 * columns.length;
+		this.uriMarkers = null;
+	}
+	
+	private int nextField(int from) {
+		int result = text.indexOf('{', from);
+		while (result > 0 && text.charAt(result - 1) == '\\') {
+			result = text.indexOf('{', result + 1);
+		}
+		return result;
+	}
+	
+	/**
+	 * Fills in the fields with the values of the current row. Returns null if any of them is null.
+	 */
+	public String fill(ResultSet rs) throws SQLException {
+		if (columns.length == 0) return literals[0];
+		int[] indexes = findColumnIndexes(rs);
+		StringBuilder result = new StringBuilder(capacity);
+		result.append(literals[0]);
+		for (int i = 0; i < indexes.length; i++) {
+			String value = rs.getString(indexes[i]);
+			if (value == null) return null;
+			result.append(value).append(literals[i + 1]);
+		}
+		if (result.length() > capacity) capacity = result.length();
+		return result.toString();
+	}
+	
+	private int[] findColumnIndexes(ResultSet rs) throws SQLException {
+		ColumnIndexes cached = columnIndexes.get();
+		if (cached != null && cached.resultSet == rs) return cached.indexes;
+		int[] indexes = new int[columns.length];
+		for (int i = 0; i < columns.length; i++) {
+			indexes[i] = rs.findColumn(columns[i]);
+		}
+		columnIndexes.set(new ColumnIndexes(rs, indexes));
+		return indexes;
+	}
+	
+	/**
+	 * Whether a value filled in from this template is a URI, as in {@link UtilImpl#isUri(String, Model)}.
+	 * A marker in the text around the fields is in every value, so only the values of the templates without one are searched.
+	 */
+	public boolean isUri(String value) {
+		String[] markers = findUriMarkers();
+		if (literalsAreUri) return true;
+		for (String marker : markers) {
+			if (value.contains(marker)) return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * Whether the namespace, followed by a slash, is a URI. Then a value prefixed with it is a URI too.
+	 */
+	public boolean isNamespaceUri() {
+		findUriMarkers();
+		return namespaceIsUri;
+	}
+	
+	private String[] findUriMarkers() {
+		String[] result = uriMarkers;
+		if (result == null) {
+			ArrayList<String> markers = new ArrayList<String>();
+			for (Map.Entry<String, String> prefix : model.getNsPrefixMap().entrySet()) {
+				markers.add(prefix.getKey() + ":");
+				markers.add(prefix.getValue());
+			}
+			markers.add("http");
+			result = markers.toArray(new String[markers.size()]);
+			
+			textIsUri = containsAny(text, result);
+			literalsAreUri = false;
+			for (String literal : literals) {
+				if (containsAny(literal, result)) literalsAreUri = true;
+			}
+			namespaceIsUri = containsAny(namespace + "/", result);
+			uriMarkers = result;
+		}
+		return result;
+	}
+	
+	private boolean containsAny(String s, String[] markers) {
+		for (String marker : markers) {
+			if (s.contains(marker)) return true;
+		}
+		return false;
 	}
 	
 	public ArrayList<String> createTemplateFields() {
@@ -78,7 +233,8 @@ public class Template {
 	}
 	
 	public boolean isUri() {
-		return UtilImpl.isUri(this.text, model);
+		findUriMarkers();
+		return textIsUri;
 	}
 	
 	public String getText() {
@@ -87,6 +243,7 @@ public class Template {
 	
 	public void setText(String text) {
 		this.text = text;
+		compile();
 	}
 	
 	public String getLanguage() {
@@ -119,6 +276,7 @@ public class Template {
 	
 	public void setNamespace(String namespace) {
 		this.namespace = namespace;
+		this.uriMarkers = null;
 	}
 	
 	public Model getModel() {
@@ -127,6 +285,24 @@ public class Template {
 	
 	public void setModel(Model model) {
 		this.model = model;
+		this.uriMarkers = null;
+	}
+	
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		columnIndexes = new ThreadLocal<ColumnIndexes>();
+	}
+	
+	private static class ColumnIndexes {
+		
+		private final ResultSet resultSet;
+		
+		private final int[] indexes;
+		
+		private ColumnIndexes(ResultSet resultSet, int[] indexes) {
+			this.resultSet = resultSet;
+			this.indexes = indexes;
+		}
 	}
 		
 }
@@ -0,0 +1,84 @@
+package gr.seab.r2rml.entities.sql;
+
+import gr.seab.r2rml.entities.JoinCondition;
+import gr.seab.r2rml.entities.RefObjectMap;
+import gr.seab.r2rml.entities.Template;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The joint SQL query of a referencing object map, as defined in the R2RML recommendation. It joins the logical table
+ * of the child triples map with the logical table of the parent triples map, so that the referencing triples
+ * are generated from a single scan instead of one parent query per child row.
+ * The columns of the parent subject template are selected with aliases, since they could clash with the child columns.
+ * @see RefObjectMap
+ *
+ */
+public class JointQuery {
+
+	public static final String CHILD_ALIAS = "r2rml_child";
+
+	public static final String PARENT_ALIAS = "r2rml_parent";
+
+	private String query;
+
+	/**
+	 * The parent subject template, with its fields replaced by their aliases in the joint query
+	 */
+	private Template parentTemplate;
+
+	/**
+	 * @param childQuery the query of the child logical table
+	 * @param parentQuery the query of the parent logical table
+	 * @param refObjectMap the referencing object map, holding the join conditions
+	 * @param parentSubjectTemplate the subject template of the parent triples map
+	 * @param quoteIdentifiers false when double quotes cannot enclose identifiers, as in mysql
+	 */
+	public JointQuery(String childQuery, String parentQuery, RefObjectMap refObjectMap, Template parentSubjectTemplate, boolean quoteIdentifiers) {
+		Map<String, String> aliases = new LinkedHashMap<String, String>();
+		String text = parentSubjectTemplate.getText();
+		for (String field : parentSubjectTemplate.getFields()) {
+			if (!aliases.containsKey(field)) {
+				//the trailing underscore keeps e.g. r2rml_parent_1_ from matching inside r2rml_parent_10_
+				String alias = PARENT_ALIAS + "_" + aliases.size() + "_";
+				aliases.put(field, alias);
+				text = text.replace("{" + field + "}", "{" + alias + "}");
+			}
+		}
+		this.parentTemplate = new Template(text, parentSubjectTemplate.getTermType(), parentSubjectTemplate.getNamespace(), parentSubjectTemplate.getModel());
+
+		StringBuilder select = new StringBuilder("SELECT " + CHILD_ALIAS + ".*");
+		for (Map.Entry<String, String> alias : aliases.entrySet()) {
+			select.append(", " + PARENT_ALIAS + "." + identifier(alias.getKey(), quoteIdentifiers) + " AS " + alias.getValue());
+		}
+		select.append(" FROM (" + childQuery + ") " + CHILD_ALIAS + ", (" + parentQuery + ") " + PARENT_ALIAS);
+		String separator = " WHERE ";
+		for (JoinCondition joinCondition : refObjectMap.getJoinConditions()) {
+			select.append(separator + CHILD_ALIAS + "." + identifier(joinCondition.getChild(), quoteIdentifiers)
+					+ " = " + PARENT_ALIAS + "." + identifier(joinCondition.getParent(), quoteIdentifiers));
+			separator = " AND ";
+		}
+		this.query = select.toString();
+	}
+
+	private String identifier(String name, boolean quoteIdentifiers) {
+		name = name.trim();
+		return quoteIdentifiers ? name : name.replaceAll("\"", "");
+	}
+
+	/**
+	 * @return the query
+	 */
+	public String getQuery() {
+		return query;
+	}
+
+	/**
+	 * @return the parent template
+	 */
+	public Template getParentTemplate() {
+		return parentTemplate;
+	}
+
+}
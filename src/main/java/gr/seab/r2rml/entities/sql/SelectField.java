@@ -1,11 +1,15 @@
 package gr.seab.r2rml.entities.sql;
 
+import java.io.Serializable;
+
 /**
  * A select field in an sql select query
  * @see SelectQuery
  *
  */
-public class SelectField {
+public class SelectField implements Serializable {
+
+	private static final long serialVersionUID = 1L;
 
 	private String name;
 	private String alias;
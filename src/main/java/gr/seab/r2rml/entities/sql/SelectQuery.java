@@ -1,5 +1,6 @@
 package gr.seab.r2rml.entities.sql;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -13,14 +14,20 @@ import org.slf4j.LoggerFactory;
  * Represents an sql select query
  *
  */
-public class SelectQuery {
+public class SelectQuery implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
 	private static final Logger log = LoggerFactory.getLogger(SelectQuery.class);
 
 	private String query;
 	private ArrayList<SelectField> fields;
 	private ArrayList<SelectTable> tables;
 	
-	private final Properties p;
+	/**
+	 * The properties, needed only while the query is parsed
+	 */
+	private final transient Properties p;
 	/**
 	 * 
 	 */
@@ -152,6 +159,129 @@ public class SelectQuery {
 		}
 	}
 
+	/**
+	 * The alias of the query when it is wrapped by {@link #getQueryWithCondition(String)}
+	 */
+	public static final String CONDITION_ALIAS = "r2rml_c";
+	
+	/**
+	 * Returns the query restricted by an additional condition on its columns. The query is wrapped as a derived table,
+	 * so that the condition applies to all of its rows, whatever clauses it has.
+	 */
+	public String getQueryWithCondition(String condition) {
+		return "SELECT * FROM (" + query + ") " + CONDITION_ALIAS + " WHERE " + condition;
+	}
+	
+	/**
+	 * Returns the query restricted by a condition on the columns, or pseudo-columns such as the PostgreSQL ctid, of its table,
+	 * which are not visible outside of it. An existing WHERE clause is kept in parentheses and the condition is added
+	 * before any GROUP BY, HAVING, WINDOW or ORDER BY clause. Returns null for a query it cannot be added to safely,
+	 * i.e. one with a UNION, INTERSECT or EXCEPT, or a clause limiting its rows.
+	 */
+	public String getQueryWithTableCondition(String condition) {
+		for (String keyword : new String[] {"UNION", "INTERSECT", "EXCEPT", "MINUS", "LIMIT", "OFFSET", "FETCH"}) {
+			if (findKeyword(query, keyword) != -1) return null;
+		}
+		int where = findKeyword(query, "WHERE");
+		int end = query.length();
+		for (String keyword : new String[] {"GROUP BY", "HAVING", "WINDOW", "ORDER BY"}) {
+			int index = findKeyword(query, keyword);
+			if (index != -1 && index < end) end = index;
+		}
+		String tail = (end < query.length()) ? " " + query.substring(end) : "";
+		if (where != -1) {
+			return query.substring(0, where) + "WHERE (" + query.substring(where + 5, end).trim() + ") AND " + condition + tail;
+		} else {
+			return query.substring(0, end).trim() + " WHERE " + condition + tail;
+		}
+	}
+	
+	/**
+	 * Returns the query with its white space collapsed and the text outside of quotes in upper case, 
+	 * so that queries differing only in these compare equal
+	 */
+	public String getNormalizedQuery() {
+		return normalize(query);
+	}
+	
+	/**
+	 * Normalizes a query as {@link #getNormalizedQuery()} does
+	 */
+	public static String normalize(String query) {
+		StringBuilder result = new StringBuilder(query.length());
+		char quote = 0;
+		for (int i = 0; i < query.length(); i++) {
+			char c = query.charAt(i);
+			if (quote != 0) {
+				result.append(c);
+				if (c == quote) quote = 0;
+			} else if (c == '\'' || c == '"' || c == '`') {
+				quote = c;
+				result.append(c);
+			} else if (Character.isWhitespace(c)) {
+				if (result.length() > 0 && result.charAt(result.length() - 1) != ' ') result.append(' ');
+			} else {
+				result.append(Character.toUpperCase(c));
+			}
+		}
+		return result.toString().trim();
+	}
+	
+	/**
+	 * Whether the query contains the given keyword outside of any parentheses or string literals
+	 */
+	public boolean containsKeyword(String keyword) {
+		return findKeyword(query, keyword) != -1;
+	}
+	
+	/**
+	 * Finds a keyword of the top-level query, skipping sub-queries, string literals and quoted identifiers.
+	 * The words of a keyword such as ORDER BY may be separated by any white space. Returns -1 if not found.
+	 */
+	protected int findKeyword(String q, String keyword) {
+		String upper = q.toUpperCase();
+		String[] words = keyword.toUpperCase().split("\\s+");
+		int depth = 0;
+		char quote = 0;
+		for (int i = 0; i < upper.length(); i++) {
+			char c = upper.charAt(i);
+			if (quote != 0) {
+				if (c == quote) quote = 0;
+			} else if (c == '\'' || c == '"' || c == '`') {
+				quote = c;
+			} else if (c == '(') {
+				depth++;
+			} else if (c == ')') {
+				depth--;
+			} else if (depth == 0 && (i == 0 || !isWordChar(upper.charAt(i - 1))) && matchesWords(upper, i, words)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+	
+	/**
+	 * Whether the words start at the given index, separated by white space and each one followed by a word boundary
+	 */
+	private static boolean matchesWords(String upper, int index, String[] words) {
+		int i = index;
+		for (int w = 0; w < words.length; w++) {
+			if (w > 0) {
+				int start = i;
+				while (i < upper.length() && Character.isWhitespace(upper.charAt(i))) i++;
+				if (i == start) return false;
+			}
+			if (!upper.startsWith(words[w], i)) return false;
+			i += words[w].length();
+			if (i < upper.length() && isWordChar(upper.charAt(i))) return false;
+		}
+		return true;
+	}
+	
+	private static boolean isWordChar(char c) {
+		return Character.isLetterOrDigit(c) || c == '_' || c == '$';
+	}
+
 	/**
 	 * @return the query
 	 */
@@ -1,6 +1,7 @@
 package gr.seab.r2rml.entities.sql;
 
 
+import java.io.Serializable;
 import java.util.Date;
 
 /**
@@ -8,7 +9,9 @@ import java.util.Date;
  * @see SelectQuery
  *
  */
-public class SelectTable {
+public class SelectTable implements Serializable {
+
+	private static final long serialVersionUID = 1L;
 
 	private String name;
 	private String alias;
@@ -1,16 +1,22 @@
 package gr.seab.r2rml.test;
 
+import static org.junit.Assert.assertEquals;
+
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Properties;
 
 import org.junit.Test;
@@ -144,6 +150,51 @@ public class ComplianceTests {
 		context.close();
 	}
 	
+	@Test
+	public void testStreamingWritesEachTripleOnce() throws IOException {
+		String folder = "src/test/resources/postgres/D002-1table2columns1row/";
+		initialiseSourceDatabase(folder + "create.sql");
+		
+		try {
+			properties.load(new FileInputStream("src/test/resources/test.properties"));
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+		//a triples map with two predicate-object maps
+		properties.setProperty("mapping.file", folder + "r2rmla.ttl");
+		properties.setProperty("jena.destinationFileName", folder + "r2rmla.nt");
+		properties.setProperty("jena.outputSink", "ntriples");
+		
+		ClassPathXmlApplicationContext context = new ClassPathXmlApplicationContext("test-context.xml");
+		Database db = (Database) context.getBean("db");
+		db.setProperties(properties);
+		
+		Parser parser = (Parser) context.getBean("parser");
+		parser.setProperties(properties);
+		MappingDocument mappingDocument = parser.parse();
+		assertEquals(1, mappingDocument.getLogicalTableMappings().size());
+
+		Generator generator = (Generator) context.getBean("generator");
+		generator.setProperties(parser.getProperties());
+		generator.setResultModel(parser.getResultModel());
+		generator.createTriples(mappingDocument);
+		context.close();
+		
+		List<String> lines = new ArrayList<String>();
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(folder + "r2rmla.nt"), "UTF-8"));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.trim().length() > 0) lines.add(line);
+			}
+		} finally {
+			reader.close();
+		}
+		//the class, ex:id and foaf:name of the single row
+		assertEquals(3, lines.size());
+		assertEquals(lines.size(), new HashSet<String>(lines).size());
+	}
+	
 	@Test
 	public void testSparqlQuery() {
 		ClassPathXmlApplicationContext context = new ClassPathXmlApplicationContext("test-context.xml");
@@ -0,0 +1,105 @@
+package gr.seab.r2rml.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Iterator;
+import java.util.TimeZone;
+
+import org.junit.Test;
+import org.postgresql.copy.CopyOut;
+
+import gr.seab.r2rml.beans.copy.CopyResultSet;
+
+public class CopyResultSetTests {
+
+	/**
+	 * A copy of the given rows, in text format
+	 */
+	private CopyOut copy(String... rows) throws Exception {
+		final Iterator<String> iterator = Arrays.asList(rows).iterator();
+		return new CopyOut() {
+			public byte[] readFromCopy() {
+				return iterator.hasNext() ? (iterator.next() + "\n").getBytes() : null;
+			}
+			public int getFieldCount() { return 0; }
+			public int getFormat() { return 0; }
+			public int getFieldFormat(int field) { return 0; }
+			public boolean isActive() { return iterator.hasNext(); }
+			public void cancelCopy() {}
+			public long getHandledRowCount() { return 0; }
+		};
+	}
+
+	/**
+	 * Metadata of columns with the given names and java.sql.Types types
+	 */
+	private ResultSetMetaData columns(final String[] names, final int[] types) {
+		return (ResultSetMetaData) Proxy.newProxyInstance(ResultSetMetaData.class.getClassLoader(), new Class<?>[] { ResultSetMetaData.class }, new InvocationHandler() {
+			public Object invoke(Object proxy, Method method, Object[] args) {
+				if (method.getName().equals("getColumnCount")) return names.length;
+				if (method.getName().equals("getColumnType")) return types[(Integer) args[0] - 1];
+				return names[(Integer) args[0] - 1];
+			}
+		});
+	}
+
+	private PreparedStatement statement() {
+		return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(), new Class<?>[] { PreparedStatement.class }, new InvocationHandler() {
+			public Object invoke(Object proxy, Method method, Object[] args) {
+				return null;
+			}
+		});
+	}
+
+	@Test
+	public void testValues() throws Exception {
+		ResultSet rs = new CopyResultSet(copy("1\tVenus\t\\N\t12.50\tt", "-20\tline\\none\\ttab\\\\\t2009-10-10 12:12:22.05\t\\N\tf"), statement(),
+				columns(new String[] { "id", "name", "modified", "price", "active" }, new int[] { Types.INTEGER, Types.VARCHAR, Types.TIMESTAMP, Types.NUMERIC, Types.BIT }));
+		assertTrue(rs.next());
+		assertEquals(1, rs.getLong(1));
+		assertEquals("Venus", rs.getString("NAME"));
+		assertNull(rs.getTimestamp(3));
+		assertTrue(rs.wasNull());
+		assertEquals(new BigDecimal("12.50"), rs.getBigDecimal(4));
+		assertTrue(rs.getBoolean(5));
+		assertEquals(Integer.valueOf(1), rs.getObject("id"));
+
+		assertTrue(rs.next());
+		assertEquals(-20, rs.getInt(1));
+		assertEquals("line\none\ttab\\", rs.getString(2));
+		assertEquals(Timestamp.valueOf("2009-10-10 12:12:22.05"), rs.getTimestamp(3));
+		assertNull(rs.getBigDecimal(4));
+		assertFalse(rs.getBoolean(5));
+		assertFalse(rs.next());
+		rs.close();
+	}
+
+	@Test
+	public void testOffsetsAndBinary() throws Exception {
+		ResultSet rs = new CopyResultSet(copy("2009-10-10 12:12:22+03\t\\\\x4d61\t\\\\115a"), statement(),
+				columns(new String[] { "modified", "hex", "escape" }, new int[] { Types.TIMESTAMP, Types.BINARY, Types.BINARY }));
+		assertTrue(rs.next());
+		Calendar utc = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+		utc.clear();
+		utc.set(2009, Calendar.OCTOBER, 10, 9, 12, 22);
+		assertEquals(utc.getTimeInMillis(), rs.getTimestamp(1).getTime());
+		assertArrayEquals("Ma".getBytes(), rs.getBytes(2));
+		assertArrayEquals("Ma".getBytes(), rs.getBytes(3));
+		assertFalse(rs.next());
+	}
+}
@@ -0,0 +1,112 @@
+package gr.seab.r2rml.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import gr.seab.r2rml.beans.join.HashIndex;
+import gr.seab.r2rml.beans.join.HashJoin;
+import gr.seab.r2rml.beans.join.MatchHandler;
+
+public class HashJoinTests {
+
+	/**
+	 * A result set positioned on a single row with a single column of the given type
+	 */
+	private ResultSet row(final String column, final int type, final String value) {
+		final ResultSetMetaData metaData = (ResultSetMetaData) Proxy.newProxyInstance(ResultSetMetaData.class.getClassLoader(), new Class<?>[] { ResultSetMetaData.class }, new InvocationHandler() {
+			public Object invoke(Object proxy, Method method, Object[] args) {
+				if (method.getName().equals("getColumnType")) return type;
+				return 1;
+			}
+		});
+		return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[] { ResultSet.class }, new InvocationHandler() {
+			public Object invoke(Object proxy, Method method, Object[] args) {
+				if (method.getName().equals("getMetaData")) return metaData;
+				if (method.getName().equals("findColumn")) return column.equals(args[0]) ? 1 : 0;
+				if (method.getName().equals("getString")) return value;
+				return null;
+			}
+		});
+	}
+
+	private List<String[]> join(ResultSet parent, ResultSet child) throws Exception {
+		HashIndex index = new HashIndex(1024 * 1024);
+		index.addParent(new HashJoin.KeyColumns(parent, Arrays.asList("parent")).createKey(parent), "http://example.com/parent");
+		index.complete();
+		try {
+			return probe(index, child, "http://example.com/child");
+		} finally {
+			index.close();
+		}
+	}
+
+	private List<String[]> probe(HashIndex index, ResultSet child, String childSubject) throws Exception {
+		final List<String[]> matches = new ArrayList<String[]>();
+		HashJoin hashJoin = new HashJoin(index, Arrays.asList("child"), new MatchHandler() {
+			public void match(String childSubject, String parentSubject) {
+				matches.add(new String[] {childSubject, parentSubject});
+			}
+		});
+		try {
+			hashJoin.probe(child, childSubject);
+			hashJoin.finish();
+		} finally {
+			hashJoin.close();
+		}
+		return matches;
+	}
+
+	@Test
+	public void testNormalize() {
+		assertEquals("1", HashJoin.normalize("1.00", Types.NUMERIC));
+		assertEquals("100", HashJoin.normalize("100", Types.INTEGER));
+		assertEquals("0", HashJoin.normalize("0.000", Types.DECIMAL));
+		assertEquals("-2.5", HashJoin.normalize("-2.50", Types.NUMERIC));
+		assertEquals("10000000000", HashJoin.normalize("1.0E10", Types.DOUBLE));
+		assertEquals("NaN", HashJoin.normalize("NaN", Types.DOUBLE));
+		assertEquals("ab", HashJoin.normalize("ab   ", Types.CHAR));
+		assertEquals("ab   ", HashJoin.normalize("ab   ", Types.VARCHAR));
+		assertNull(HashJoin.normalize(null, Types.INTEGER));
+	}
+
+	@Test
+	public void testKeysOfDifferentTypes() throws Exception {
+		assertEquals(1, join(row("parent", Types.NUMERIC, "10.00"), row("child", Types.INTEGER, "10")).size());
+		assertEquals(1, join(row("parent", Types.VARCHAR, "ab"), row("child", Types.CHAR, "ab   ")).size());
+		assertEquals(0, join(row("parent", Types.NUMERIC, "10.50"), row("child", Types.INTEGER, "10")).size());
+		assertEquals(0, join(row("parent", Types.VARCHAR, "ab"), row("child", Types.CHAR, null)).size());
+	}
+
+	@Test
+	public void testSharedSpilledIndex() throws Exception {
+		//a budget of no bytes partitions the index on disk with its first subject
+		HashIndex index = new HashIndex(0);
+		index.addParent("1", "http://example.com/parent/1");
+		index.addParent("2", "http://example.com/parent/2");
+		index.complete();
+		try {
+			assertEquals(true, index.isSpilled());
+			List<String[]> first = probe(index, row("child", Types.INTEGER, "1"), "http://example.com/child/1");
+			List<String[]> second = probe(index, row("child", Types.INTEGER, "2"), "http://example.com/child/2");
+			assertEquals(1, first.size());
+			assertEquals("http://example.com/parent/1", first.get(0)[1]);
+			assertEquals(1, second.size());
+			assertEquals("http://example.com/parent/2", second.get(0)[1]);
+		} finally {
+			index.close();
+		}
+	}
+
+}
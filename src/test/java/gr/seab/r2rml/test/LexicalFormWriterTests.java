@@ -0,0 +1,83 @@
+package gr.seab.r2rml.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.Timestamp;
+import java.sql.Types;
+
+import org.junit.Test;
+
+import com.hp.hpl.jena.datatypes.xsd.XSDDatatype;
+
+import gr.seab.r2rml.beans.LexicalFormWriter;
+
+public class LexicalFormWriterTests {
+
+	private LexicalFormWriter writer = new LexicalFormWriter();
+
+	/**
+	 * A result set with a single value in its first column, returned by any getter
+	 */
+	private ResultSet row(final Object value) {
+		return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[] { ResultSet.class }, new InvocationHandler() {
+			public Object invoke(Object proxy, Method method, Object[] args) {
+				if (method.getName().equals("wasNull")) return value == null;
+				if (method.getName().equals("getMetaData")) {
+					return Proxy.newProxyInstance(ResultSetMetaData.class.getClassLoader(), new Class<?>[] { ResultSetMetaData.class }, new InvocationHandler() {
+						public Object invoke(Object proxy, Method method, Object[] args) {
+							return "value";
+						}
+					});
+				}
+				return value;
+			}
+		});
+	}
+
+	@Test
+	public void testNumbers() throws Exception {
+		assertEquals("10", writer.read(row(10L), 1, Types.INTEGER, "int4", XSDDatatype.XSDinteger));
+		assertEquals("12.5", writer.read(row(new BigDecimal("12.50")), 1, Types.NUMERIC, "numeric", XSDDatatype.XSDdecimal));
+		assertEquals("100.0", writer.read(row(new BigDecimal("100")), 1, Types.NUMERIC, "numeric", XSDDatatype.XSDdecimal));
+		assertEquals("8.025E1", writer.read(row(80.25f), 1, Types.REAL, "float4", XSDDatatype.XSDdouble));
+		assertEquals("1.65E0", writer.read(row(1.65d), 1, Types.DOUBLE, "float8", XSDDatatype.XSDdouble));
+		assertEquals("-1.0E-5", writer.read(row(-0.00001d), 1, Types.DOUBLE, "float8", XSDDatatype.XSDdouble));
+		assertEquals("1.2E2", writer.read(row(120d), 1, Types.DOUBLE, "float8", XSDDatatype.XSDdouble));
+		assertNull(writer.read(row(null), 1, Types.NUMERIC, "numeric", XSDDatatype.XSDdecimal));
+	}
+
+	@Test
+	public void testDatesAndOthers() throws Exception {
+		assertEquals("2009-10-10T12:12:22", writer.read(row(Timestamp.valueOf("2009-10-10 12:12:22")), 1, Types.TIMESTAMP, "timestamp", XSDDatatype.XSDdateTime));
+		assertEquals("2009-10-10T12:12:22.05", writer.read(row(Timestamp.valueOf("2009-10-10 12:12:22.05")), 1, Types.TIMESTAMP, "timestamp", XSDDatatype.XSDdateTime));
+		assertEquals("1981-01-05", writer.read(row(java.sql.Date.valueOf("1981-01-05")), 1, Types.DATE, "date", XSDDatatype.XSDdate));
+		assertEquals("false", writer.read(row(false), 1, Types.BIT, "bool", XSDDatatype.XSDboolean));
+	}
+
+	@Test
+	public void testLargeObjects() throws Exception {
+		StringBuilder value = new StringBuilder();
+		StringBuilder expected = new StringBuilder();
+		for (int i = 0; i < 7000; i++) {
+			value.append("Man");
+			expected.append("TWFu");
+		}
+		value.append("Ma");
+		expected.append("TWE=");
+		byte[] bytes = value.toString().getBytes("UTF-8");
+		assertEquals(expected.toString(), writer.read(row(new ByteArrayInputStream(bytes)), 1, Types.BINARY, "bytea", XSDDatatype.XSDbase64Binary));
+		assertEquals("TWE=", writer.read(row(new ByteArrayInputStream("Ma".getBytes("UTF-8"))), 1, Types.BLOB, "blob", XSDDatatype.XSDbase64Binary));
+
+		LexicalFormWriter limited = new LexicalFormWriter(10000, false);
+		assertNull(limited.read(row(new ByteArrayInputStream(bytes)), 1, Types.BINARY, "bytea", XSDDatatype.XSDbase64Binary));
+		assertEquals("TWE=", limited.read(row(new ByteArrayInputStream("Ma".getBytes("UTF-8"))), 1, Types.BINARY, "bytea", XSDDatatype.XSDbase64Binary));
+	}
+}
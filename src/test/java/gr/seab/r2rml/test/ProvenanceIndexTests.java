@@ -0,0 +1,95 @@
+package gr.seab.r2rml.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.rdf.model.Statement;
+import com.hp.hpl.jena.vocabulary.RDF;
+
+import gr.seab.r2rml.beans.output.ProvenanceIndex;
+
+public class ProvenanceIndexTests {
+
+	private Model model = ModelFactory.createDefaultModel();
+
+	private Statement statement(String subject, String object) {
+		return model.createStatement(model.createResource("http://example.com/" + subject), model.createProperty("http://example.com/p"), object);
+	}
+
+	@Test
+	public void testSegmentsSurviveFile() throws Exception {
+		ProvenanceIndex provenance = new ProvenanceIndex();
+		provenance.add("http://example.com/TriplesMap1", statement("a", "one"));
+		provenance.add("http://example.com/TriplesMap1", statement("b", "two"));
+		provenance.add("http://example.com/TriplesMap2", statement("c", "three \"quoted\""));
+
+		File file = File.createTempFile("provenance", ".nt");
+		try {
+			provenance.write(file);
+			ProvenanceIndex read = ProvenanceIndex.read(file);
+			assertEquals(2, read.getSegment("http://example.com/TriplesMap1").size());
+			assertTrue(read.getSegment("http://example.com/TriplesMap2").contains(statement("c", "three \"quoted\"")));
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testRowsSurviveFile() throws Exception {
+		ProvenanceIndex provenance = new ProvenanceIndex();
+		provenance.add("http://example.com/TriplesMap1", statement("a", "one"));
+		LinkedHashMap<String, List<Triple>> rows = new LinkedHashMap<String, List<Triple>>();
+		rows.put("00ff", new ArrayList<Triple>(Arrays.asList(statement("b", "two").asTriple(), statement("b", "two\nlines").asTriple())));
+		rows.put("ff00", new ArrayList<Triple>());
+		rows.put("0f0f", new ArrayList<Triple>(Arrays.asList(statement("c", "three").asTriple(),
+				model.createStatement(model.createResource("http://example.com/c"), RDF.type, model.createResource("http://example.com/C")).asTriple())));
+		provenance.putRows("http://example.com/TriplesMap2", rows);
+
+		File file = File.createTempFile("provenance", ".nt");
+		try {
+			provenance.write(file);
+			ProvenanceIndex read = ProvenanceIndex.read(file);
+			assertEquals(1, read.getSegment("http://example.com/TriplesMap1").size());
+			assertTrue(read.hasRows("http://example.com/TriplesMap2"));
+			assertEquals(rows, read.getRows("http://example.com/TriplesMap2"));
+
+			Model output = ModelFactory.createDefaultModel();
+			assertEquals(5, read.addTo(output));
+			assertEquals(5, read.removeSegment("http://example.com/TriplesMap1") + read.removeSegment("http://example.com/TriplesMap2"));
+			assertTrue(read.isEmpty());
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testRemoveSegment() {
+		ProvenanceIndex provenance = new ProvenanceIndex();
+		provenance.add("http://example.com/TriplesMap1", statement("a", "one"));
+		provenance.add("http://example.com/TriplesMap2", statement("a", "one"));
+		provenance.add("http://example.com/TriplesMap3", statement("b", "two"));
+
+		assertEquals(1, provenance.removeSegment("http://example.com/TriplesMap1"));
+		assertEquals(1, provenance.retainSegments(Arrays.asList("http://example.com/TriplesMap2")));
+
+		Model output = ModelFactory.createDefaultModel();
+		provenance.addTo(output);
+		//the triple of the removed map is still generated by the other one
+		assertEquals(1, output.size());
+		assertTrue(output.contains(statement("a", "one")));
+		assertFalse(provenance.isEmpty());
+	}
+
+}
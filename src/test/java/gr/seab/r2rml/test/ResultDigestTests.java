@@ -0,0 +1,104 @@
+package gr.seab.r2rml.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.StringReader;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.Types;
+
+import org.junit.Test;
+
+import gr.seab.r2rml.beans.ResultDigest;
+
+public class ResultDigestTests {
+
+	/**
+	 * A result set over the given rows, all of them with the same number of columns
+	 */
+	private ResultSet rows(final String[]... rows) {
+		return rows(Types.VARCHAR, rows);
+	}
+
+	/**
+	 * A result set over the given rows, all of its columns of the given type
+	 */
+	private ResultSet rows(final int type, final String[]... rows) {
+		final ResultSetMetaData metaData = (ResultSetMetaData) Proxy.newProxyInstance(ResultSetMetaData.class.getClassLoader(), new Class<?>[] { ResultSetMetaData.class }, new InvocationHandler() {
+			public Object invoke(Object proxy, Method method, Object[] args) {
+				if (method.getName().equals("getColumnType")) return type;
+				return rows.length > 0 ? rows[0].length : 0;
+			}
+		});
+		return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[] { ResultSet.class }, new InvocationHandler() {
+			private int row = -1;
+			public Object invoke(Object proxy, Method method, Object[] args) {
+				if (method.getName().equals("next")) return ++row < rows.length;
+				if (method.getName().equals("getMetaData")) return metaData;
+				if (method.getName().equals("getString")) return rows[row][(Integer) args[0] - 1];
+				if (method.getName().equals("getCharacterStream")) {
+					String value = rows[row][(Integer) args[0] - 1];
+					return value == null ? null : new StringReader(value);
+				}
+				return null;
+			}
+		});
+	}
+
+	private String digest(ResultSet rs) throws Exception {
+		ResultDigest digest = new ResultDigest();
+		digest.addAll(rs);
+		return digest.getDigest();
+	}
+
+	@Test
+	public void testOrderDoesNotMatter() throws Exception {
+		String[] a = { "1", "one" }, b = { "2", "two" }, c = { "3", null };
+		assertEquals(digest(rows(a, b, c)), digest(rows(c, a, b)));
+	}
+
+	@Test
+	public void testDuplicatesAndValuesMatter() throws Exception {
+		String[] a = { "1", "one" }, b = { "2", "two" };
+		assertFalse(digest(rows(a, b)).equals(digest(rows(a, b, b))));
+		assertFalse(digest(rows(a, a)).equals(digest(rows())));
+		assertFalse(digest(rows(new String[] { "1", "" })).equals(digest(rows(new String[] { "1", null }))));
+		assertFalse(digest(rows(new String[] { "ab", "c" })).equals(digest(rows(new String[] { "a", "bc" }))));
+	}
+
+	@Test
+	public void testLargeObjects() throws Exception {
+		String[] a = { "1", "one" }, b = { "2", null };
+		assertEquals(digest(rows(Types.CLOB, a, b)), digest(rows(Types.CLOB, b, a)));
+		assertFalse(digest(rows(Types.CLOB, a)).equals(digest(rows(Types.CLOB, b))));
+		assertFalse(digest(rows(Types.CLOB, new String[] { "" })).equals(digest(rows(Types.CLOB, new String[] { null }))));
+		assertFalse(digest(rows(Types.CLOB, new String[] { "ab", "c" })).equals(digest(rows(Types.CLOB, new String[] { "a", "bc" }))));
+	}
+
+	@Test
+	public void testContinuedDigest() throws Exception {
+		String[] a = { "1", "one" }, b = { "2", "two" }, c = { "3", null };
+		ResultDigest digest = new ResultDigest(digest(rows(a, b)));
+		digest.addAll(rows(c));
+		assertEquals(digest(rows(a, b, c)), digest.getDigest());
+		assertEquals(1, digest.getRows());
+	}
+
+	@Test
+	public void testCarry() {
+		ResultDigest digest = new ResultDigest();
+		byte[] lowOnes = new byte[16];
+		for (int i = 8; i < 16; i++) lowOnes[i] = (byte) 0xff;
+		byte[] one = new byte[16];
+		one[15] = 1;
+		digest.add(lowOnes);
+		digest.add(one);
+		assertEquals("00000000000000010000000000000000", digest.getDigest());
+		assertEquals(2, digest.getRows());
+	}
+
+}
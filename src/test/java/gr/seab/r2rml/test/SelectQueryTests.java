@@ -0,0 +1,72 @@
+package gr.seab.r2rml.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Properties;
+
+import org.junit.Test;
+
+import gr.seab.r2rml.entities.sql.SelectQuery;
+
+public class SelectQueryTests {
+
+	private static Properties properties = new Properties();
+
+	static {
+		properties.setProperty("db.driver", "org.postgresql.Driver");
+	}
+
+	@Test
+	public void testConditionWrapsQuery() {
+		SelectQuery q = new SelectQuery("SELECT id, name FROM student", properties);
+		assertEquals("SELECT * FROM (SELECT id, name FROM student) r2rml_c WHERE id < 10", q.getQueryWithCondition("id < 10"));
+	}
+
+	@Test
+	public void testTableConditionWithoutWhere() {
+		SelectQuery q = new SelectQuery("SELECT id, name FROM student", properties);
+		assertEquals("SELECT id, name FROM student WHERE id < 10", q.getQueryWithTableCondition("id < 10"));
+	}
+
+	@Test
+	public void testTableConditionWithWhereAndOrder() {
+		SelectQuery q = new SelectQuery("SELECT id, name FROM student WHERE a = 1 OR b = 2 ORDER BY id", properties);
+		assertEquals("SELECT id, name FROM student WHERE (a = 1 OR b = 2) AND id < 10 ORDER BY id", q.getQueryWithTableCondition("id < 10"));
+	}
+
+	@Test
+	public void testTableConditionWithMultiLineOrder() {
+		SelectQuery q = new SelectQuery("SELECT id, name FROM student ORDER\n  BY id", properties);
+		assertEquals("SELECT id, name FROM student WHERE id < 10 ORDER\n  BY id", q.getQueryWithTableCondition("id < 10"));
+	}
+
+	@Test
+	public void testTableConditionWithLimitOrUnion() {
+		SelectQuery q = new SelectQuery("SELECT id, name FROM student ORDER BY id LIMIT 10", properties);
+		assertNull(q.getQueryWithTableCondition("id < 10"));
+		assertEquals("SELECT * FROM (SELECT id, name FROM student ORDER BY id LIMIT 10) r2rml_c WHERE id < 10", q.getQueryWithCondition("id < 10"));
+
+		q = new SelectQuery("SELECT id, name FROM student UNION SELECT id, name FROM teacher", properties);
+		assertNull(q.getQueryWithTableCondition("id < 10"));
+	}
+
+	@Test
+	public void testKeywordsInSubqueriesAndLiterals() {
+		SelectQuery q = new SelectQuery("SELECT id, name FROM student ORDER BY name", properties);
+		assertTrue(q.containsKeyword("ORDER BY"));
+		assertFalse(q.containsKeyword("WHERE"));
+
+		q = new SelectQuery("SELECT id, (SELECT MAX(x) FROM t WHERE t.id = s.id) AS m FROM student s", properties);
+		assertFalse(q.containsKeyword("WHERE"));
+
+		q = new SelectQuery("SELECT id, 'group by' AS label FROM student", properties);
+		assertFalse(q.containsKeyword("GROUP BY"));
+
+		q = new SelectQuery("SELECT id FROM student WHERE x_order = 1 AND \"group by\" = 2", properties);
+		assertFalse(q.containsKeyword("ORDER"));
+		assertFalse(q.containsKeyword("GROUP BY"));
+	}
+}